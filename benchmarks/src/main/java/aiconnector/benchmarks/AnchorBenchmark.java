@@ -0,0 +1,44 @@
+package aiconnector.benchmarks;
+
+import aiconnector.connector.AIDirection;
+import aiconnector.connector.AIRectangle;
+import aiconnector.setting.AIConstants;
+import aiconnector.utils.Tuple;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 锚点分配：图元上已有anchors个锚点时，为新连线查找空闲锚点(AIRectangle.get_free_anchor)。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnchorBenchmark {
+    @Param({"10", "100", "400"})
+    public int anchors;
+
+    private AIRectangle rect;
+    private Point start;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // 四条边的槽位比已有锚点多一些，空闲锚点需要沿边查找
+        int side = (anchors / 4 + 8) * AIConstants.POINT_SPACE;
+        rect = new AIRectangle(0, 0, side, side, 1);
+        start = new Point(0, side / 2);
+        for (int i = 0; i < anchors; i++) {
+            Tuple<Point, AIDirection> anchor = rect.get_free_anchor(i, start, AIDirection.LEFT, false);
+            rect.insert_or_update_anchor_point(anchor.a, i);
+        }
+    }
+
+    @Benchmark
+    public Tuple<Point, AIDirection> get_free_anchor() {
+        return rect.get_free_anchor(anchors, start, AIDirection.LEFT, false);
+    }
+}
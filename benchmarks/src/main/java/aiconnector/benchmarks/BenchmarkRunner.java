@@ -0,0 +1,40 @@
+package aiconnector.benchmarks;
+
+import aiconnector.manager.VirtualThreadRouteExecutor;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 基准测试入口：默认带GC/分配率分析器(-prof gc)，结果以JSON写入jmh-result.json，便于版本之间比较。<p>
+ * 参数与JMH命令行相同，例如：<p>
+ * java -jar target/benchmarks.jar RouteBenchmark -p tables=1000 -rff route.json<p>
+ * 命令行指定了-prof、-rf、-rff时以命令行为准。运行在Java 21以下且没有指定-p executor时，只测forkjoin执行器。本工程用 mvn -Pvector install 安装后，加上 -jvmArgsAppend "--add-modules jdk.incubator.vector" 测量向量化的障碍检测。
+ */
+public final class BenchmarkRunner {
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (commandLine.getProfilers().isEmpty()) {
+            options.addProfiler(GCProfiler.class);
+        }
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            options.result("jmh-result.json");
+        }
+        if (!VirtualThreadRouteExecutor.supported() && !commandLine.getParameter("executor").hasValue()) {
+            options.param("executor", "forkjoin");
+        }
+        new Runner(options.build()).run();
+    }
+}
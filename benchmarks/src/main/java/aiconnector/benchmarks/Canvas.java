@@ -0,0 +1,87 @@
+package aiconnector.benchmarks;
+
+import aiconnector.collide.BarrierIndexType;
+import aiconnector.connector.AIRectangle;
+import aiconnector.manager.AILayerManager;
+import aiconnector.manager.AIManagerItf;
+import aiconnector.manager.ForkJoinRouteExecutor;
+import aiconnector.manager.RouteExecutor;
+import aiconnector.manager.VirtualThreadRouteExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基准测试用的随机画布：图元随机散布，连线随机连接两个图元。<p>
+ * 画布注册在AILayerManager中，用完调用close移除。相同的参数、种子得到相同的画布。
+ */
+final class Canvas implements AutoCloseable {
+    private static final AtomicInteger _sequence = new AtomicInteger();
+
+    final String key;
+    final AIManagerItf manager;
+    final List<AIRectangle> rects = new ArrayList<>();
+    /**
+     * 连线id从LINE_BASE开始编号
+     */
+    static final int LINE_BASE = 100_000;
+    int lines;
+
+    private Canvas(BarrierIndexType indexType) {
+        key = "benchmark-" + _sequence.incrementAndGet();
+        manager = AILayerManager.getInstance().getManager(key, indexType);
+    }
+
+    /**
+     * @param tables 图元数
+     * @param density 图元总面积与画布面积之比，越大越密集，重叠越多
+     * @param connectors 连线数
+     */
+    static Canvas random(int tables, double density, int connectors, BarrierIndexType indexType, long seed) {
+        Canvas canvas = new Canvas(indexType);
+        Random random = new Random(seed);
+        // 图元平均面积约 120 * 90
+        int size = (int) Math.sqrt(tables * 120.0 * 90.0 / density);
+        for (int i = 1; i <= tables; i++) {
+            AIRectangle rect = new AIRectangle(random.nextInt(size), random.nextInt(size), 60 + random.nextInt(120), 40 + random.nextInt(100), i);
+            if (canvas.manager.add_rect(rect)) {
+                canvas.rects.add(rect);
+            }
+        }
+        for (int i = 0; i < connectors; i++) {
+            canvas.connect(canvas.rects.get(random.nextInt(canvas.rects.size())), canvas.rects.get(random.nextInt(canvas.rects.size())));
+        }
+        return canvas;
+    }
+
+    /**
+     * 按名称取路径搜索的执行器
+     * @param name forkjoin：共享的ForkJoinPool；virtual：虚拟线程，需要Java 21
+     */
+    static RouteExecutor executor(String name) {
+        switch (name) {
+            case "forkjoin":
+                return ForkJoinRouteExecutor.shared();
+            case "virtual":
+                return VirtualThreadRouteExecutor.shared();
+            default:
+                throw new IllegalArgumentException("unknown executor: " + name);
+        }
+    }
+
+    /**
+     * @return 新连线的id
+     */
+    int connect(AIRectangle src, AIRectangle dst) {
+        int id = LINE_BASE + lines++;
+        manager.add_line(src, dst, id);
+        return id;
+    }
+
+    @Override
+    public void close() {
+        AILayerManager.getInstance().remove(key);
+    }
+}
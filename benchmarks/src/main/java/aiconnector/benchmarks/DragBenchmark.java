@@ -0,0 +1,69 @@
+package aiconnector.benchmarks;
+
+import aiconnector.collide.BarrierIndexType;
+import aiconnector.connector.AIRectangle;
+import aiconnector.utils.Tuple;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 拖动：一个图元沿水平方向来回移动，每步move_rect重新搜索图元自身的连线和路径经过旧、新位置的连线。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DragBenchmark {
+    /**
+     * 每步移动的距离
+     */
+    private static final int STEP = 8;
+    /**
+     * 来回移动的步数
+     */
+    private static final int STEPS = 60;
+
+    @Param({"500", "2000"})
+    public int tables;
+    @Param({"0.2"})
+    public double density;
+    @Param({"1000"})
+    public int connectors;
+    @Param({"RTREE", "PACKED"})
+    public BarrierIndexType index;
+
+    private Canvas canvas;
+    private AIRectangle dragged;
+    private Point origin;
+    private int step;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        canvas = Canvas.random(tables, density, connectors, index, 7);
+        canvas.manager.routeAll();
+        // 拖动连线最多的图元
+        dragged = canvas.rects.stream()
+                .max((a, b) -> Integer.compare(canvas.manager.get_line_ids(a.get_table_id()).length, canvas.manager.get_line_ids(b.get_table_id()).length))
+                .orElseThrow();
+        origin = dragged.getLocation();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        canvas.close();
+    }
+
+    @Benchmark
+    public List<Tuple<Integer, List<Point>>> move_rect() {
+        // 0..STEPS向右，STEPS..2*STEPS向左回到原处
+        int offset = step < STEPS ? step : 2 * STEPS - step;
+        step = (step + 1) % (2 * STEPS);
+        Rectangle bounds = new Rectangle(origin.x + offset * STEP, origin.y, dragged.width, dragged.height);
+        return canvas.manager.move_rect(dragged.get_table_id(), bounds);
+    }
+}
@@ -0,0 +1,78 @@
+package aiconnector.benchmarks;
+
+import aiconnector.collide.BarrierIndexType;
+import aiconnector.connector.AIRectangle;
+import aiconnector.connector.Polyline;
+import aiconnector.utils.Tuple;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 扇出：hub图元上有fanOut条连线，重新搜索hub上的全部连线(AIManager.searchRoute的紧凑版本search_polyline)。<p>
+ * 路径缓存有效时不会重新搜索，每次调用前在hub上加入、删除一个临时图元，使hub周围的缓存失效。
+ * executor参数比较每条连线一个ForkJoinPool任务与每条连线一个虚拟线程。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FanOutBenchmark {
+    /**
+     * 临时图元的table_id
+     */
+    private static final int TEMPORARY = Integer.MAX_VALUE;
+
+    @Param({"20", "100"})
+    public int fanOut;
+    @Param({"500"})
+    public int tables;
+    @Param({"0.2"})
+    public double density;
+    @Param({"RTREE", "PACKED"})
+    public BarrierIndexType index;
+    /**
+     * 路径搜索的执行器，见Canvas#executor。运行在Java 21以下时BenchmarkRunner只测forkjoin
+     */
+    @Param({"forkjoin", "virtual"})
+    public String executor;
+
+    private Canvas canvas;
+    private AIRectangle hub;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        canvas = Canvas.random(tables, density, 0, index, 11);
+        canvas.manager.set_executor(Canvas.executor(executor));
+        hub = canvas.rects.get(canvas.rects.size() / 2);
+        for (int i = 0; i < fanOut; i++) {
+            AIRectangle other = canvas.rects.get(i * canvas.rects.size() / fanOut);
+            if (other != hub) {
+                canvas.connect(hub, other);
+            }
+        }
+        canvas.manager.search_polyline(hub.get_table_id());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        canvas.close();
+    }
+
+    /**
+     * 加入、删除图元只使区域内的缓存失效，不会重新搜索
+     */
+    @Setup(Level.Invocation)
+    public void invalidate() {
+        canvas.manager.add_rect(new AIRectangle(hub.x, hub.y, 1, 1, TEMPORARY));
+        canvas.manager.delete_rect(TEMPORARY);
+    }
+
+    @Benchmark
+    public List<Tuple<Integer, Polyline>> fan_out() {
+        return canvas.manager.search_polyline(hub.get_table_id());
+    }
+}
@@ -0,0 +1,35 @@
+package aiconnector.benchmarks;
+
+import aiconnector.collide.BarrierIndexType;
+import aiconnector.manager.AIManagerItf;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批量加载：新建画布，逐个add_rect(包括建立重叠关系)，再加入连线。密度越大重叠越多。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadBenchmark {
+    @Param({"1000", "5000"})
+    public int tables;
+    @Param({"0.1", "0.5", "1.5"})
+    public double density;
+    @Param({"RTREE", "PACKED"})
+    public BarrierIndexType index;
+
+    private long seed;
+
+    @Benchmark
+    public AIManagerItf add_rects() {
+        // 每次调用换一个种子，避免只测到同一种布局
+        try (Canvas canvas = Canvas.random(tables, density, tables, index, seed++)) {
+            return canvas.manager;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package aiconnector.benchmarks;
+
+import aiconnector.collide.BarrierIndexType;
+import aiconnector.testing.CanvasGenerator;
+import aiconnector.testing.EditTrace;
+import aiconnector.testing.TraceReplayer;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 回放编辑过程：生成ER图画布，拖动1号图元(HUB分布时连线最多)来回各30步，在新画布上整体回放，包括最终所有连线的搜索。<p>
+ * 路径搜索顺序执行，结果与线程调度无关。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ReplayBenchmark {
+    @Param({"GRID", "CLUSTERED", "DENSE_BLOCKS"})
+    public CanvasGenerator.Layout layout;
+    @Param({"HUB"})
+    public CanvasGenerator.Links links;
+    @Param({"300"})
+    public int tables;
+    @Param({"600"})
+    public int connectors;
+    @Param({"RTREE", "PACKED"})
+    public BarrierIndexType index;
+
+    private EditTrace trace;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        trace = CanvasGenerator.generate(layout, tables, links, connectors, 7);
+        Rectangle hub = trace.edits().get(0).bounds();
+        trace.drag(1, hub, 8, 0, 30);
+        trace.drag(1, new Rectangle(hub.x + 240, hub.y, hub.width, hub.height), -8, 0, 30);
+    }
+
+    @Benchmark
+    public long replay() {
+        return TraceReplayer.replay(trace, index).checksum;
+    }
+}
@@ -0,0 +1,67 @@
+package aiconnector.benchmarks;
+
+import aiconnector.collide.BarrierIndexType;
+import aiconnector.connector.AIConnector;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单条连线的路径搜索(AIConnector.search_route)。<p>
+ * 参数为图元数、密度、连线数、搜索引擎、障碍索引、执行器(两路搜索的分叉)；每次调用轮流搜索画布上的一条连线，不经过路径缓存。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouteBenchmark {
+    @Param({"200", "1000"})
+    public int tables;
+    @Param({"0.1", "0.3"})
+    public double density;
+    @Param({"500"})
+    public int connectors;
+    @Param({"heuristic", "visibility-graph"})
+    public String engine;
+    @Param({"RTREE", "PACKED"})
+    public BarrierIndexType index;
+    /**
+     * 路径搜索的执行器，见Canvas#executor。运行在Java 21以下时BenchmarkRunner只测forkjoin
+     */
+    @Param({"forkjoin", "virtual"})
+    public String executor;
+
+    private Canvas canvas;
+    private final List<AIConnector> lines = new ArrayList<>();
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        canvas = Canvas.random(tables, density, connectors, index, 42);
+        canvas.manager.set_routing_engine(engine);
+        canvas.manager.set_executor(Canvas.executor(executor));
+        for (int i = 0; i < canvas.lines; i++) {
+            AIConnector connector = canvas.manager.get_connection(Canvas.LINE_BASE + i);
+            if (connector != null && connector.get_srcRect() != connector.get_dstRect()) {
+                lines.add(connector);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        canvas.close();
+    }
+
+    @Benchmark
+    public List<Point> search_route() {
+        AIConnector connector = lines.get(next);
+        next = (next + 1) % lines.size();
+        return connector.search_route();
+    }
+}
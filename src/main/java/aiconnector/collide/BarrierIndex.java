@@ -0,0 +1,64 @@
+package aiconnector.collide;
+
+import aiconnector.connector.AIDirection;
+import aiconnector.connector.AIRectangle;
+
+import java.awt.*;
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * 障碍索引：维护画布上所有图元的空间索引，供障碍探测使用。<p>
+ * 图元的增删改由manager负责同步(add_rect/delete_rect/move_rect)。
+ */
+public interface BarrierIndex {
+    /**
+     * 加入图元。如果相同table_id的图元已经存在，则先移除旧的。
+     * @param rectangle 图元
+     */
+    void insert(AIRectangle rectangle);
+
+    /**
+     * 批量加入图元，结果与逐个insert相同。默认逐个insert，索引可以改为整体建立。
+     * @param rectangles 图元
+     */
+    default void insert_all(Collection<? extends AIRectangle> rectangles) {
+        rectangles.forEach(this::insert);
+    }
+
+    /**
+     * 移除图元(按table_id查找，图元的坐标可以已经被修改)
+     * @param rectangle 图元
+     * @return true：移除成功
+     */
+    boolean remove(AIRectangle rectangle);
+
+    /**
+     * 射线探测：从origin出发沿direction方向，找到最先遇到的图元。<p>
+     * 判定条件与AIConnector原有的线性扫描一致：<p>
+     * LEFT: 图元纵向覆盖origin.y 且 bound <= right() < origin.x，取right()最大者；<p>
+     * RIGHT: 图元纵向覆盖origin.y 且 origin.x < x < bound，取x最小者；<p>
+     * UP: 图元横向覆盖origin.x 且 bound <= bottom() < origin.y，取bottom()最大者；<p>
+     * DOWN: 图元横向覆盖origin.x 且 origin.y < y <= bound，取y最小者。
+     * @param direction 探测方向，只支持上下左右
+     * @param origin 起始点
+     * @param bound 最远探测距离(坐标值)
+     * @param filter 返回false的图元不作为障碍
+     * @return 障碍图元，不存在返回null
+     */
+    AIRectangle nearest(AIDirection direction, Point origin, int bound, Predicate<AIRectangle> filter);
+
+    /**
+     * 区域查询：找到所有与area相交(Rectangle.intersects)的图元。<p>
+     * consumer在索引的读锁内调用，不能在其中修改索引。
+     * @param area 查询区域
+     * @param consumer 相交图元的处理
+     */
+    void query(Rectangle area, Consumer<AIRectangle> consumer);
+
+    /**
+     * @return 图元个数
+     */
+    int size();
+}
@@ -0,0 +1,30 @@
+package aiconnector.collide;
+
+import lombok.AllArgsConstructor;
+
+import java.util.function.Supplier;
+
+/**
+ * 障碍索引的实现类型，每个画布(层)可以单独选择
+ */
+@AllArgsConstructor
+public enum BarrierIndexType {
+    /**
+     * R-tree，适合任意布局
+     */
+    RTREE(RTreeBarrierIndex::new),
+    /**
+     * 按坐标轴排序的数组，适合网格对齐的布局
+     */
+    SWEEP(SweepBarrierIndex::new),
+    /**
+     * 分带存放、带内按分量连续存放的数组，适合图元大小相近、分布较均匀的布局
+     */
+    PACKED(PackedBarrierIndex::new);
+
+    private final Supplier<BarrierIndex> factory;
+
+    public BarrierIndex create() {
+        return factory.get();
+    }
+}
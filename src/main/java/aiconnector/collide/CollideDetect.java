@@ -1,9 +1,114 @@
 package aiconnector.collide;
 
 /**
- * 功能：
- * 1、障碍检测；<p>
- * 2、方向判定<p></p>
+ * 障碍检测的批处理内核：一条射线对N个图元、一条线段对N条线段，输入为并列的int数组，返回命中的下标，不创建对象。<p>
+ * 向量化内核VectorKernels在单独的源码目录src/vector/java，只在vector profile下编译(mvn -Pvector)；
+ * 包含该类并且运行时加载了jdk.incubator.vector模块(--add-modules jdk.incubator.vector)时按SIMD宽度处理，
+ * 否则使用标量循环，两者结果相同。数组较短时向量化没有收益，同样使用标量循环。
  */
-class CollideDetect {
+final class CollideDetect {
+    /**
+     * 向量化内核，不可用时为null
+     */
+    private static final Kernels VECTOR = vector_kernels();
+    /**
+     * 向量化内核可用
+     */
+    static final boolean VECTORIZED = VECTOR != null;
+    /**
+     * 元素个数不少于此值时才使用向量化内核
+     */
+    private static final int VECTOR_THRESHOLD = 16;
+
+    private CollideDetect() {
+    }
+
+    /**
+     * 向量化内核的实现，与标量循环的参数、结果相同
+     */
+    interface Kernels {
+        int lanes();
+
+        int nearest_above(int[] keys, int[] lo, int[] hi, int count, int from, int bound, boolean inclusive, int stab);
+
+        int nearest_below(int[] keys, int[] lo, int[] hi, int count, int from, int bound, int stab);
+
+        int first_overlap(int[] lo, int[] hi, int[] owner, int count, int from, int to, int self);
+    }
+
+    private static Kernels vector_kernels() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            Kernels kernels = (Kernels) Class.forName(CollideDetect.class.getPackageName() + ".VectorKernels")
+                    .getDeclaredConstructor().newInstance();
+            return kernels.lanes() > 1 ? kernels : null;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // 没有用vector profile编译
+            return null;
+        }
+    }
+
+    /**
+     * 射线沿坐标增大的方向(右、下)：取 from &lt; key (&lt; 或 &lt;=) bound 且 lo &lt;= stab &lt;= hi 的最小key
+     * @param keys 图元迎着射线的边
+     * @param lo 图元在垂直方向的起点
+     * @param hi 图元在垂直方向的终点
+     * @param count 有效元素个数
+     * @param inclusive true：key &lt;= bound；false：key &lt; bound
+     * @param stab 射线在垂直方向的坐标
+     * @return 最近图元的下标，key相同取下标最小的；没有返回-1
+     */
+    static int nearest_above(int[] keys, int[] lo, int[] hi, int count, int from, int bound, boolean inclusive, int stab) {
+        if (VECTORIZED && count >= VECTOR_THRESHOLD) {
+            return VECTOR.nearest_above(keys, lo, hi, count, from, bound, inclusive, stab);
+        }
+        int best = -1;
+        for (int i = 0; i < count; i++) {
+            int key = keys[i];
+            if (key > from && (key < bound || inclusive && key == bound) && (best < 0 || key < keys[best])
+                    && lo[i] <= stab && stab <= hi[i]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 射线沿坐标减小的方向(左、上)：取 bound &lt;= key &lt; from 且 lo &lt;= stab &lt;= hi 的最大key
+     * @return 最近图元的下标，key相同取下标最小的；没有返回-1
+     */
+    static int nearest_below(int[] keys, int[] lo, int[] hi, int count, int from, int bound, int stab) {
+        if (VECTORIZED && count >= VECTOR_THRESHOLD) {
+            return VECTOR.nearest_below(keys, lo, hi, count, from, bound, stab);
+        }
+        int best = -1;
+        for (int i = 0; i < count; i++) {
+            int key = keys[i];
+            if (key < from && key >= bound && (best < 0 || key > keys[best])
+                    && lo[i] <= stab && stab <= hi[i]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 同一直线上的线段[from, to]与其他连线的线段是否有重叠：lo &lt; to 且 from &lt; hi，端点相接不算
+     * @param owner 线段所属的连线
+     * @param self 不与自身连线的线段比较
+     * @return 第一条重叠线段的下标，没有返回-1
+     */
+    static int first_overlap(int[] lo, int[] hi, int[] owner, int count, int from, int to, int self) {
+        if (VECTORIZED && count >= VECTOR_THRESHOLD) {
+            return VECTOR.first_overlap(lo, hi, owner, count, from, to, self);
+        }
+        for (int i = 0; i < count; i++) {
+            if (lo[i] < to && from < hi[i] && owner[i] != self) {
+                return i;
+            }
+        }
+        return -1;
+    }
 }
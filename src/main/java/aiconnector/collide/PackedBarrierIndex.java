@@ -0,0 +1,254 @@
+package aiconnector.collide;
+
+import aiconnector.connector.AIDirection;
+import aiconnector.connector.AIRectangle;
+import aiconnector.utils.IntObjectMap;
+
+import java.awt.*;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * 分带存放的障碍索引。<p>
+ * 画布按BAND划分为横带和竖带，图元加入它覆盖的每一条带；带内图元的x、y、right、bottom分别存放在连续的int数组中(SoA)，不排序。
+ * 左右探测只看探测点所在的横带，上下探测只看所在的竖带，带内由CollideDetect扫描数组取最近者：没有指针追逐，探测过程不分配对象。<p>
+ * 插入、删除只涉及图元覆盖的几条带，删除时用带内最后一个图元填补空位。适合图元大小相近、分布较均匀的布局。
+ */
+public class PackedBarrierIndex implements BarrierIndex {
+    /**
+     * 带宽，取图元的典型尺寸，多数图元只覆盖一两条带
+     */
+    private static final int BAND = 256;
+
+    private final ReadWriteLock _readWriteLock = new ReentrantReadWriteLock();
+    /**
+     * table_id -> 加入时的坐标
+     */
+    private final IntObjectMap<Snapshot> _snapshots = new IntObjectMap<>();
+    /**
+     * 横带序号 -> 带内图元，左右探测和区域查询使用
+     */
+    private final IntObjectMap<Band> _rows = new IntObjectMap<>();
+    /**
+     * 竖带序号 -> 带内图元，上下探测使用
+     */
+    private final IntObjectMap<Band> _columns = new IntObjectMap<>();
+
+    @Override
+    public void insert(AIRectangle rectangle) {
+        _readWriteLock.writeLock().lock();
+        try {
+            Snapshot old = _snapshots.remove(rectangle.get_table_id());
+            if (old != null) {
+                delete(old);
+            }
+            Snapshot snapshot = new Snapshot(rectangle);
+            _snapshots.put(rectangle.get_table_id(), snapshot);
+            for (int row = band(snapshot.y); row <= band(snapshot.bottom); row++) {
+                Band band = _rows.get(row);
+                if (band == null) _rows.put(row, band = new Band());
+                band.add(snapshot);
+            }
+            for (int column = band(snapshot.x); column <= band(snapshot.right); column++) {
+                Band band = _columns.get(column);
+                if (band == null) _columns.put(column, band = new Band());
+                band.add(snapshot);
+            }
+        } finally {
+            _readWriteLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(AIRectangle rectangle) {
+        _readWriteLock.writeLock().lock();
+        try {
+            Snapshot snapshot = _snapshots.remove(rectangle.get_table_id());
+            if (snapshot == null) {
+                return false;
+            }
+            delete(snapshot);
+            return true;
+        } finally {
+            _readWriteLock.writeLock().unlock();
+        }
+    }
+
+    private void delete(Snapshot snapshot) {
+        for (int row = band(snapshot.y); row <= band(snapshot.bottom); row++) {
+            if (_rows.get(row).remove(snapshot.rect) == 0) _rows.remove(row);
+        }
+        for (int column = band(snapshot.x); column <= band(snapshot.right); column++) {
+            if (_columns.get(column).remove(snapshot.rect) == 0) _columns.remove(column);
+        }
+    }
+
+    @Override
+    public AIRectangle nearest(AIDirection direction, Point origin, int bound, Predicate<AIRectangle> filter) {
+        _readWriteLock.readLock().lock();
+        try {
+            switch (direction) {
+                case RIGHT: {
+                    Band band = _rows.get(band(origin.y));
+                    return band == null ? null : band.scan_up(band.x, band.y, band.bottom, origin.x, bound, origin.y, false, filter);
+                }
+                case DOWN: {
+                    Band band = _columns.get(band(origin.x));
+                    return band == null ? null : band.scan_up(band.y, band.x, band.right, origin.y, bound, origin.x, true, filter);
+                }
+                case LEFT: {
+                    Band band = _rows.get(band(origin.y));
+                    return band == null ? null : band.scan_down(band.right, band.y, band.bottom, origin.x, bound, origin.y, filter);
+                }
+                case UP: {
+                    Band band = _columns.get(band(origin.x));
+                    return band == null ? null : band.scan_down(band.bottom, band.x, band.right, origin.y, bound, origin.x, filter);
+                }
+                default:
+                    return null;
+            }
+        } finally {
+            _readWriteLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void query(Rectangle area, Consumer<AIRectangle> consumer) {
+        // 与Rectangle.intersects一致：空区域不与任何图元相交
+        if (area.width <= 0 || area.height <= 0) {
+            return;
+        }
+        _readWriteLock.readLock().lock();
+        try {
+            int right = area.x + area.width, bottom = area.y + area.height;
+            for (int row = band(area.y), last = band(bottom); row <= last; row++) {
+                Band band = _rows.get(row);
+                if (band == null) continue;
+                for (int i = 0; i < band.size; i++) {
+                    // 跨多条带的图元只在与area重叠部分的第一条带中报告
+                    if (band.x[i] < right && area.x < band.right[i] && band.y[i] < bottom && area.y < band.bottom[i]
+                            && band.x[i] < band.right[i] && band.y[i] < band.bottom[i]
+                            && band(Math.max(band.y[i], area.y)) == row) {
+                        consumer.accept(band.rects[i]);
+                    }
+                }
+            }
+        } finally {
+            _readWriteLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return _snapshots.size();
+    }
+
+    private static int band(int coordinate) {
+        return Math.floorDiv(coordinate, BAND);
+    }
+
+    private static final class Snapshot {
+        final AIRectangle rect;
+        final int x, y, right, bottom;
+
+        Snapshot(AIRectangle rect) {
+            this.rect = rect;
+            x = rect.x;
+            y = rect.y;
+            right = rect.right();
+            bottom = rect.bottom();
+        }
+    }
+
+    /**
+     * 一条带内的图元，坐标按分量存放在并列的数组中
+     */
+    private static final class Band {
+        int size;
+        int[] x = new int[8];
+        int[] y = new int[8];
+        int[] right = new int[8];
+        int[] bottom = new int[8];
+        AIRectangle[] rects = new AIRectangle[8];
+
+        void add(Snapshot snapshot) {
+            if (size == x.length) {
+                int capacity = size << 1;
+                x = Arrays.copyOf(x, capacity);
+                y = Arrays.copyOf(y, capacity);
+                right = Arrays.copyOf(right, capacity);
+                bottom = Arrays.copyOf(bottom, capacity);
+                rects = Arrays.copyOf(rects, capacity);
+            }
+            x[size] = snapshot.x;
+            y[size] = snapshot.y;
+            right[size] = snapshot.right;
+            bottom[size] = snapshot.bottom;
+            rects[size] = snapshot.rect;
+            size++;
+        }
+
+        /**
+         * 删除图元，用最后一个图元填补空位
+         * @return 剩余的图元个数
+         */
+        int remove(AIRectangle rect) {
+            for (int i = 0; i < size; i++) {
+                if (rects[i] == rect) {
+                    int last = --size;
+                    x[i] = x[last];
+                    y[i] = y[last];
+                    right[i] = right[last];
+                    bottom[i] = bottom[last];
+                    rects[i] = rects[last];
+                    rects[last] = null;
+                    break;
+                }
+            }
+            return size;
+        }
+
+        /**
+         * 取 from < key (< 或 <=) bound 且 lo <= stab <= hi 的最小key
+         * @param inclusive true：key <= bound；false：key < bound
+         */
+        AIRectangle scan_up(int[] keys, int[] lo, int[] hi, int from, int bound, int stab, boolean inclusive, Predicate<AIRectangle> filter) {
+            int nearest = CollideDetect.nearest_above(keys, lo, hi, size, from, bound, inclusive, stab);
+            if (nearest < 0 || filter.test(rects[nearest])) {
+                return nearest < 0 ? null : rects[nearest];
+            }
+            // 最近者被过滤掉时逐个检查
+            int best = -1;
+            for (int i = 0; i < size; i++) {
+                int key = keys[i];
+                if (key > from && (key < bound || inclusive && key == bound) && (best < 0 || key < keys[best])
+                        && lo[i] <= stab && stab <= hi[i] && filter.test(rects[i])) {
+                    best = i;
+                }
+            }
+            return best < 0 ? null : rects[best];
+        }
+
+        /**
+         * 取 bound <= key < from 且 lo <= stab <= hi 的最大key
+         */
+        AIRectangle scan_down(int[] keys, int[] lo, int[] hi, int from, int bound, int stab, Predicate<AIRectangle> filter) {
+            int nearest = CollideDetect.nearest_below(keys, lo, hi, size, from, bound, stab);
+            if (nearest < 0 || filter.test(rects[nearest])) {
+                return nearest < 0 ? null : rects[nearest];
+            }
+            int best = -1;
+            for (int i = 0; i < size; i++) {
+                int key = keys[i];
+                if (key < from && key >= bound && (best < 0 || key > keys[best])
+                        && lo[i] <= stab && stab <= hi[i] && filter.test(rects[i])) {
+                    best = i;
+                }
+            }
+            return best < 0 ? null : rects[best];
+        }
+    }
+}
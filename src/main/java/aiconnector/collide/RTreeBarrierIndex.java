@@ -0,0 +1,399 @@
+package aiconnector.collide;
+
+import aiconnector.connector.AIDirection;
+import aiconnector.connector.AIRectangle;
+import aiconnector.utils.IntObjectMap;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * 基于R-tree(Guttman)的障碍索引。<p>
+ * 1、插入/删除为O(log n)，删除后下溢的节点将其图元重新插入；<p>
+ * 2、射线探测时按节点外包矩形估算可能的最优值，剪掉不可能更近的子树。
+ */
+public class RTreeBarrierIndex implements BarrierIndex {
+    private static final int MAX_ENTRIES = 16;
+    private static final int MIN_ENTRIES = 6;
+    /**
+     * 不满足探测条件
+     */
+    private static final long NONE = Long.MIN_VALUE;
+
+    private final ReadWriteLock _readWriteLock = new ReentrantReadWriteLock();
+    /**
+     * table_id -> 叶子项
+     */
+    private final IntObjectMap<Entry> _entries = new IntObjectMap<>();
+    private Node _root = new Node(true);
+
+    @Override
+    public void insert(AIRectangle rectangle) {
+        _readWriteLock.writeLock().lock();
+        try {
+            Entry entry = new Entry(rectangle);
+            Entry old = _entries.put(rectangle.get_table_id(), entry);
+            if (old != null) {
+                delete(old);
+            }
+            insert(entry);
+        } finally {
+            _readWriteLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(AIRectangle rectangle) {
+        _readWriteLock.writeLock().lock();
+        try {
+            Entry entry = _entries.remove(rectangle.get_table_id());
+            if (entry == null) {
+                return false;
+            }
+            delete(entry);
+            return true;
+        } finally {
+            _readWriteLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public AIRectangle nearest(AIDirection direction, Point origin, int bound, Predicate<AIRectangle> filter) {
+        Probe probe = new Probe(direction, origin.x, origin.y, bound, filter);
+        _readWriteLock.readLock().lock();
+        try {
+            if (probe.upper(_root) != NONE) {
+                probe.search(_root);
+            }
+        } finally {
+            _readWriteLock.readLock().unlock();
+        }
+        return probe.best;
+    }
+
+    @Override
+    public void query(Rectangle area, Consumer<AIRectangle> consumer) {
+        _readWriteLock.readLock().lock();
+        try {
+            query(_root, area, consumer);
+        } finally {
+            _readWriteLock.readLock().unlock();
+        }
+    }
+
+    private static void query(Node node, Rectangle area, Consumer<AIRectangle> consumer) {
+        int right = area.x + area.width, bottom = area.y + area.height;
+        for (int i = 0; i < node.size; i++) {
+            Box child = node.children[i];
+            if (child.maxX < area.x || child.minX > right || child.maxY < area.y || child.minY > bottom) {
+                continue;
+            }
+            if (node.leaf) {
+                AIRectangle rect = ((Entry) child).rect;
+                if (rect.intersects(area)) {
+                    consumer.accept(rect);
+                }
+            } else {
+                query((Node) child, area, consumer);
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        _readWriteLock.readLock().lock();
+        try {
+            return _entries.size();
+        } finally {
+            _readWriteLock.readLock().unlock();
+        }
+    }
+
+    private void insert(Entry entry) {
+        Node node = choose_leaf(entry);
+        node.add(entry);
+        while (node != null) {
+            if (node.size > MAX_ENTRIES) {
+                Node sibling = split(node);
+                if (node == _root) {
+                    Node newRoot = new Node(false);
+                    newRoot.add(node);
+                    newRoot.add(sibling);
+                    newRoot.recalc();
+                    _root = newRoot;
+                    return;
+                }
+                node.parent.add(sibling);
+            } else {
+                node.include(entry);
+            }
+            node = node.parent;
+        }
+    }
+
+    private void delete(Entry entry) {
+        Node leaf = entry.parent;
+        leaf.remove(entry);
+
+        // 下溢的节点从树上摘除，其下所有图元重新插入
+        List<Entry> orphans = new ArrayList<>();
+        Node node = leaf;
+        while (node != _root) {
+            Node parent = node.parent;
+            if (node.size < MIN_ENTRIES) {
+                parent.remove(node);
+                node.collect(orphans);
+            } else {
+                node.recalc();
+            }
+            node = parent;
+        }
+        _root.recalc();
+        while (!_root.leaf && _root.size == 1) {
+            _root = (Node) _root.children[0];
+            _root.parent = null;
+        }
+        if (!_root.leaf && _root.size == 0) {
+            _root = new Node(true);
+        }
+
+        orphans.forEach(this::insert);
+    }
+
+    private Node choose_leaf(Box box) {
+        Node node = _root;
+        while (!node.leaf) {
+            Box best = null;
+            long bestEnlargement = Long.MAX_VALUE, bestArea = Long.MAX_VALUE;
+            for (int i = 0; i < node.size; i++) {
+                Box child = node.children[i];
+                long area = child.area();
+                long enlargement = child.union_area(box) - area;
+                if (enlargement < bestEnlargement || (enlargement == bestEnlargement && area < bestArea)) {
+                    best = child;
+                    bestEnlargement = enlargement;
+                    bestArea = area;
+                }
+            }
+            node = (Node) best;
+        }
+        return node;
+    }
+
+    /**
+     * 二次分裂：选择合并后浪费面积最大的两项作为种子，其余项依次放入扩张较小的一组。
+     * @param node 溢出的节点
+     * @return 分裂出的新节点
+     */
+    private static Node split(Node node) {
+        Box[] all = Arrays.copyOf(node.children, node.size);
+        int seed1 = 0, seed2 = 1;
+        long worst = NONE;
+        for (int i = 0; i < all.length; i++) {
+            for (int j = i + 1; j < all.length; j++) {
+                long waste = all[i].union_area(all[j]) - all[i].area() - all[j].area();
+                if (waste > worst) {
+                    worst = waste;
+                    seed1 = i;
+                    seed2 = j;
+                }
+            }
+        }
+
+        node.clear();
+        Node sibling = new Node(node.leaf);
+        node.add(all[seed1]);
+        node.recalc();
+        sibling.add(all[seed2]);
+        sibling.recalc();
+
+        int remaining = all.length - 2;
+        for (int i = 0; i < all.length; i++) {
+            if (i == seed1 || i == seed2) continue;
+            Box box = all[i];
+            Node target;
+            if (node.size + remaining == MIN_ENTRIES) {
+                target = node;
+            } else if (sibling.size + remaining == MIN_ENTRIES) {
+                target = sibling;
+            } else {
+                long d1 = node.union_area(box) - node.area();
+                long d2 = sibling.union_area(box) - sibling.area();
+                target = d1 < d2 || (d1 == d2 && node.size <= sibling.size) ? node : sibling;
+            }
+            target.add(box);
+            target.include(box);
+            remaining--;
+        }
+        return sibling;
+    }
+
+    /**
+     * 外包矩形。坐标取图元的x/y/right()/bottom()。
+     */
+    private abstract static class Box {
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        Node parent;
+
+        long area() {
+            return (long) (maxX - minX) * (maxY - minY);
+        }
+
+        long union_area(Box other) {
+            return (long) (max(maxX, other.maxX) - min(minX, other.minX)) * (max(maxY, other.maxY) - min(minY, other.minY));
+        }
+
+        void include(Box other) {
+            minX = min(minX, other.minX);
+            minY = min(minY, other.minY);
+            maxX = max(maxX, other.maxX);
+            maxY = max(maxY, other.maxY);
+        }
+
+        private static int min(int a, int b) { return Math.min(a, b); }
+        private static int max(int a, int b) { return Math.max(a, b); }
+    }
+
+    private static final class Entry extends Box {
+        final AIRectangle rect;
+
+        Entry(AIRectangle rect) {
+            this.rect = rect;
+            minX = rect.x;
+            minY = rect.y;
+            maxX = rect.right();
+            maxY = rect.bottom();
+        }
+    }
+
+    private static final class Node extends Box {
+        final boolean leaf;
+        final Box[] children = new Box[MAX_ENTRIES + 1];
+        int size;
+
+        Node(boolean leaf) {
+            this.leaf = leaf;
+        }
+
+        void add(Box box) {
+            children[size++] = box;
+            box.parent = this;
+        }
+
+        void remove(Box box) {
+            for (int i = 0; i < size; i++) {
+                if (children[i] == box) {
+                    children[i] = children[--size];
+                    children[size] = null;
+                    return;
+                }
+            }
+        }
+
+        void clear() {
+            Arrays.fill(children, null);
+            size = 0;
+            minX = minY = Integer.MAX_VALUE;
+            maxX = maxY = Integer.MIN_VALUE;
+        }
+
+        void recalc() {
+            minX = minY = Integer.MAX_VALUE;
+            maxX = maxY = Integer.MIN_VALUE;
+            for (int i = 0; i < size; i++) {
+                include(children[i]);
+            }
+        }
+
+        void collect(List<Entry> out) {
+            for (int i = 0; i < size; i++) {
+                if (leaf) {
+                    out.add((Entry) children[i]);
+                } else {
+                    ((Node) children[i]).collect(out);
+                }
+            }
+        }
+    }
+
+    /**
+     * 一次射线探测的状态。分值越大越近，同时用来剪枝。
+     */
+    private static final class Probe {
+        final AIDirection direction;
+        final int px, py, bound;
+        final Predicate<AIRectangle> filter;
+        AIRectangle best;
+        long bestScore = NONE;
+
+        Probe(AIDirection direction, int px, int py, int bound, Predicate<AIRectangle> filter) {
+            this.direction = direction;
+            this.px = px;
+            this.py = py;
+            this.bound = bound;
+            this.filter = filter;
+        }
+
+        void search(Node node) {
+            for (int i = 0; i < node.size; i++) {
+                Box child = node.children[i];
+                if (node.leaf) {
+                    Entry entry = (Entry) child;
+                    long score = score(entry);
+                    if (score != NONE && score > bestScore && filter.test(entry.rect)) {
+                        best = entry.rect;
+                        bestScore = score;
+                    }
+                } else {
+                    long upper = upper(child);
+                    if (upper != NONE && upper > bestScore) {
+                        search((Node) child);
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return 子树中可能的最大分值，不可能命中返回NONE
+         */
+        long upper(Box b) {
+            switch (direction) {
+                case LEFT:
+                    if (b.minY > py || py > b.maxY || b.maxX < bound || b.minX >= px) return NONE;
+                    return Math.min(b.maxX, px - 1);
+                case RIGHT:
+                    if (b.minY > py || py > b.maxY || b.maxX <= px || b.minX >= bound) return NONE;
+                    return -(long) Math.max(b.minX, px + 1);
+                case UP:
+                    if (b.minX > px || px > b.maxX || b.maxY < bound || b.minY >= py) return NONE;
+                    return Math.min(b.maxY, py - 1);
+                case DOWN:
+                    if (b.minX > px || px > b.maxX || b.maxY <= py || b.minY > bound) return NONE;
+                    return -(long) Math.max(b.minY, py + 1);
+                default:
+                    return NONE;
+            }
+        }
+
+        long score(Entry e) {
+            switch (direction) {
+                case LEFT:
+                    return e.minY <= py && py <= e.maxY && bound <= e.maxX && e.maxX < px ? e.maxX : NONE;
+                case RIGHT:
+                    return e.minY <= py && py <= e.maxY && px < e.minX && e.minX < bound ? -(long) e.minX : NONE;
+                case UP:
+                    return e.minX <= px && px <= e.maxX && bound <= e.maxY && e.maxY < py ? e.maxY : NONE;
+                case DOWN:
+                    return e.minX <= px && px <= e.maxX && py < e.minY && e.minY <= bound ? -(long) e.minY : NONE;
+                default:
+                    return NONE;
+            }
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package aiconnector.collide;
+
+import aiconnector.setting.AIConstants;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
+
+/**
+ * 画布上所有连线的线段索引。<p>
+ * 横线按y、竖线按x分桶存放在TreeMap中，查询时只看坐标相差不到POINT_SPACE的桶，O(log n + k)；
+ * 桶内线段的范围、所属连线存放在并列的int数组中，重合检查由CollideDetect批量比较；
+ * 非正交的线段(超过MAX_STEP被截断的路径)单独存放，区域查询时顺序扫描。<p>
+ * 连线的路径确定后整体替换，连线删除时整体移除。
+ */
+public class SegmentIndex {
+    private final ReadWriteLock _readWriteLock = new ReentrantReadWriteLock();
+    /**
+     * y -> 横线
+     */
+    private final TreeMap<Integer, Bucket> _horizontals = new TreeMap<>();
+    /**
+     * x -> 竖线
+     */
+    private final TreeMap<Integer, Bucket> _verticals = new TreeMap<>();
+    /**
+     * 非正交的线段 {x1, y1, x2, y2}
+     */
+    private final List<Segment> _diagonals = new ArrayList<>();
+    /**
+     * 连线id -> 该连线的线段
+     */
+    private final HashMap<Integer, List<Segment>> _byConnector = new HashMap<>();
+
+    /**
+     * 替换连线的路径
+     */
+    public void update(int connectorId, List<Point> route) {
+        List<Segment> segments = new ArrayList<>(Math.max(0, route.size() - 1));
+        for (int i = 1; i < route.size(); i++) {
+            Point a = route.get(i - 1), b = route.get(i);
+            if (!a.equals(b)) {
+                segments.add(new Segment(connectorId, a, b));
+            }
+        }
+        _readWriteLock.writeLock().lock();
+        try {
+            delete(_byConnector.remove(connectorId));
+            _byConnector.put(connectorId, segments);
+            for (Segment segment : segments) {
+                TreeMap<Integer, Bucket> bucket = bucket(segment);
+                if (bucket != null) {
+                    bucket.computeIfAbsent(segment.coordinate, k -> new Bucket()).add(segment);
+                } else {
+                    _diagonals.add(segment);
+                }
+            }
+        } finally {
+            _readWriteLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 移除连线的路径
+     */
+    public void remove(int connectorId) {
+        _readWriteLock.writeLock().lock();
+        try {
+            delete(_byConnector.remove(connectorId));
+        } finally {
+            _readWriteLock.writeLock().unlock();
+        }
+    }
+
+    private void delete(List<Segment> segments) {
+        if (segments == null) {
+            return;
+        }
+        for (Segment segment : segments) {
+            TreeMap<Integer, Bucket> bucket = bucket(segment);
+            if (bucket == null) {
+                _diagonals.remove(segment);
+                continue;
+            }
+            if (bucket.get(segment.coordinate).remove(segment) == 0) {
+                bucket.remove(segment.coordinate);
+            }
+        }
+    }
+
+    private TreeMap<Integer, Bucket> bucket(Segment segment) {
+        return segment.axis == Segment.HORIZONTAL ? _horizontals : segment.axis == Segment.VERTICAL ? _verticals : null;
+    }
+
+    /**
+     * 检查线段是否与其他连线的平行线段重合：坐标相差不到POINT_SPACE，并且两者的范围有重叠。
+     * @param connectorId 线段所属的连线，不与自身比较
+     * @return true：重合。非正交、长度为0的线段不检查，返回false
+     */
+    public boolean check_conincdence(int connectorId, Point from, Point to) {
+        Segment segment = new Segment(connectorId, from, to);
+        TreeMap<Integer, Bucket> bucket = bucket(segment);
+        if (bucket == null || from.equals(to)) {
+            return false;
+        }
+        _readWriteLock.readLock().lock();
+        try {
+            for (Bucket other : bucket.subMap(segment.coordinate - AIConstants.POINT_SPACE, false,
+                    segment.coordinate + AIConstants.POINT_SPACE, false).values()) {
+                if (CollideDetect.first_overlap(other.lo, other.hi, other.owner, other.size, segment.lo, segment.hi, connectorId) >= 0) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            _readWriteLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 区域查询：有线段与area相交的连线
+     * @param consumer 连线id，同一条连线可能回调多次
+     */
+    public void query(Rectangle area, IntConsumer consumer) {
+        int right = area.x + area.width, bottom = area.y + area.height;
+        _readWriteLock.readLock().lock();
+        try {
+            for (Bucket bucket : _horizontals.subMap(area.y, true, bottom, true).values()) {
+                bucket.query(area.x, right, consumer);
+            }
+            for (Bucket bucket : _verticals.subMap(area.x, true, right, true).values()) {
+                bucket.query(area.y, bottom, consumer);
+            }
+            for (Segment segment : _diagonals) {
+                if (area.intersectsLine(segment.x1, segment.y1, segment.x2, segment.y2)) consumer.accept(segment.connectorId);
+            }
+        } finally {
+            _readWriteLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return 索引中的连线数
+     */
+    public int size() {
+        _readWriteLock.readLock().lock();
+        try {
+            return _byConnector.size();
+        } finally {
+            _readWriteLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 同一坐标上的线段，按加入顺序存放在并列的数组中
+     */
+    private static final class Bucket {
+        int size;
+        int[] lo = new int[4];
+        int[] hi = new int[4];
+        int[] owner = new int[4];
+
+        void add(Segment segment) {
+            if (size == lo.length) {
+                lo = Arrays.copyOf(lo, size << 1);
+                hi = Arrays.copyOf(hi, size << 1);
+                owner = Arrays.copyOf(owner, size << 1);
+            }
+            lo[size] = segment.lo;
+            hi[size] = segment.hi;
+            owner[size] = segment.connectorId;
+            size++;
+        }
+
+        /**
+         * 删除线段，保持其余线段的顺序
+         * @return 剩余的线段数
+         */
+        int remove(Segment segment) {
+            for (int i = 0; i < size; i++) {
+                if (owner[i] == segment.connectorId && lo[i] == segment.lo && hi[i] == segment.hi) {
+                    int tail = --size - i;
+                    System.arraycopy(lo, i + 1, lo, i, tail);
+                    System.arraycopy(hi, i + 1, hi, i, tail);
+                    System.arraycopy(owner, i + 1, owner, i, tail);
+                    break;
+                }
+            }
+            return size;
+        }
+
+        /**
+         * 回调范围与[from, to]相交的线段所属的连线
+         */
+        void query(int from, int to, IntConsumer consumer) {
+            for (int i = 0; i < size; i++) {
+                if (lo[i] <= to && from <= hi[i]) consumer.accept(owner[i]);
+            }
+        }
+    }
+
+    private static final class Segment {
+        static final int HORIZONTAL = 0, VERTICAL = 1, DIAGONAL = 2;
+
+        final int connectorId;
+        final int axis;
+        /**
+         * 横线的y、竖线的x
+         */
+        final int coordinate;
+        /**
+         * 沿线方向的范围
+         */
+        final int lo, hi;
+        final int x1, y1, x2, y2;
+
+        Segment(int connectorId, Point a, Point b) {
+            this.connectorId = connectorId;
+            x1 = a.x;
+            y1 = a.y;
+            x2 = b.x;
+            y2 = b.y;
+            if (a.y == b.y) {
+                axis = HORIZONTAL;
+                coordinate = a.y;
+                lo = Math.min(a.x, b.x);
+                hi = Math.max(a.x, b.x);
+            } else if (a.x == b.x) {
+                axis = VERTICAL;
+                coordinate = a.x;
+                lo = Math.min(a.y, b.y);
+                hi = Math.max(a.y, b.y);
+            } else {
+                axis = DIAGONAL;
+                coordinate = lo = hi = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,529 @@
+package aiconnector.collide;
+
+import aiconnector.connector.AIDirection;
+import aiconnector.connector.AIRectangle;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * 按坐标轴排序的障碍索引。<p>
+ * 图元按x、right()、y、bottom()分别排序存放在int数组中，射线探测时二分定位起点，
+ * 再沿探测方向顺序扫描，第一个横跨探测点的图元即为最近障碍。<p>
+ * 有序序列切分为最多CHUNK个图元的块，插入、删除只移动一个块内的元素，块满时对半分裂。
+ * 每块另存一份按起点排序的跨度及终点的前缀最大值，二分即可精确判断块内是否有图元横跨探测点，
+ * 没有的整块跳过：网格布局中沿走廊的探测几乎不进入块内。<p>
+ * 适用于网格对齐的ER图布局：扫描连续内存且探测过程不分配对象。批量加入(insert_all)时排序一次后整体建块。
+ */
+public class SweepBarrierIndex implements BarrierIndex {
+    /**
+     * 块的容量
+     */
+    private static final int CHUNK = 128;
+    /**
+     * 整体建块时每块的图元数，留出插入的空间
+     */
+    private static final int FILL = CHUNK * 3 / 4;
+
+    private final ReadWriteLock _readWriteLock = new ReentrantReadWriteLock();
+    /**
+     * table_id -> 加入时的坐标
+     */
+    private final HashMap<Integer, Snapshot> _snapshots = new HashMap<>();
+    /**
+     * 按x排序，向右探测使用
+     */
+    private final Axis _byX = new Axis();
+    /**
+     * 按right()排序，向左探测使用
+     */
+    private final Axis _byRight = new Axis();
+    /**
+     * 按y排序，向下探测使用
+     */
+    private final Axis _byY = new Axis();
+    /**
+     * 按bottom()排序，向上探测使用
+     */
+    private final Axis _byBottom = new Axis();
+    /**
+     * 加入过的图元的最大宽度，区域查询时用来确定x的扫描起点
+     */
+    private int _maxWidth;
+
+    @Override
+    public void insert(AIRectangle rectangle) {
+        _readWriteLock.writeLock().lock();
+        try {
+            add(rectangle);
+        } finally {
+            _readWriteLock.writeLock().unlock();
+        }
+    }
+
+    private void add(AIRectangle rectangle) {
+        Snapshot old = _snapshots.remove(rectangle.get_table_id());
+        if (old != null) {
+            delete(old);
+        }
+        Snapshot snapshot = new Snapshot(rectangle);
+        _snapshots.put(rectangle.get_table_id(), snapshot);
+        _maxWidth = Math.max(_maxWidth, snapshot.right - snapshot.x);
+        _byX.insert(snapshot.x, snapshot.y, snapshot.bottom, rectangle);
+        _byRight.insert(snapshot.right, snapshot.y, snapshot.bottom, rectangle);
+        _byY.insert(snapshot.y, snapshot.x, snapshot.right, rectangle);
+        _byBottom.insert(snapshot.bottom, snapshot.x, snapshot.right, rectangle);
+    }
+
+    /**
+     * 加入的图元不少于已有图元的1/8时，四个序列各排序一次后整体建块，否则逐个插入
+     */
+    @Override
+    public void insert_all(Collection<? extends AIRectangle> rectangles) {
+        _readWriteLock.writeLock().lock();
+        try {
+            if (rectangles.size() * 8 < _snapshots.size()) {
+                rectangles.forEach(this::add);
+                return;
+            }
+            for (AIRectangle rectangle : rectangles) {
+                Snapshot snapshot = new Snapshot(rectangle);
+                _snapshots.put(rectangle.get_table_id(), snapshot);
+                _maxWidth = Math.max(_maxWidth, snapshot.right - snapshot.x);
+            }
+            List<Snapshot> snapshots = new ArrayList<>(_snapshots.values());
+            int n = snapshots.size();
+            int[][] columns = new int[4][n];
+            AIRectangle[] rects = new AIRectangle[n];
+            for (int i = 0; i < n; i++) {
+                Snapshot snapshot = snapshots.get(i);
+                columns[0][i] = snapshot.x;
+                columns[1][i] = snapshot.y;
+                columns[2][i] = snapshot.right;
+                columns[3][i] = snapshot.bottom;
+                rects[i] = snapshot.rect;
+            }
+            _byX.build(columns[0], columns[1], columns[3], rects, n);
+            _byRight.build(columns[2], columns[1], columns[3], rects, n);
+            _byY.build(columns[1], columns[0], columns[2], rects, n);
+            _byBottom.build(columns[3], columns[0], columns[2], rects, n);
+        } finally {
+            _readWriteLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(AIRectangle rectangle) {
+        _readWriteLock.writeLock().lock();
+        try {
+            Snapshot snapshot = _snapshots.remove(rectangle.get_table_id());
+            if (snapshot == null) {
+                return false;
+            }
+            delete(snapshot);
+            return true;
+        } finally {
+            _readWriteLock.writeLock().unlock();
+        }
+    }
+
+    private void delete(Snapshot snapshot) {
+        _byX.remove(snapshot.x, snapshot.rect);
+        _byRight.remove(snapshot.right, snapshot.rect);
+        _byY.remove(snapshot.y, snapshot.rect);
+        _byBottom.remove(snapshot.bottom, snapshot.rect);
+    }
+
+    @Override
+    public AIRectangle nearest(AIDirection direction, Point origin, int bound, Predicate<AIRectangle> filter) {
+        _readWriteLock.readLock().lock();
+        try {
+            switch (direction) {
+                case RIGHT:
+                    // 第一个 x > origin.x 且纵向覆盖origin.y的图元
+                    return _byX.scan_up(origin.x, bound, origin.y, false, filter);
+                case DOWN:
+                    return _byY.scan_up(origin.y, bound, origin.x, true, filter);
+                case LEFT:
+                    // 最后一个 right() < origin.x 且纵向覆盖origin.y的图元
+                    return _byRight.scan_down(origin.x, bound, origin.y, filter);
+                case UP:
+                    return _byBottom.scan_down(origin.y, bound, origin.x, filter);
+                default:
+                    return null;
+            }
+        } finally {
+            _readWriteLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void query(Rectangle area, Consumer<AIRectangle> consumer) {
+        _readWriteLock.readLock().lock();
+        try {
+            // 相交的图元满足 area.x - _maxWidth <= x < area.x + area.width
+            int from = area.x - _maxWidth, end = area.x + area.width;
+            List<Chunk> chunks = _byX.chunks;
+            for (int c = _byX.chunk_from(from); c < chunks.size(); c++) {
+                Chunk chunk = chunks.get(c);
+                for (int i = chunk.lower_bound(from); i < chunk.size; i++) {
+                    if (chunk.keys[i] >= end) {
+                        return;
+                    }
+                    if (chunk.rects[i].intersects(area)) {
+                        consumer.accept(chunk.rects[i]);
+                    }
+                }
+            }
+        } finally {
+            _readWriteLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        _readWriteLock.readLock().lock();
+        try {
+            return _snapshots.size();
+        } finally {
+            _readWriteLock.readLock().unlock();
+        }
+    }
+
+    private static final class Snapshot {
+        final AIRectangle rect;
+        final int x, y, right, bottom;
+
+        Snapshot(AIRectangle rect) {
+            this.rect = rect;
+            x = rect.x;
+            y = rect.y;
+            right = rect.right();
+            bottom = rect.bottom();
+        }
+    }
+
+    /**
+     * 一个坐标轴上的有序序列：key为排序坐标，[lo, hi]为图元在另一坐标轴上的跨度。
+     * 块内按key有序，块之间key不减；只有序列为空时才有空块。
+     */
+    private static final class Axis {
+        final ArrayList<Chunk> chunks = new ArrayList<>(List.of(new Chunk()));
+        /**
+         * 重建块内跨度时的排序缓冲，只在写锁内使用
+         */
+        final long[] scratch = new long[CHUNK];
+
+        /**
+         * 用未排序的数组整体建块
+         */
+        void build(int[] keys, int[] lo, int[] hi, AIRectangle[] rects, int size) {
+            // 高32位为key，低32位为下标，排序一次即得到key的顺序
+            long[] order = new long[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = (long) keys[i] << 32 | i;
+            }
+            Arrays.sort(order);
+            chunks.clear();
+            Chunk chunk = null;
+            for (long entry : order) {
+                if (chunk == null || chunk.size == FILL) {
+                    if (chunk != null) chunk.rebuild_stab(scratch);
+                    chunks.add(chunk = new Chunk());
+                }
+                int i = (int) entry;
+                chunk.append(keys[i], lo[i], hi[i], rects[i]);
+            }
+            if (chunk == null) {
+                chunks.add(new Chunk());
+            } else {
+                chunk.rebuild_stab(scratch);
+            }
+        }
+
+        void insert(int key, int spanLo, int spanHi, AIRectangle rect) {
+            // 相同key插在已有图元之后
+            int c = Math.min(chunk_after(key), chunks.size() - 1);
+            Chunk chunk = chunks.get(c);
+            int pos = chunk.upper_bound(key);
+            if (chunk.size == CHUNK) {
+                Chunk upper = chunk.split(scratch);
+                chunks.add(c + 1, upper);
+                if (pos > chunk.size) {
+                    pos -= chunk.size;
+                    chunk = upper;
+                }
+            }
+            chunk.insert(pos, key, spanLo, spanHi, rect);
+        }
+
+        void remove(int key, AIRectangle rect) {
+            // 相同key的图元可能跨块
+            for (int c = chunk_from(key); c < chunks.size(); c++) {
+                Chunk chunk = chunks.get(c);
+                for (int pos = chunk.lower_bound(key); pos < chunk.size; pos++) {
+                    if (chunk.keys[pos] != key) {
+                        return;
+                    }
+                    if (chunk.rects[pos] == rect) {
+                        chunk.remove(pos);
+                        if (chunk.size == 0 && chunks.size() > 1) {
+                            chunks.remove(c);
+                        }
+                        return;
+                    }
+                }
+            }
+        }
+
+        /**
+         * 从第一个 key > from 的位置升序扫描，key超出bound时停止。没有图元横跨stab的块整块跳过
+         * @param inclusive true：key <= bound；false：key < bound
+         */
+        AIRectangle scan_up(int from, int bound, int stab, boolean inclusive, Predicate<AIRectangle> filter) {
+            int first = chunk_after(from);
+            for (int c = first; c < chunks.size(); c++) {
+                Chunk chunk = chunks.get(c);
+                if (!chunk.covers(stab)) {
+                    int last = chunk.keys[chunk.size - 1];
+                    if (last > bound || (!inclusive && last == bound)) {
+                        return null;
+                    }
+                    continue;
+                }
+                for (int i = c == first ? chunk.upper_bound(from) : 0; i < chunk.size; i++) {
+                    int key = chunk.keys[i];
+                    if (key > bound || (!inclusive && key == bound)) {
+                        return null;
+                    }
+                    if (chunk.lo[i] <= stab && stab <= chunk.hi[i] && filter.test(chunk.rects[i])) {
+                        return chunk.rects[i];
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * 从最后一个 key < from 的位置降序扫描，key < bound时停止。没有图元横跨stab的块整块跳过
+         */
+        AIRectangle scan_down(int from, int bound, int stab, Predicate<AIRectangle> filter) {
+            int first = chunk_before(from);
+            for (int c = first; c >= 0; c--) {
+                Chunk chunk = chunks.get(c);
+                if (!chunk.covers(stab)) {
+                    if (chunk.keys[0] < bound) {
+                        return null;
+                    }
+                    continue;
+                }
+                for (int i = c == first ? chunk.lower_bound(from) - 1 : chunk.size - 1; i >= 0; i--) {
+                    if (chunk.keys[i] < bound) {
+                        return null;
+                    }
+                    if (chunk.lo[i] <= stab && stab <= chunk.hi[i] && filter.test(chunk.rects[i])) {
+                        return chunk.rects[i];
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return 第一个最大key > key的块，没有返回块数
+         */
+        int chunk_after(int key) {
+            int low = 0, high = chunks.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                Chunk chunk = chunks.get(mid);
+                if (chunk.size == 0 || chunk.keys[chunk.size - 1] <= key) low = mid + 1;
+                else high = mid;
+            }
+            return low;
+        }
+
+        /**
+         * @return 第一个最大key >= key的块，没有返回块数
+         */
+        int chunk_from(int key) {
+            int low = 0, high = chunks.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                Chunk chunk = chunks.get(mid);
+                if (chunk.size == 0 || chunk.keys[chunk.size - 1] < key) low = mid + 1;
+                else high = mid;
+            }
+            return low;
+        }
+
+        /**
+         * @return 最后一个最小key < key的块，没有返回-1
+         */
+        int chunk_before(int key) {
+            int low = 0, high = chunks.size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                Chunk chunk = chunks.get(mid);
+                if (chunk.size > 0 && chunk.keys[0] < key) low = mid + 1;
+                else high = mid;
+            }
+            return low - 1;
+        }
+    }
+
+    /**
+     * 有序序列的一块，图元按key有序存放在并列的数组中。<p>
+     * starts、ends为同一批跨度按起点排序后的结果，reach[i]为ends[0..i]的最大值：
+     * 起点 <= stab 的跨度是starts的前缀，其中终点的最大值 >= stab 即有跨度横跨stab。
+     */
+    private static final class Chunk {
+        int size;
+        final int[] keys = new int[CHUNK];
+        final int[] lo = new int[CHUNK];
+        final int[] hi = new int[CHUNK];
+        final AIRectangle[] rects = new AIRectangle[CHUNK];
+        final int[] starts = new int[CHUNK];
+        final int[] ends = new int[CHUNK];
+        final int[] reach = new int[CHUNK];
+
+        /**
+         * @return 块内是否有图元的跨度横跨stab
+         */
+        boolean covers(int stab) {
+            int low = 0, high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (starts[mid] <= stab) low = mid + 1;
+                else high = mid;
+            }
+            return low > 0 && reach[low - 1] >= stab;
+        }
+
+        /**
+         * 建块时在末尾追加，之后需要rebuild_stab
+         */
+        void append(int key, int spanLo, int spanHi, AIRectangle rect) {
+            keys[size] = key;
+            lo[size] = spanLo;
+            hi[size] = spanHi;
+            rects[size] = rect;
+            size++;
+        }
+
+        void insert(int pos, int key, int spanLo, int spanHi, AIRectangle rect) {
+            int moved = size - pos;
+            System.arraycopy(keys, pos, keys, pos + 1, moved);
+            System.arraycopy(lo, pos, lo, pos + 1, moved);
+            System.arraycopy(hi, pos, hi, pos + 1, moved);
+            System.arraycopy(rects, pos, rects, pos + 1, moved);
+            keys[pos] = key;
+            lo[pos] = spanLo;
+            hi[pos] = spanHi;
+            rects[pos] = rect;
+
+            // 跨度插在相同起点之后
+            int at = 0;
+            while (at < size && starts[at] <= spanLo) at++;
+            System.arraycopy(starts, at, starts, at + 1, size - at);
+            System.arraycopy(ends, at, ends, at + 1, size - at);
+            starts[at] = spanLo;
+            ends[at] = spanHi;
+            size++;
+            update_reach(at);
+        }
+
+        void remove(int pos) {
+            int spanLo = lo[pos], spanHi = hi[pos];
+            int moved = size - pos - 1;
+            System.arraycopy(keys, pos + 1, keys, pos, moved);
+            System.arraycopy(lo, pos + 1, lo, pos, moved);
+            System.arraycopy(hi, pos + 1, hi, pos, moved);
+            System.arraycopy(rects, pos + 1, rects, pos, moved);
+            rects[size - 1] = null;
+
+            int at = 0;
+            while (starts[at] != spanLo || ends[at] != spanHi) at++;
+            System.arraycopy(starts, at + 1, starts, at, size - at - 1);
+            System.arraycopy(ends, at + 1, ends, at, size - at - 1);
+            size--;
+            update_reach(at);
+        }
+
+        /**
+         * 后一半移到新块
+         * @return 新块
+         */
+        Chunk split(long[] scratch) {
+            Chunk upper = new Chunk();
+            int half = size >>> 1;
+            upper.size = size - half;
+            System.arraycopy(keys, half, upper.keys, 0, upper.size);
+            System.arraycopy(lo, half, upper.lo, 0, upper.size);
+            System.arraycopy(hi, half, upper.hi, 0, upper.size);
+            System.arraycopy(rects, half, upper.rects, 0, upper.size);
+            Arrays.fill(rects, half, size, null);
+            size = half;
+            rebuild_stab(scratch);
+            upper.rebuild_stab(scratch);
+            return upper;
+        }
+
+        /**
+         * 按起点重新排序全部跨度
+         */
+        void rebuild_stab(long[] scratch) {
+            for (int i = 0; i < size; i++) {
+                // 高32位为起点，低32位为下标
+                scratch[i] = (long) lo[i] << 32 | i;
+            }
+            Arrays.sort(scratch, 0, size);
+            for (int i = 0; i < size; i++) {
+                int index = (int) scratch[i];
+                starts[i] = lo[index];
+                ends[i] = hi[index];
+            }
+            update_reach(0);
+        }
+
+        private void update_reach(int from) {
+            for (int i = from; i < size; i++) {
+                reach[i] = i == 0 ? ends[0] : Math.max(reach[i - 1], ends[i]);
+            }
+        }
+
+        /**
+         * @return 第一个 keys[i] >= key 的位置
+         */
+        int lower_bound(int key) {
+            int low = 0, high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (keys[mid] < key) low = mid + 1;
+                else high = mid;
+            }
+            return low;
+        }
+
+        /**
+         * @return 第一个 keys[i] > key 的位置
+         */
+        int upper_bound(int key) {
+            int low = 0, high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (keys[mid] <= key) low = mid + 1;
+                else high = mid;
+            }
+            return low;
+        }
+    }
+}
@@ -3,7 +3,6 @@ package aiconnector.collide;
 import aiconnector.setting.AIConstants;
 import aiconnector.utils.Tuple;
 
-import java.util.Objects;
 
 import static java.lang.Math.abs;
 import static java.lang.Math.sqrt;
@@ -33,13 +32,20 @@ public class Utils {
              在距离小于的某个值的线里面，有些是一些不冲突的线延伸导致的冲突，这些需要排除。如：1、同一个区域的反向线；2、不同区域的延长线（包括正向线、反向线）。
              这里面我们首先排除反向线.以下根据向量算法方向的理论判定。
              *******************************************************************************************************************/
-            Tuple<Double,Double> p1 = vector_direction(l1);
-            Tuple<Double,Double> p2 =vector_direction(l2);
-            return Objects.equals(p1.a, p2.a) && Objects.equals(p1.b, p2.b);
+            return same_direction(l1, l2);
         }
 
         return false;
     }
+    /**
+     * 功能：两条线段的向量方向相同，即vector_direction的单位向量相等；整数运算，没有浮点舍入，不创建对象.<p>
+     *  条件：叉积为0且点积大于0
+     */
+    public static boolean same_direction(Vec4d l1, Vec4d l2) {
+        long dx1 = l1.at(2) - l1.at(0), dy1 = l1.at(3) - l1.at(1);
+        long dx2 = l2.at(2) - l2.at(0), dy2 = l2.at(3) - l2.at(1);
+        return dx1 * dy2 - dy1 * dx2 == 0 && dx1 * dx2 + dy1 * dy2 > 0;
+    }
     /**
      * 功能：计算点到直线的距离<p>
      * l1: 直线<p>
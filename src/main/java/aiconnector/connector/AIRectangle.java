@@ -1,18 +1,15 @@
 package aiconnector.connector;
 
-import aiconnector.setting.AIConstants;
 import aiconnector.utils.Tuple;
 import lombok.Getter;
 import lombok.Setter;
 
 import java.awt.*;
-import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
-import static aiconnector.connector.AIDirection.*;
-import static aiconnector.connector.AIDirection.RIGHT;
 import static java.util.logging.Level.WARNING;
 
 public class AIRectangle extends Rectangle {
@@ -49,6 +46,10 @@ public class AIRectangle extends Rectangle {
      */
     @Getter
     private final ConcurrentHashMap<Integer, Point> _anchorLine2Point = new ConcurrentHashMap<>();
+    /**
+     * 四条边上的锚点槽位
+     */
+    private final AnchorSlots _anchorSlots = new AnchorSlots(this);
 
     /**
      * Params:
@@ -58,8 +59,10 @@ public class AIRectangle extends Rectangle {
      * the previous value associated with key, or null if there was no mapping for key
      */
     public Point insert_or_update_anchor_point(Point point, int lineID) {
-        logger.info("attach point: " + point);
-        return _anchorLine2Point.put(lineID,point);
+        logger.info(() -> "attach point: " + point);
+        Point previous = _anchorLine2Point.put(lineID,point);
+        _anchorSlots.occupy(lineID, point);
+        return previous;
     }
 
     /**
@@ -70,117 +73,96 @@ public class AIRectangle extends Rectangle {
      * the previous value associated with key, or null if there was no mapping for key
      */
     public Point detach_anchor_point(int lineID) {
-        logger.info("detach point: " + _anchorLine2Point.get(lineID));
+        logger.info(() -> "detach point: " + _anchorLine2Point.get(lineID));
+        _anchorSlots.release(lineID);
         return _anchorLine2Point.remove(lineID);
     }
 
+    /**
+     * 从startPoint起沿图元的边查找空闲锚点，startPoint对齐到所在边最近的槽位。
+     * @param forward_direction startPoint所在的边
+     * @param bInvertPeek 逆时针方向为true
+     */
     public final Tuple<Point, AIDirection> get_free_anchor(int connectorID, Point startPoint, AIDirection forward_direction, boolean bInvertPeek)
     {
-        Point clonePoint = (Point) startPoint.clone();
-        Tuple<Point, AIDirection> guideAnchor = get_next_anchor(connectorID, clonePoint, forward_direction, bInvertPeek);
-
-        return guideAnchor;
+        return _anchorSlots.next_free(connectorID, startPoint, forward_direction, bInvertPeek);
     }
 
-    private Tuple<Point, AIDirection> get_next_anchor(int connectorID, Point startPoint, AIDirection forward_direction, boolean bInvertPeek/*逆时针方向为true*/)
+    /**
+     * 增加同一条路径检查，允许返回和当前同样的锚点，解决画线时上下跳动的问题。
+     */
+    public boolean check_anchor_available(int uLineIndentify, Point anchorPoint)
     {
-        AIDirection next_direction = forward_direction;
+        return _anchorSlots.available(uLineIndentify, anchorPoint);
+    }
 
-        if (check_anchor_available(connectorID, startPoint)) {
-            return Tuple.of(startPoint, next_direction);
-        }
+    /**
+     * 按AnchorPlanner的安排为一批连线预先分配同一条边上的锚点，未分配到的连线清除原来的锚点。
+     * 只预留槽位的连线不改变锚点。
+     * @see AnchorSlots#plan
+     * @return 分配的锚点，未分配为null
+     */
+    Point[] plan_anchors(AIDirection side, List<Integer> connectorIDs, int[] coordinates, boolean[] reserved) {
+        Point[] anchors = _anchorSlots.plan(side, connectorIDs, coordinates, reserved);
+        update_planned(connectorIDs, anchors, reserved);
+        return anchors;
+    }
+
+    /**
+     * 为plan_anchors中没有分配到的连线在其他空闲槽位上分配锚点
+     * @see AnchorSlots#plan_overflow
+     */
+    void plan_overflow(List<AIDirection> sides, List<Integer> connectorIDs, int[] coordinates, boolean[] reserved) {
+        update_planned(connectorIDs, _anchorSlots.plan_overflow(sides, connectorIDs, coordinates, reserved), reserved);
+    }
 
-        switch (forward_direction)
-        {
-            case LEFT:
-                if (!bInvertPeek)
-                {
-                    startPoint.y -= AIConstants.POINT_SPACE;
-                    if (startPoint.y < this.y + AIConstants.POINT2EDGE_GAP) {
-                        next_direction = UP;
-                        startPoint.setLocation(this.x + AIConstants.POINT2EDGE_GAP, this.y);
-                    }
-                }
-                else {
-                    startPoint.y += AIConstants.POINT_SPACE;
-                    if (startPoint.y > this.bottom() - AIConstants.POINT2EDGE_GAP) {
-                        next_direction = DOWN;
-                        startPoint.setLocation( this.x + AIConstants.POINT2EDGE_GAP, this.bottom());
-                    }
-                }
-                break;
-            case UP:
-                if (!bInvertPeek)
-                {
-                    startPoint.x += AIConstants.POINT_SPACE;
-                    if (startPoint.x > this.right() - AIConstants.POINT2EDGE_GAP) {
-                        next_direction = RIGHT;
-                        startPoint.setLocation( this.right(), this.getY() + AIConstants.POINT2EDGE_GAP);
-                    }
-                }
-                else {
-                    startPoint.x -= AIConstants.POINT_SPACE;
-                    if (startPoint.x < this.x + AIConstants.POINT2EDGE_GAP) {
-                        next_direction = LEFT;
-                        startPoint.setLocation( this.x, this.y + AIConstants.POINT2EDGE_GAP );
-                    }
-                }
-                break;
-            case RIGHT:
-                if (!bInvertPeek)
-                {
-                    startPoint.y += AIConstants.POINT_SPACE;
-                    if (startPoint.y > this.bottom() - AIConstants.POINT2EDGE_GAP) {
-                        next_direction = DOWN;
-                        startPoint.setLocation( this.right() - AIConstants.POINT2EDGE_GAP, this.bottom());
-                    }
-                }
-                else {
-                    startPoint.y -= AIConstants.POINT_SPACE;
-                    if (startPoint.y < this.y + AIConstants.POINT2EDGE_GAP) {
-                        next_direction = UP;
-                        startPoint.setLocation( this.right() - AIConstants.POINT2EDGE_GAP, this.y);
-                    }
-                }
-                break;
-            case DOWN:
-                if (!bInvertPeek)
-                {
-                    startPoint.x -= AIConstants.POINT_SPACE;
-                    if (startPoint.x < this.x + AIConstants.POINT2EDGE_GAP) {
-                        next_direction = LEFT;
-                        startPoint.setLocation( this.x, this.bottom() - AIConstants.POINT2EDGE_GAP);
-                    }
-                }
-                else {
-                    startPoint.x += AIConstants.POINT_SPACE;
-                    if (startPoint.x > this.right() - AIConstants.POINT2EDGE_GAP) {
-                        next_direction = RIGHT;
-                        startPoint.setLocation(this.right(), this.bottom() - AIConstants.POINT2EDGE_GAP);
-                    }
-                }
-                break;
-            default:
-                break;
+    private void update_planned(List<Integer> connectorIDs, Point[] anchors, boolean[] reserved) {
+        for (int i = 0; i < anchors.length; i++) {
+            if (reserved[i]) {
+                continue;
+            }
+            if (anchors[i] != null) {
+                _anchorLine2Point.put(connectorIDs.get(i), anchors[i]);
+            } else {
+                _anchorLine2Point.remove(connectorIDs.get(i));
+            }
         }
+    }
 
-        return get_next_anchor(connectorID, startPoint, next_direction, bInvertPeek);
+    /**
+     * @return 连线在该图元上由AnchorPlanner预先分配、尚未被搜索改变的锚点，及其用于哪条边上的查找，没有返回null
+     */
+    public Tuple<Point, AIDirection> get_planned_anchor(int connectorID) {
+        AIDirection side = _anchorSlots.planned(connectorID);
+        Point anchor = _anchorLine2Point.get(connectorID);
+        return side == null || anchor == null ? null : Tuple.of(anchor, side);
     }
 
     /**
-     * 增加同一条路径检查，允许返回和当前同样的锚点，解决画线时上下跳动的问题。
+     * @return 连线在该图元上为两路搜索的另一路预留的锚点，及其用于哪条边上的查找，没有返回null
      */
-    public boolean check_anchor_available(int uLineIndentify, Point anchorPoint)
-    {
-        Point point = _anchorLine2Point.get(uLineIndentify);
-        if (point != null) {
-            if (point.equals(anchorPoint)) {
-                return true;
-            }
+    public Tuple<Point, AIDirection> get_reserved_anchor(int connectorID) {
+        return _anchorSlots.reserved(connectorID);
+    }
+
+    /**
+     * 直接指定连线的预分配(或预留)锚点，用于重建搜索现场
+     * @param side 在哪条边上查找时使用
+     * @see aiconnector.manager.SearchSnapshot#restore
+     */
+    public void plan_anchor(Point anchor, AIDirection side, boolean reserved, int connectorID) {
+        if (!reserved) {
+            _anchorLine2Point.put(connectorID, anchor);
         }
+        _anchorSlots.plan(connectorID, anchor, side, reserved);
+    }
 
-        Collection<Point> pointCollection = _anchorLine2Point.values();
-        return !pointCollection.contains(anchorPoint);
+    /**
+     * 清除图元上的全部锚点
+     */
+    public void clear_anchor_points() {
+        _anchorLine2Point.clear();
+        _anchorSlots.clear();
     }
 
     @Override
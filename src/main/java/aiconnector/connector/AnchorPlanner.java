@@ -0,0 +1,135 @@
+package aiconnector.connector;
+
+import java.awt.*;
+import java.util.List;
+import java.util.*;
+
+import static aiconnector.connector.AIDirection.*;
+
+/**
+ * 批量搜索前统一分配锚点。<p>
+ * 逐条搜索时锚点按搜索完成的先后占用，结果依赖线程的执行顺序，后搜索的连线还可能占掉先前连线的锚点引起反复重新搜索。
+ * 这里先把一批连线按图元分组，每条连线取朝向另一端图元的边；同一条边上的连线按另一端图元中心在该边上的投影排序，
+ * 依次占用空闲槽位，相互之间不交叉。搜索时直接使用预分配的锚点，搜索的边与预分配的不同时照常查找空闲锚点。<p>
+ * 源图元上取搜索起点所在的边(与HeuristicSearch的初始方向一致)。左上、左下、右上、右下两路搜索时，
+ * 不朝向目标图元的一路也预留槽位，两路都不依赖其他连线搜索完成的先后，路径确定后释放没有用到的一个。
+ */
+public final class AnchorPlanner {
+    private AnchorPlanner() {}
+
+    /**
+     * 为一批连线两端的图元预先分配锚点，在开始搜索之前调用
+     */
+    public static void plan(Collection<AIConnector> connectors) {
+        // 图元 -> 边 -> 该边上的连线，图元按对象区分，按插入顺序处理保证结果确定
+        IdentityHashMap<AIRectangle, EnumMap<AIDirection, List<Request>>> requests = new IdentityHashMap<>();
+        List<AIRectangle> order = new ArrayList<>();
+        for (AIConnector connector : connectors) {
+            AIRectangle src = connector.get_srcRect(), dst = connector.get_dstRect();
+            if (src.get_table_id() == dst.get_table_id()) {
+                continue;
+            }
+            List<AIDirection> sides = source_sides(src, dst);
+            for (int i = 0; i < sides.size(); i++) {
+                request(requests, order, src, dst, sides.get(i), connector.get_connector_id(), i > 0);
+            }
+            request(requests, order, dst, src, facing(dst, src), connector.get_connector_id(), false);
+        }
+
+        for (AIRectangle rect : order) {
+            // 边上的槽位不够时，在其他边上分配
+            List<Request> overflow = new ArrayList<>();
+            requests.get(rect).forEach((side, list) -> {
+                list.sort(Comparator.comparingInt((Request request) -> request.coordinate).thenComparingInt(request -> request.connectorID));
+                Point[] anchors = rect.plan_anchors(side, connector_ids(list), coordinates(list), reserved(list));
+                for (int i = 0; i < anchors.length; i++) {
+                    if (anchors[i] == null) overflow.add(list.get(i));
+                }
+            });
+            if (!overflow.isEmpty()) {
+                rect.plan_overflow(overflow.stream().map(request -> request.side).toList(), connector_ids(overflow), coordinates(overflow), reserved(overflow));
+            }
+        }
+    }
+
+    private static List<Integer> connector_ids(List<Request> requests) {
+        return requests.stream().map(request -> request.connectorID).toList();
+    }
+
+    private static int[] coordinates(List<Request> requests) {
+        return requests.stream().mapToInt(request -> request.coordinate).toArray();
+    }
+
+    private static boolean[] reserved(List<Request> requests) {
+        boolean[] reserved = new boolean[requests.size()];
+        for (int i = 0; i < reserved.length; i++) {
+            reserved[i] = requests.get(i).reserved;
+        }
+        return reserved;
+    }
+
+    private static void request(IdentityHashMap<AIRectangle, EnumMap<AIDirection, List<Request>>> requests, List<AIRectangle> order,
+                                AIRectangle rect, AIRectangle other, AIDirection side, int connectorID, boolean reserved) {
+        EnumMap<AIDirection, List<Request>> sides = requests.computeIfAbsent(rect, key -> {
+            order.add(key);
+            return new EnumMap<>(AIDirection.class);
+        });
+        int coordinate = (int) (side == LEFT || side == RIGHT ? other.getCenterY() : other.getCenterX());
+        sides.computeIfAbsent(side, key -> new ArrayList<>()).add(new Request(connectorID, side, coordinate, reserved));
+    }
+
+    /**
+     * 源图元上搜索起点所在的边：与HeuristicSearch的初始方向一致，重叠取右边；
+     * 两路搜索为横向、纵向两条边，朝向目标图元的一条在前
+     */
+    static List<AIDirection> source_sides(AIRectangle src, AIRectangle dst) {
+        AIDirection direction = HeuristicSearch.init_direction(src, dst);
+        switch (direction) {
+            case LEFT: case UP: case RIGHT: case DOWN:
+                return List.of(direction);
+            case LEFT_UP: case LEFT_DOWN: case RIGHT_UP: case RIGHT_DOWN:
+                AIDirection horizontal = HeuristicSearch.horizontal(direction), vertical = HeuristicSearch.vertical(direction);
+                return facing(src, dst) == vertical ? List.of(vertical, horizontal) : List.of(horizontal, vertical);
+            case OVERLAP:
+                return List.of(RIGHT);
+            default:
+                return List.of(facing(src, dst));
+        }
+    }
+
+    /**
+     * 朝向另一个图元的边：水平方向投影相交取上下边，垂直方向投影相交取左右边，都不相交取中心距离较大的方向，重叠取右边
+     */
+    static AIDirection facing(AIRectangle rect, AIRectangle other) {
+        double dx = other.getCenterX() - rect.getCenterX(), dy = other.getCenterY() - rect.getCenterY();
+        boolean horizontal = other.x <= rect.right() && rect.x <= other.right();
+        boolean vertical = other.y <= rect.bottom() && rect.y <= other.bottom();
+        if (horizontal && vertical) {
+            return RIGHT;
+        }
+        if (horizontal || !vertical && Math.abs(dy) > Math.abs(dx)) {
+            return dy < 0 ? UP : DOWN;
+        }
+        return dx < 0 ? LEFT : RIGHT;
+    }
+
+    private static final class Request {
+        final int connectorID;
+        final AIDirection side;
+        /**
+         * 另一端图元中心在边上的投影
+         */
+        final int coordinate;
+        /**
+         * 只预留槽位
+         */
+        final boolean reserved;
+
+        Request(int connectorID, AIDirection side, int coordinate, boolean reserved) {
+            this.connectorID = connectorID;
+            this.side = side;
+            this.coordinate = coordinate;
+            this.reserved = reserved;
+        }
+    }
+}
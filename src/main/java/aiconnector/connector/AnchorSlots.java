@@ -0,0 +1,485 @@
+package aiconnector.connector;
+
+import aiconnector.monitor.AnchorAllocationEvent;
+import aiconnector.setting.AIConstants;
+import aiconnector.utils.Tuple;
+
+import java.awt.*;
+import java.util.List;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+import static aiconnector.connector.AIDirection.*;
+
+/**
+ * 图元四条边上的锚点槽位。<p>
+ * 每条边从靠近原点的一端起，距端点POINT2EDGE_GAP开始每隔POINT_SPACE一个槽位；
+ * 占用情况用BitSet记录，槽位->连线id用数组记录，查找下一个空闲锚点是一次nextClearBit/previousClearBit。<p>
+ * 槽位随图元的位置、大小计算，图元移动或缩放后按已有锚点重建。不在槽位上的锚点(例如目标图元的中心)不占用槽位。<p>
+ * 查找(next_free、available)只读，多个搜索可以同时查找；占用、释放、预分配互斥。
+ */
+final class AnchorSlots {
+    /**
+     * 边的顺序：左、上、右、下，即顺时针
+     */
+    private static final AIDirection[] SIDES = {LEFT, UP, RIGHT, DOWN};
+
+    private final AIRectangle _rect;
+    private final ReadWriteLock _readWriteLock = new ReentrantReadWriteLock();
+    private final BitSet[] _used = new BitSet[SIDES.length];
+    private final int[][] _owners = new int[SIDES.length][];
+    /**
+     * 连线id -> 占用的 {边, 槽位}
+     */
+    private final HashMap<Integer, int[]> _byConnector = new HashMap<>();
+    /**
+     * 由AnchorPlanner预先分配了槽位的连线 -> 查找的边，在这条边上查找时直接使用预分配的槽位(边上没有空闲槽位时在其他边上)
+     */
+    private final HashMap<Integer, Integer> _planned = new HashMap<>();
+    /**
+     * 连线id -> 预留的 {查找的边, 边, 槽位}：两路搜索(左上、左下、右上、右下)另一路的起点，连线占用锚点时释放
+     */
+    private final HashMap<Integer, int[]> _reserved = new HashMap<>();
+    /**
+     * 建立槽位时图元的位置
+     */
+    private final Rectangle _bounds = new Rectangle(0, 0, -1, -1);
+
+    AnchorSlots(AIRectangle rect) {
+        _rect = rect;
+    }
+
+    /**
+     * 从startPoint所在的槽位起，沿边查找第一个空闲的槽位，边走完了转到下一条边。
+     * 连线自己占用的槽位视为空闲，预先分配或预留的槽位在startPoint所在的边上时直接返回。
+     * @param side startPoint所在的边
+     * @param bInvertPeek 逆时针方向为true
+     * @return 锚点及其所在的边；四条边都占满时返回startPoint所在的槽位
+     */
+    Tuple<Point, AIDirection> next_free(int connectorID, Point startPoint, AIDirection side, boolean bInvertPeek) {
+        return read(() -> find_free(connectorID, startPoint, side, bInvertPeek));
+    }
+
+    private Tuple<Point, AIDirection> find_free(int connectorID, Point startPoint, AIDirection side, boolean bInvertPeek) {
+        int s = side_index(side);
+        if (s < 0) {
+            return Tuple.of(startPoint, side);
+        }
+        AnchorAllocationEvent event = new AnchorAllocationEvent();
+        event.begin();
+        int[] own = _byConnector.get(connectorID);
+        Integer planned = _planned.get(connectorID);
+        if (own != null && planned != null && planned == s) {
+            commit_planned(event, connectorID, side);
+            return Tuple.of(point(own[0], own[1]), SIDES[own[0]]);
+        }
+        int[] reserved = _reserved.get(connectorID);
+        if (reserved != null && reserved[0] == s) {
+            commit_planned(event, connectorID, side);
+            return Tuple.of(point(reserved[1], reserved[2]), SIDES[reserved[1]]);
+        }
+        int slot = nearest_slot(s, startPoint);
+        int first = slot, probes = 0;
+        for (int i = 0; i <= SIDES.length; i++) {
+            boolean increase = forward(s, bInvertPeek);
+            int found = find(s, slot, increase, own);
+            if (found >= 0) {
+                commit(event, connectorID, side, probes + Math.abs(found - slot), i + 1, true);
+                return Tuple.of(point(s, found), SIDES[s]);
+            }
+            probes += increase ? count(s) - slot : slot + 1;
+            // 转到下一条边，从靠近当前边的一端开始
+            s = Math.floorMod(s + (bInvertPeek ? -1 : 1), SIDES.length);
+            slot = forward(s, bInvertPeek) ? 0 : count(s) - 1;
+        }
+        commit(event, connectorID, side, probes, SIDES.length + 1, false);
+        s = side_index(side);
+        return Tuple.of(point(s, first), side);
+    }
+
+    private void commit(AnchorAllocationEvent event, int connectorID, AIDirection side, int probes, int sides, boolean found) {
+        if (event.shouldCommit()) {
+            event.tableId = _rect.get_table_id();
+            event.connectorId = connectorID;
+            event.side = side.name();
+            event.probes = probes;
+            event.sides = sides;
+            event.found = found;
+            event.commit();
+        }
+    }
+
+    private void commit_planned(AnchorAllocationEvent event, int connectorID, AIDirection side) {
+        if (event.shouldCommit()) {
+            event.planned = true;
+            commit(event, connectorID, side, 0, 1, true);
+        }
+    }
+
+    /**
+     * 记录连线的锚点，释放该连线原来占用、预留的槽位
+     */
+    void occupy(int connectorID, Point anchor) {
+        write(() -> {
+            occupy_slot(connectorID, anchor);
+            return null;
+        });
+    }
+
+    private void occupy_slot(int connectorID, Point anchor) {
+        release_reserved(connectorID);
+        int[] slot = slot_of(anchor);
+        if (slot != null && Arrays.equals(slot, _byConnector.get(connectorID))) {
+            return;
+        }
+        release_slot(connectorID);
+        if (slot != null && !_used[slot[0]].get(slot[1])) {
+            _used[slot[0]].set(slot[1]);
+            _owners[slot[0]][slot[1]] = connectorID;
+            _byConnector.put(connectorID, slot);
+        }
+    }
+
+    /**
+     * 锚点是否可用：不在槽位上的点逐个比较
+     */
+    boolean available(int connectorID, Point anchor) {
+        return read(() -> {
+            int[] slot = slot_of(anchor);
+            if (slot == null) {
+                Point point = _rect.get_anchorLine2Point().get(connectorID);
+                return anchor.equals(point) || !_rect.get_anchorLine2Point().containsValue(anchor);
+            }
+            return !_used[slot[0]].get(slot[1]) || _owners[slot[0]][slot[1]] == connectorID;
+        });
+    }
+
+    /**
+     * @return 预分配的槽位用于哪条边上的查找，没有预分配返回null
+     */
+    AIDirection planned(int connectorID) {
+        return read(() -> {
+            Integer s = _planned.get(connectorID);
+            return s == null ? null : SIDES[s];
+        });
+    }
+
+    /**
+     * @return 预留的锚点及用于哪条边上的查找，没有预留返回null
+     */
+    Tuple<Point, AIDirection> reserved(int connectorID) {
+        return read(() -> {
+            int[] reserved = _reserved.get(connectorID);
+            return reserved == null ? null : Tuple.of(point(reserved[1], reserved[2]), SIDES[reserved[0]]);
+        });
+    }
+
+    /**
+     * 把锚点所在的槽位作为连线在side上查找时的预分配(或预留)槽位，槽位已被占用时不分配
+     */
+    void plan(int connectorID, Point anchor, AIDirection side, boolean reserved) {
+        write(() -> {
+            if (reserved) {
+                release_reserved(connectorID);
+            } else {
+                release_own(connectorID);
+            }
+            int s = side_index(side);
+            int[] slot = slot_of(anchor);
+            if (s >= 0 && slot != null && !_used[slot[0]].get(slot[1])) {
+                assign(connectorID, s, slot[0], slot[1], reserved);
+            }
+            return null;
+        });
+    }
+
+    void release(int connectorID) {
+        write(() -> {
+            release_slot(connectorID);
+            return null;
+        });
+    }
+
+    /**
+     * 为同一条边上的一批连线分配槽位：按期望位置的顺序依次占用空闲槽位，相互之间不交叉。
+     * 连线原来在这一类(预分配或预留)中的槽位先释放；空闲槽位不够时，排在两端的连线不分配，之后用plan_overflow分配。
+     * @param connectorIDs 按期望位置从小到大排列
+     * @param coordinates 期望位置，左右边为y，上下边为x
+     * @param reserved 为true的连线只预留槽位(两路搜索另一路的起点)，不作为连线的锚点
+     * @return 分配的锚点，未分配为null
+     */
+    Point[] plan(AIDirection side, List<Integer> connectorIDs, int[] coordinates, boolean[] reserved) {
+        return write(() -> plan_slots(side, connectorIDs, coordinates, reserved));
+    }
+
+    private Point[] plan_slots(AIDirection side, List<Integer> connectorIDs, int[] coordinates, boolean[] reserved) {
+        int s = side_index(side);
+        int k = connectorIDs.size();
+        Point[] anchors = new Point[k];
+        if (s < 0 || k == 0) {
+            return anchors;
+        }
+        for (int i = 0; i < k; i++) {
+            if (reserved[i]) {
+                release_reserved(connectorIDs.get(i));
+            } else {
+                release_own(connectorIDs.get(i));
+            }
+        }
+
+        int[] free = new int[count(s)];
+        int m = 0;
+        for (int slot = _used[s].nextClearBit(0); slot < free.length; slot = _used[s].nextClearBit(slot + 1)) {
+            free[m++] = slot;
+        }
+        // 先按期望位置向后挤，再从末尾向前挤，保持顺序
+        int[] index = new int[k];
+        for (int i = 0; i < k; i++) {
+            Point point = SIDES[s] == LEFT || SIDES[s] == RIGHT ? new Point(_rect.x, coordinates[i]) : new Point(coordinates[i], _rect.y);
+            int nearest = Arrays.binarySearch(free, 0, m, nearest_slot(s, point));
+            index[i] = nearest >= 0 ? nearest : Math.min(m - 1, -nearest - 1);
+            if (i > 0) index[i] = Math.max(index[i], index[i - 1] + 1);
+        }
+        for (int i = k - 1; i >= 0; i--) {
+            index[i] = Math.min(index[i], i == k - 1 ? m - 1 : index[i + 1] - 1);
+        }
+        for (int i = 0; i < k; i++) {
+            if (index[i] < 0) continue;
+            int slot = free[index[i]], connectorID = connectorIDs.get(i);
+            anchors[i] = assign(connectorID, s, s, slot, reserved[i]);
+        }
+        return anchors;
+    }
+
+    /**
+     * 为plan中没有分配到的连线分配槽位：查找的边上离期望位置最近的空闲槽位，没有时依次取顺时针、逆时针相邻的边和对边上最近的。
+     * 结果只取决于预分配的顺序，搜索时在查找的边上直接使用。
+     * @param sides 查找的边
+     * @param coordinates 期望位置，左右边为y，上下边为x
+     * @param reserved 为true的连线只预留槽位
+     * @return 分配的锚点，四条边都占满时为null
+     */
+    Point[] plan_overflow(List<AIDirection> sides, List<Integer> connectorIDs, int[] coordinates, boolean[] reserved) {
+        return write(() -> {
+            Point[] anchors = new Point[connectorIDs.size()];
+            for (int i = 0; i < anchors.length; i++) {
+                int s = side_index(sides.get(i));
+                if (s < 0) continue;
+                Point expected = SIDES[s] == LEFT || SIDES[s] == RIGHT ? new Point(_rect.x, coordinates[i]) : new Point(coordinates[i], _rect.y);
+                expected = point(s, nearest_slot(s, expected));
+                for (int turn : new int[]{0, 1, -1, 2}) {
+                    int t = Math.floorMod(s + turn, SIDES.length);
+                    int slot = nearest_free(t, expected);
+                    if (slot >= 0) {
+                        anchors[i] = assign(connectorIDs.get(i), s, t, slot, reserved[i]);
+                        break;
+                    }
+                }
+            }
+            return anchors;
+        });
+    }
+
+    /**
+     * 预分配或预留槽位
+     * @param s 查找的边
+     * @param t 槽位所在的边
+     */
+    private Point assign(int connectorID, int s, int t, int slot, boolean reserved) {
+        _used[t].set(slot);
+        _owners[t][slot] = connectorID;
+        if (reserved) {
+            _reserved.put(connectorID, new int[]{s, t, slot});
+        } else {
+            _byConnector.put(connectorID, new int[]{t, slot});
+            _planned.put(connectorID, s);
+        }
+        return point(t, slot);
+    }
+
+    /**
+     * @return 边t上离point最近的空闲槽位，没有返回-1
+     */
+    private int nearest_free(int t, Point point) {
+        int best = -1;
+        long bestDistance = Long.MAX_VALUE;
+        for (int slot = _used[t].nextClearBit(0); slot < count(t); slot = _used[t].nextClearBit(slot + 1)) {
+            Point candidate = point(t, slot);
+            long distance = (long) Math.abs(candidate.x - point.x) + Math.abs(candidate.y - point.y);
+            if (distance < bestDistance) {
+                best = slot;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    void clear() {
+        write(() -> {
+            _planned.clear();
+            _byConnector.clear();
+            _reserved.clear();
+            for (BitSet used : _used) {
+                if (used != null) used.clear();
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 在读锁内执行，图元位置变化后先在写锁内重建槽位
+     */
+    private <T> T read(Supplier<T> reader) {
+        _readWriteLock.readLock().lock();
+        try {
+            if (!bounds_changed()) {
+                return reader.get();
+            }
+        } finally {
+            _readWriteLock.readLock().unlock();
+        }
+        return write(reader);
+    }
+
+    private <T> T write(Supplier<T> writer) {
+        _readWriteLock.writeLock().lock();
+        try {
+            ensure_bounds();
+            return writer.get();
+        } finally {
+            _readWriteLock.writeLock().unlock();
+        }
+    }
+
+    private void release_slot(int connectorID) {
+        release_own(connectorID);
+        release_reserved(connectorID);
+    }
+
+    private void release_own(int connectorID) {
+        _planned.remove(connectorID);
+        clear_slot(connectorID, _byConnector.remove(connectorID));
+    }
+
+    private void release_reserved(int connectorID) {
+        int[] reserved = _reserved.remove(connectorID);
+        if (reserved != null) {
+            clear_slot(connectorID, new int[]{reserved[1], reserved[2]});
+        }
+    }
+
+    private void clear_slot(int connectorID, int[] slot) {
+        if (slot != null && _owners[slot[0]][slot[1]] == connectorID) {
+            _used[slot[0]].clear(slot[1]);
+        }
+    }
+
+    /**
+     * 在边s上从slot起查找空闲槽位
+     * @param increase 沿坐标增大的方向查找
+     * @return 槽位，没有返回-1
+     */
+    private int find(int s, int slot, boolean increase, int[] own) {
+        int n = count(s);
+        if (slot < 0 || slot >= n) {
+            return -1;
+        }
+        int free = increase ? _used[s].nextClearBit(slot) : _used[s].previousClearBit(slot);
+        if (free >= n) {
+            free = -1;
+        }
+        // 自己占用的槽位比空闲槽位更近
+        if (own != null && own[0] == s && (increase ? own[1] >= slot && (free < 0 || own[1] < free)
+                                                     : own[1] <= slot && own[1] > free)) {
+            return own[1];
+        }
+        return free;
+    }
+
+    /**
+     * 顺时针方向在左边、下边是坐标减小，在上边、右边是坐标增大
+     */
+    private static boolean forward(int s, boolean bInvertPeek) {
+        boolean clockwiseIncrease = SIDES[s] == UP || SIDES[s] == RIGHT;
+        return clockwiseIncrease != bInvertPeek;
+    }
+
+    private static int side_index(AIDirection side) {
+        for (int i = 0; i < SIDES.length; i++) {
+            if (SIDES[i] == side) return i;
+        }
+        return -1;
+    }
+
+    private int count(int s) {
+        return _owners[s].length;
+    }
+
+    private static int slots(int length) {
+        return Math.max(1, (length - 2 * AIConstants.POINT2EDGE_GAP) / AIConstants.POINT_SPACE + 1);
+    }
+
+    private int nearest_slot(int s, Point point) {
+        int offset = (SIDES[s] == LEFT || SIDES[s] == RIGHT ? point.y - _rect.y : point.x - _rect.x) - AIConstants.POINT2EDGE_GAP;
+        int slot = Math.round(offset / (float) AIConstants.POINT_SPACE);
+        return Math.max(0, Math.min(count(s) - 1, slot));
+    }
+
+    private Point point(int s, int slot) {
+        int offset = AIConstants.POINT2EDGE_GAP + slot * AIConstants.POINT_SPACE;
+        switch (SIDES[s]) {
+            case LEFT: return new Point(_rect.x, _rect.y + offset);
+            case RIGHT: return new Point(_rect.right(), _rect.y + offset);
+            case UP: return new Point(_rect.x + offset, _rect.y);
+            default: return new Point(_rect.x + offset, _rect.bottom());
+        }
+    }
+
+    /**
+     * @return 锚点所在的 {边, 槽位}，不在槽位上返回null
+     */
+    private int[] slot_of(Point anchor) {
+        for (int s = 0; s < SIDES.length; s++) {
+            int slot = nearest_slot(s, anchor);
+            if (point(s, slot).equals(anchor)) {
+                return new int[]{s, slot};
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return 图元的位置、大小与建立槽位时不同
+     */
+    private boolean bounds_changed() {
+        return _bounds.x != _rect.x || _bounds.y != _rect.y || _bounds.width != _rect.width || _bounds.height != _rect.height;
+    }
+
+    /**
+     * 图元位置变化后重建槽位，不再落在槽位上的锚点不占用槽位
+     */
+    private void ensure_bounds() {
+        if (!bounds_changed()) {
+            return;
+        }
+        _bounds.setBounds(_rect.x, _rect.y, _rect.width, _rect.height);
+        for (int s = 0; s < SIDES.length; s++) {
+            int n = slots(SIDES[s] == LEFT || SIDES[s] == RIGHT ? _bounds.height : _bounds.width);
+            _used[s] = new BitSet(n);
+            _owners[s] = new int[n];
+        }
+        _byConnector.clear();
+        _planned.clear();
+        _reserved.clear();
+        for (Map.Entry<Integer, Point> entry : _rect.get_anchorLine2Point().entrySet()) {
+            int[] slot = slot_of(entry.getValue());
+            if (slot != null && !_used[slot[0]].get(slot[1])) {
+                _used[slot[0]].set(slot[1]);
+                _owners[slot[0]][slot[1]] = entry.getKey();
+                _byConnector.put(entry.getKey(), slot);
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package aiconnector.connector;
+
+import aiconnector.manager.AIManagerItf;
+import aiconnector.router.AnchorAllocator;
+import aiconnector.router.ObstacleView;
+import aiconnector.router.RoutingEngine;
+import aiconnector.router.RoutingEngineProvider;
+
+import java.awt.*;
+import java.util.List;
+
+/**
+ * 启发式路径搜索引擎，画布的默认引擎，也是其他引擎找不到路径时的退路。
+ * 不维护额外的数据结构，两路搜索使用画布的执行器。
+ * @see HeuristicSearch
+ */
+public class HeuristicRoutingEngine implements RoutingEngine {
+    public static final String NAME = "heuristic";
+
+    private final AIManagerItf _manager;
+
+    public HeuristicRoutingEngine(AIManagerItf manager) {
+        _manager = manager;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public List<Point> route(AIRectangle src, AIRectangle dst, ObstacleView obstacles, AnchorAllocator anchors) {
+        Polyline route = route_polyline(src, dst, obstacles, anchors);
+        return route == null ? null : route.to_points();
+    }
+
+    @Override
+    public Polyline route_polyline(AIRectangle src, AIRectangle dst, ObstacleView obstacles, AnchorAllocator anchors) {
+        return new HeuristicSearch(src, dst, obstacles, anchors, _manager.get_executor()).search();
+    }
+
+    public static class Provider implements RoutingEngineProvider {
+        @Override
+        public String name() {
+            return NAME;
+        }
+
+        @Override
+        public RoutingEngine create(AIManagerItf manager) {
+            return new HeuristicRoutingEngine(manager);
+        }
+    }
+}
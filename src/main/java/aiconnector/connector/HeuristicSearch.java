@@ -0,0 +1,1384 @@
+package aiconnector.connector;
+
+import aiconnector.manager.OverlapCluster;
+import aiconnector.manager.RouteExecutor;
+import aiconnector.monitor.RouteSearchEvent;
+import aiconnector.monitor.TrapTraversalEvent;
+import aiconnector.router.AnchorAllocator;
+import aiconnector.router.ObstacleView;
+import aiconnector.setting.AIConstants;
+import aiconnector.utils.Triple;
+import aiconnector.utils.Tuple;
+
+import java.awt.*;
+import java.util.List;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
+
+import static aiconnector.connector.AIDirection.*;
+import static aiconnector.setting.AIConstants.BARRIER_SPACE;
+import static java.lang.Math.*;
+import static java.util.logging.Level.WARNING;
+
+/**
+ * 一次启发式路径搜索：从源图元出发，障碍探测、陷阱判定后逐步行进，斜向时横向、纵向两路同时搜索取最优。<p>
+ * 搜索状态(终点等)只在一次搜索内有效，每次搜索新建实例。
+ * @see HeuristicRoutingEngine
+ */
+final class HeuristicSearch {
+
+    /**
+     * 使用java自带的log工具
+     */
+    private static final Logger logger = Logger.getLogger(HeuristicSearch.class.getName());
+    static {
+        logger.setLevel(WARNING);
+    }
+
+    /**
+     * 源、目标图元
+     */
+    private final AIRectangle _srcRect;
+    private final AIRectangle _dstRect;
+    private final ObstacleView _obstacles;
+    private final AnchorAllocator _anchors;
+    /**
+     * 两路搜索的执行器
+     */
+    private final RouteExecutor _executor;
+    /**
+     * 初始目标点-多路搜索的情况下，每个线程的终点可能不同。
+     */
+    private final AtomicReference<Point> _endPoint = new AtomicReference<>();
+    /**
+     * 障碍探测的过滤条件。原先的线性扫描在无序并行流上用dropWhile排除源、目标图元，实际并不生效，
+     * 源、目标图元一直参与障碍探测；这里保持该行为。
+     */
+    private static final Predicate<AIRectangle> _barrierFilter = C -> true;
+
+    HeuristicSearch(AIRectangle _srcRect, AIRectangle _dstRect, ObstacleView obstacles, AnchorAllocator anchors, RouteExecutor executor) {
+        this._srcRect = _srcRect;
+        this._dstRect = _dstRect;
+        _obstacles = obstacles;
+        _anchors = anchors;
+        _executor = executor;
+    }
+
+    /**
+     * 搜索路径，并占用两端的锚点
+     * @return 路径，无法确定源、目标图元的相对方向时返回null
+     */
+    Polyline search() {
+        AIDirection direction = init_direction(_srcRect, _dstRect);
+        if (direction.equals(UNKOWN)) {
+            return null;
+        }
+        RouteSearchEvent event = new RouteSearchEvent();
+        event.begin();
+
+        // 终点可以简单初始化为中心点（最后一步会进行修正）
+        _endPoint.set(new Point((int) _dstRect.getCenterX(), (int) _dstRect.getCenterY()));
+
+        logger.info(() -> "------------------------------------>>>[搜索开始]<<<-------------------------------------");
+        SearchContext context = new SearchContext();
+        PolylineBuilder route = processTwoDirection(direction, context);
+
+        _anchors.attach(_srcRect, new Point(route.x(0), route.y(0)));
+        _anchors.attach(_dstRect, _endPoint.get());
+
+        logger.info(() -> "------------------------------------>>>[搜索结束]<<<-------------------------------------");
+        Polyline polyline = route.build();
+        if (event.shouldCommit()) {
+            event.connectorId = _anchors.connector_id();
+            event.srcTableId = _srcRect.get_table_id();
+            event.dstTableId = _dstRect.get_table_id();
+            event.direction = direction.name();
+            event.points = polyline.size();
+            event.routeLength = polyline.route_length();
+            event.bends = polyline.bends();
+            event.truncated = context.is_truncated();
+            event.commit();
+        }
+        return polyline;
+    }
+
+    /**
+     * 处理左上、左下、右上、右下两个方向的路径搜索，提供两路查找并采用最优路径。
+     * @param direction 初始方向
+     * @param context 本次搜索的状态，任一分支超过MAX_STEP时标记truncated
+     * @return 最优路径
+     */
+    private PolylineBuilder processTwoDirection(AIDirection direction, SearchContext context) {
+        PolylineBuilder route = new PolylineBuilder();
+        if (direction == UP
+                || direction == DOWN
+                || direction == LEFT
+                || direction == RIGHT
+                || direction == OVERLAP) {
+            Tuple<Point, Point> guid = init_start_point(direction, _srcRect, _dstRect);
+            route.add(guid.a);
+            processPoints(route, guid.a, direction,new Tuple<>(null,null),new Tuple<>(null,null), context);
+
+            return route;
+        }
+
+        if (direction != LEFT_UP && direction != LEFT_DOWN && direction != RIGHT_UP && direction != RIGHT_DOWN) {
+            return route;
+        }
+
+        // 横向、纵向两路同时搜索，共享最优长度上界，先走到终点的一路剪掉另一路不可能更短的搜索
+        SearchContext horizontal = context.fork(), vertical = context.fork();
+        Tuple<Tuple<PolylineBuilder, Long>, Tuple<PolylineBuilder, Long>> routes = _executor.fork_join(
+                () -> processBranch(horizontal(direction), horizontal),
+                () -> processBranch(vertical(direction), vertical));
+        if (horizontal.is_truncated() || vertical.is_truncated()) {
+            context.truncated();
+        }
+
+        // 处理结果：采用最短路径(路径相同采用折线最少)
+        return shortest(routes.a.a, routes.a.b, routes.b.a, routes.b.b);
+    }
+
+    /**
+     * 从源图元上指定方向的锚点出发搜索一路路径
+     * @return <路径(被剪枝为null)，用于比较的路径长度>
+     */
+    private Tuple<PolylineBuilder, Long> processBranch(AIDirection direction, SearchContext context) {
+        PolylineBuilder route = new PolylineBuilder();
+        Tuple<Point, Point> guid = init_start_point(direction, _srcRect, _dstRect);
+        route.add(guid.a);
+        processPoints(route, guid.a, direction, new Tuple<>(null,null),new Tuple<>(null,null), context);
+        if (context.is_pruned()) {
+            return Tuple.of(null, Long.MAX_VALUE);
+        }
+        long length = route.route_length();
+        // 不合法的路径长度按0计算，不能作为上界
+        if (length > 0) {
+            length = context.complete(length + distance_to_target(route.x(route.size() - 1), route.y(route.size() - 1)));
+        }
+        return Tuple.of(route, length);
+    }
+
+    /**
+     * 行进主入口
+     * @param route 已走过的路径点
+     * @param startPoint 当前起始点
+     * @param direction 当前行进方向
+     * @param parallelBarrierTuple 当前平行障碍，用来计算当前绕障需最远走行距离
+     * @param prevParallelBarrierTuple 上一步平行障碍。在没有平行障碍的情况下，用来计算当前绕障需最远走行距离
+     * @param context 分支状态，用来剪枝
+     */
+    private void processPoints(PolylineBuilder route, Point startPoint, AIDirection direction,
+                               Tuple<AIRectangle, TrapData> parallelBarrierTuple,
+                               Tuple<AIRectangle, TrapData> prevParallelBarrierTuple,
+                               SearchContext context) {
+        // 迷路了就回家吧
+        if (route.size() > AIConstants.MAX_STEP)
+        {
+            logger.info(() -> "process error：route size exceed limit: " + AIConstants.MAX_STEP);
+            context.truncated();
+            return;
+        }
+        // 另一路已经找到更短的路径
+        if (bound_exceeded(route, startPoint, context))
+        {
+            logger.info(() -> "process pruned at: " + startPoint);
+            return;
+        }
+
+        if (direction == UP || direction == DOWN || direction == LEFT || direction == RIGHT) {
+            if (direction == UP)
+                processUp(route, startPoint, parallelBarrierTuple, prevParallelBarrierTuple, context);
+            else if (direction == DOWN)
+                processDown(route, startPoint, parallelBarrierTuple, prevParallelBarrierTuple, context);
+            else if (direction == LEFT)
+                processLeft(route, startPoint, parallelBarrierTuple, prevParallelBarrierTuple, context);
+            else
+                processRight(route, startPoint, parallelBarrierTuple, prevParallelBarrierTuple, context);
+        }
+        else {
+            // 子分支从当前位置继续，不复制已走的点
+            PolylineBuilder route1 = route.fork();
+            PolylineBuilder route2 = route.fork();
+            SearchContext context1 = context.fork(), context2 = context.fork();
+            if (direction == LEFT_UP || direction == LEFT_DOWN || direction == RIGHT_UP || direction == RIGHT_DOWN) {
+                _executor.fork_join(
+                        () -> { processPoints(route1, startPoint, horizontal(direction), parallelBarrierTuple, prevParallelBarrierTuple, context1); return route1; },
+                        () -> { processPoints(route2, startPoint, vertical(direction), parallelBarrierTuple, prevParallelBarrierTuple, context2); return route2; });
+            }
+            if (context1.is_truncated() || context2.is_truncated()) {
+                context.truncated();
+            }
+            if (context1.is_pruned() && context2.is_pruned()) {
+                context.pruned();
+                return;
+            }
+            // 处理结果：采用最短路径(路径相同采用折线最少)
+            route.append(shortest(context1.is_pruned() ? null : route1, context2.is_pruned() ? null : route2));
+        }
+    }
+
+    /**
+     * 折线方向的横向分量
+     */
+    static AIDirection horizontal(AIDirection direction) {
+        return direction == LEFT_UP || direction == LEFT_DOWN ? LEFT : RIGHT;
+    }
+
+    /**
+     * 折线方向的纵向分量
+     */
+    static AIDirection vertical(AIDirection direction) {
+        return direction == LEFT_UP || direction == RIGHT_UP ? UP : DOWN;
+    }
+
+    /**
+     * 采用最短路径，路径长度相同采用折线最少的
+     * @param route1 路径，被剪枝为null
+     * @param route2 路径，被剪枝为null
+     */
+    private static PolylineBuilder shortest(PolylineBuilder route1, PolylineBuilder route2) {
+        if (route1 == null || route2 == null) {
+            return route1 == null ? route2 : route1;
+        }
+        return shortest(route1, route1.route_length(), route2, route2.route_length());
+    }
+
+    private static PolylineBuilder shortest(PolylineBuilder route1, long routeLength1, PolylineBuilder route2, long routeLength2) {
+        if (route1 == null || route2 == null) {
+            return route1 == null ? route2 : route1;
+        }
+        if (routeLength1 < routeLength2) {
+            return route1;
+        } else if (routeLength2 < routeLength1) {
+            return route2;
+        } else {
+            if (route1.size() < route2.size()) {
+                return route1;
+            } else {
+                return route2;
+            }
+        }
+    }
+
+    private void processUp(PolylineBuilder route, Point startPoint,
+                           Tuple<AIRectangle, TrapData> parallelBarrierTuple,
+                           Tuple<AIRectangle, TrapData> prevParallelBarrierTuple,
+                           SearchContext context) {
+        logger.info(() -> ">>>[processUp]<<< start point: " + startPoint);
+        Point newStartPoint = (Point) startPoint.clone();
+        AIRectangle prevParallelBarrier, parallelBarrier, barrier;
+        TrapData prevParallelInverse_trap, parallelInverse_trap, inverse_trap, trap;
+
+        // 获取当前的障碍及正反向陷阱
+        parallelBarrier = parallelBarrierTuple.a;
+        parallelInverse_trap = parallelBarrierTuple.b;
+        prevParallelBarrier = prevParallelBarrierTuple.a;
+        prevParallelInverse_trap = prevParallelBarrierTuple.b;
+        var barrierTriple = barrier_detect(startPoint, UP, parallelBarrier);
+        barrier = barrierTriple.a;
+        trap = barrierTriple.b;
+        inverse_trap = barrierTriple.c;
+
+//region 只考虑障碍的情况下，计算最远距离
+        // 没有障碍
+        AIRectangle targetRect = _dstRect;
+        if (null == barrier)
+        {
+            // 没有平行障碍
+//            if (null == parallelBarrier)
+//            {
+                if (startPoint.x >= targetRect.x && startPoint.x <= targetRect.right())
+                {
+//                    _endPoint.set(new Point(startPoint.x,targetRect.bottom));
+                    route.add(startPoint.x, targetRect.bottom());
+                    return;
+                }
+//            }
+            // 没有障碍的情况下，能够向上走得最远距离（因为反向行走的情况，需要考虑平行障碍来纠正方向）
+            newStartPoint.y = min(_endPoint.get().y, parallelBarrier != null ? parallelBarrier.y - BARRIER_SPACE : Integer.MAX_VALUE);
+            if (prevParallelBarrier != null)	//	需要绕过反向障碍，无论是否存在陷阱(修复异常情况4)
+            {
+                if (newStartPoint.x < prevParallelBarrier.x)
+                {
+                    newStartPoint.y = min(newStartPoint.y, prevParallelInverse_trap._UpOrLeft + BARRIER_SPACE); // 产生障碍
+                }
+                else
+                {
+                    newStartPoint.y = min(newStartPoint.y, prevParallelInverse_trap._DownOrRight + BARRIER_SPACE);// 产生障碍
+                }
+            }
+        }
+        // 存在障碍
+        else {
+            // 不存在陷阱
+            if (trap._trap_type == TRAP_TYPE.TRAP_NONE)
+            {
+                newStartPoint.y = barrier.bottom() + BARRIER_SPACE;
+            }
+            else
+            {
+                newStartPoint.y = max(trap._DownOrRight, trap._UpOrLeft)+ BARRIER_SPACE;
+            }
+        }
+//endregion
+
+//region 计算下一步最优移动方向, 不考虑平行障碍
+        AIDirection nextDirection = LEFT;// 初始化下一步方向
+        // 没有障碍
+        if (null == barrier)
+        {
+            if (newStartPoint.x < _endPoint.get().x) nextDirection = RIGHT;
+        }
+        else
+        {
+            if (_endPoint.get().x < barrier.x)
+            {
+                nextDirection = LEFT;
+            }
+            else
+            {
+                if (_endPoint.get().x > barrier.right())
+                {
+                    nextDirection = RIGHT;
+                }
+                else
+                {
+                    boolean best = abs(_endPoint.get().x - barrier.x) + abs(newStartPoint.x - barrier.x) + abs(inverse_trap._UpOrLeft - barrier.y) + abs(inverse_trap._UpOrLeft - _endPoint.get().y) >
+                            abs(barrier.right() - newStartPoint.x) + abs(barrier.right() - _endPoint.get().x) + abs(inverse_trap._DownOrRight - barrier.y) + abs(inverse_trap._DownOrRight - _endPoint.get().y);
+                    nextDirection = best ? RIGHT : LEFT;
+                }
+            }
+        }
+//endregion
+//region 检查最佳方向是否走的桶（进一步逼近半开陷阱）
+        if (LEFT == nextDirection)
+        {
+            if (trap._trap_type == TRAP_TYPE.TRAP_DOWNORRIGHT_EDGE)
+            {
+                newStartPoint.y = min(newStartPoint.y, trap._forward + BARRIER_SPACE);
+            }
+        }
+        else
+        {
+            if (trap._trap_type == TRAP_TYPE.TRAP_UPORLEFT_EDGE)
+            {
+                newStartPoint.y = min(newStartPoint.y, trap._forward + BARRIER_SPACE);
+            }
+        }
+//endregion
+
+        newStartPoint = get_point_not_conincdence(UP, newStartPoint, barrier, nextDirection, parallelBarrier, parallelInverse_trap);
+
+        route.add(newStartPoint);
+        processPoints(route, newStartPoint, nextDirection, Tuple.of(barrier, inverse_trap), parallelBarrierTuple, context);
+
+    }
+
+    private void processDown(PolylineBuilder route, Point startPoint,
+                             Tuple<AIRectangle, TrapData> parallelBarrierTuple,
+                             Tuple<AIRectangle, TrapData> prevParallelBarrierTuple,
+                             SearchContext context) {
+        logger.info(() -> ">>>[processDown]<<< start point: " + startPoint);
+        Point newStartPoint = (Point) startPoint.clone();
+        AIRectangle prevParallelBarrier, parallelBarrier, barrier;
+        TrapData prevParallelInverse_trap, parallelInverse_trap, inverse_trap, trap;
+
+        // 获取当前的障碍及正反向陷阱
+        parallelBarrier = parallelBarrierTuple.a;
+        parallelInverse_trap = parallelBarrierTuple.b;
+        prevParallelBarrier = prevParallelBarrierTuple.a;
+        prevParallelInverse_trap = prevParallelBarrierTuple.b;
+        var barrierTriple = barrier_detect(startPoint, DOWN, parallelBarrier);
+        barrier = barrierTriple.a;
+        trap = barrierTriple.b;
+        inverse_trap = barrierTriple.c;
+
+//region 只考虑水平障碍的情况下，计算最远距离
+        // 没有障碍
+        AIRectangle targetRect = _dstRect;
+        if (null == barrier)
+        {
+            // 没有平行障碍
+//            if (null == parallelBarrier)
+//            {
+                if (startPoint.x >= targetRect.x && startPoint.x <= targetRect.right())
+                {
+                    route.add(startPoint.x, targetRect.y);
+                    return;
+                }
+//            }
+            // 没有障碍的情况下，能够向下走得最远距离（因为反向行走的情况，需要考虑平行障碍来纠正方向）
+            newStartPoint.y = max(_endPoint.get().y, parallelBarrier != null ? parallelBarrier.bottom() + BARRIER_SPACE : Integer.MIN_VALUE);
+            if (prevParallelBarrier != null)	//	需要绕过反向障碍，无论是否存在陷阱(修复异常情况4)
+            {
+                if (newStartPoint.x < prevParallelBarrier.x)
+                {
+                    newStartPoint.y = max(newStartPoint.y, prevParallelInverse_trap._UpOrLeft - BARRIER_SPACE);	//	这里减去为了产生障碍
+                }
+                else
+                {
+                    newStartPoint.y = max(newStartPoint.y, prevParallelInverse_trap._DownOrRight - BARRIER_SPACE);//	这里减去为了产生障碍
+                }
+            }
+        }
+        // 存在障碍
+        else {
+            // 不存在陷阱
+            if (trap._trap_type == TRAP_TYPE.TRAP_NONE)
+            {
+                newStartPoint.y = barrier.y- BARRIER_SPACE;
+            }
+            else
+            {
+                newStartPoint.y = min(trap._DownOrRight, trap._UpOrLeft)- BARRIER_SPACE;
+            }
+        }
+//endregion 只考虑障碍的情况下，计算最远距离
+
+//region 计算下一步最优移动方向, 不考虑平行障碍
+        AIDirection nextDirection = LEFT;// 初始化下一步方向
+        // 没有障碍
+        if (null == barrier)
+        {
+            if (newStartPoint.x < _endPoint.get().x) nextDirection = RIGHT;
+        }
+        else
+        {
+            if (_endPoint.get().x < barrier.x)
+            {
+                nextDirection = LEFT;
+            }
+            else
+            {
+                if (_endPoint.get().x > barrier.right())
+                {
+                    nextDirection = RIGHT;
+                }
+                else
+                {
+                    boolean best = abs(_endPoint.get().x - barrier.x) + abs(newStartPoint.x - barrier.x) + abs(inverse_trap._UpOrLeft-barrier.y) + abs(inverse_trap._UpOrLeft - _endPoint.get().y) >
+                            abs(barrier.right() - newStartPoint.x) + abs(barrier.right() - _endPoint.get().x) + abs(inverse_trap._DownOrRight - barrier.y) + abs(inverse_trap._DownOrRight - _endPoint.get().y);
+                    nextDirection = best ? RIGHT : LEFT;
+                }
+            }
+        }
+//endregion
+//region 检查最佳方向是否走的桶（进一步逼近半开陷阱）
+        if (LEFT == nextDirection)
+        {
+            if (trap._trap_type == TRAP_TYPE.TRAP_DOWNORRIGHT_EDGE)
+            {
+                newStartPoint.y = max(newStartPoint.y, trap._forward - BARRIER_SPACE);
+            }
+        }
+        else
+        {
+            if (trap._trap_type == TRAP_TYPE.TRAP_UPORLEFT_EDGE)
+            {
+                newStartPoint.y = max(newStartPoint.y, trap._forward - BARRIER_SPACE);
+            }
+        }
+//endregion
+
+        newStartPoint = get_point_not_conincdence(DOWN, newStartPoint, barrier, nextDirection, parallelBarrier, parallelInverse_trap);
+
+        route.add(newStartPoint);
+        processPoints(route, newStartPoint, nextDirection, Tuple.of(barrier, inverse_trap), parallelBarrierTuple, context);
+
+    }
+
+    private void processLeft(PolylineBuilder route, Point startPoint,
+                             Tuple<AIRectangle, TrapData> parallelBarrierTuple,
+                             Tuple<AIRectangle, TrapData> prevParallelBarrierTuple,
+                             SearchContext context) {
+        logger.info(() -> ">>>[processLeft]<<< start point: " + startPoint);
+        Point newStartPoint = (Point) startPoint.clone();
+
+        AIRectangle prevParallelBarrier, parallelBarrier, barrier;
+        TrapData prevParallelInverse_trap, parallelInverse_trap, inverse_trap, trap;
+
+        // 获取当前的障碍及正反向陷阱
+        parallelBarrier = parallelBarrierTuple.a;
+        parallelInverse_trap = parallelBarrierTuple.b;
+        prevParallelBarrier = prevParallelBarrierTuple.a;
+        prevParallelInverse_trap = prevParallelBarrierTuple.b;
+        var barrierTriple = barrier_detect(startPoint, LEFT, parallelBarrier);
+        barrier = barrierTriple.a;
+        trap = barrierTriple.b;
+        inverse_trap = barrierTriple.c;
+
+//region 只考虑水平障碍的情况下，计算最远距离
+        // 没有障碍
+        if ( null == barrier)
+        {
+            // 没有平行障碍
+//            if (null == parallelBarrier)
+//            {
+                AIRectangle dst = _dstRect;
+                if (startPoint.y >= dst.y && startPoint.y <= dst.bottom())
+                {
+//                    _endPoint.set(new Point(dst.right,startPoint.y));
+                    route.add(dst.right(), startPoint.y);
+                    return;
+                }
+//            }
+            // 没有障碍的情况下，能够向左走得最远距离（因为反向行走的情况，需要考虑平行障碍来纠正方向）
+            newStartPoint.x = min(_endPoint.get().x,
+                    parallelBarrier!=null ? parallelBarrier.x - BARRIER_SPACE : Integer.MAX_VALUE);
+            if (prevParallelBarrier != null)	//	需要绕过反向障碍，无论是否存在陷阱(修复异常情况4)
+            {
+                if (newStartPoint.y < prevParallelBarrier.y)
+                {
+                    newStartPoint.x = min(newStartPoint.x, prevParallelInverse_trap._UpOrLeft + BARRIER_SPACE);// 产生障碍
+                }
+                else
+                {
+                    newStartPoint.x = min(newStartPoint.x, prevParallelInverse_trap._DownOrRight + BARRIER_SPACE);// 产生障碍
+                }
+            }
+        }
+        // 存在障碍
+        else {
+            // 不存在陷阱
+            if (trap._trap_type == TRAP_TYPE.TRAP_NONE)
+            {
+                newStartPoint.x = barrier.right() + BARRIER_SPACE;
+            }
+            else
+            {
+                newStartPoint.x = max(trap._DownOrRight, trap._UpOrLeft) + BARRIER_SPACE;
+            }
+        }
+//endregion 只考虑水平障碍的情况下，计算最远距离
+
+//region 计算下一步最优移动方向, 不考虑平行障碍
+        AIDirection nextDirection = UP;// 初始化下一步方向
+        // 没有障碍
+        if (null == barrier)
+        {
+            if (newStartPoint.y < _endPoint.get().y) nextDirection = DOWN;
+        }
+        else
+        {
+            if (_endPoint.get().y < barrier.y)
+            {
+                nextDirection = UP;
+            }
+            else
+            {
+                if (_endPoint.get().y > barrier.bottom())
+                {
+                    nextDirection = DOWN;
+                }
+                else
+                {
+                    var best = abs(_endPoint.get().y - barrier.y) + abs(newStartPoint.y - barrier.y) + abs(inverse_trap._UpOrLeft - barrier.x) + abs(inverse_trap._UpOrLeft - _endPoint.get().x) >
+                            abs(barrier.bottom() - newStartPoint.y) + abs(barrier.bottom() - _endPoint.get().y)+ abs(inverse_trap._DownOrRight - barrier.x) + abs(inverse_trap._DownOrRight - _endPoint.get().x);
+                    nextDirection = best ? DOWN : UP;
+                }
+            }
+        }
+//endregion
+//region 检查最佳方向是否走的通（进一步逼近半开陷阱）
+        if (UP == nextDirection)
+        {
+            if (TRAP_TYPE.TRAP_DOWNORRIGHT_EDGE == trap._trap_type)
+            {
+                newStartPoint.x = min(newStartPoint.x, trap._forward + BARRIER_SPACE);
+            }
+        }
+        else
+        {
+            if (TRAP_TYPE.TRAP_UPORLEFT_EDGE == trap._trap_type)
+            {
+                newStartPoint.x = min(newStartPoint.x, trap._forward + BARRIER_SPACE);
+            }
+        }
+//endregion 检查最佳方向是否走的桶（考虑平行障碍并进行坐标修正）
+
+        newStartPoint = get_point_not_conincdence(LEFT, newStartPoint, barrier, nextDirection, parallelBarrier, parallelInverse_trap);
+
+        route.add(newStartPoint);
+        processPoints(route, newStartPoint, nextDirection, Tuple.of(barrier, inverse_trap), parallelBarrierTuple, context);
+
+    }
+
+    private void processRight(PolylineBuilder route, Point startPoint,
+                              Tuple<AIRectangle, TrapData> parallelBarrierTuple,
+                              Tuple<AIRectangle, TrapData> prevParallelBarrierTuple,
+                              SearchContext context) {
+        logger.info(() -> ">>>[processRight]<<< start point: " + startPoint);
+        Point newStartPoint = (Point) startPoint.clone();
+        AIRectangle prevParallelBarrier, parallelBarrier, barrier;
+        TrapData prevParallelInverse_trap, parallelInverse_trap, inverse_trap, trap;
+
+        // 获取当前的障碍及正反向陷阱
+        parallelBarrier = parallelBarrierTuple.a;
+        parallelInverse_trap = parallelBarrierTuple.b;
+        prevParallelBarrier = prevParallelBarrierTuple.a;
+        prevParallelInverse_trap = prevParallelBarrierTuple.b;
+        var barrierTriple = barrier_detect(startPoint, RIGHT, parallelBarrier);
+        barrier = barrierTriple.a;
+        trap = barrierTriple.b;
+        inverse_trap = barrierTriple.c;
+
+//region 只考虑水平障碍的情况下，计算最远距离
+        // 没有障碍
+        AIRectangle targetRect = _dstRect;
+        if (null == barrier)
+        {
+            // 没有平行障碍
+//            if (null == parallelBarrier)
+//            {
+                if (startPoint.y >= targetRect.y && startPoint.y <= targetRect.bottom())
+                {
+//                    _endPoint.set(new Point(targetRect.x,startPoint.y));
+                    route.add(targetRect.x, startPoint.y);
+                    return;
+                }
+//            }
+            // 没有障碍的情况下，能够向右走得最远距离（因为反向行走的情况，需要考虑平行障碍来纠正方向）
+            newStartPoint.x = max(_endPoint.get().x, parallelBarrier != null ? parallelBarrier.right() + BARRIER_SPACE : Integer.MIN_VALUE);
+            if (prevParallelBarrier != null)	//	需要绕过反向障碍，无论是否存在陷阱(修复异常情况4)
+            {	// 在反向障碍的上面还是下面
+                if (newStartPoint.y < prevParallelBarrier.y)
+                {
+                    newStartPoint.x = max(newStartPoint.x, prevParallelInverse_trap._UpOrLeft - BARRIER_SPACE);// 产生障碍
+                }
+                else
+                {
+                    newStartPoint.x = max(newStartPoint.x, prevParallelInverse_trap._DownOrRight - BARRIER_SPACE);// 产生障碍
+                }
+            }
+        }
+        // 存在障碍
+        else {
+            // 不存在陷阱
+            if (trap._trap_type == TRAP_TYPE.TRAP_NONE)
+            {
+                newStartPoint.x = barrier.x - BARRIER_SPACE;
+            }
+            else
+            {
+                newStartPoint.x = min(trap._DownOrRight, trap._UpOrLeft ) - BARRIER_SPACE;
+            }
+        }
+//endregion 只考虑水平障碍的情况下，计算最远距离
+
+//region 计算下一步最优移动方向, 不考虑平行障碍
+        AIDirection nextDirection = UP;// 初始化下一步方向
+        // 没有障碍
+        if (null == barrier)
+        {
+            if (newStartPoint.y < _endPoint.get().y) nextDirection = DOWN;
+        }
+        else
+        {
+            if (_endPoint.get().y < barrier.y)
+            {
+                nextDirection = UP;
+            }
+            else
+            {
+                if (_endPoint.get().y > barrier.bottom())
+                {
+                    nextDirection = DOWN;
+                }
+                else
+                {
+                    var best = abs(_endPoint.get().y - barrier.y) + abs(newStartPoint.y - barrier.y) + abs(inverse_trap._UpOrLeft - barrier.x) + abs(inverse_trap._UpOrLeft - _endPoint.get().x) >
+                            abs(barrier.bottom() - newStartPoint.y) + abs(barrier.bottom() - _endPoint.get().y) + abs(inverse_trap._DownOrRight - barrier.x) + abs(inverse_trap._DownOrRight - _endPoint.get().x);
+                    nextDirection = best ? DOWN : UP;
+                }
+            }
+        }
+//endregion
+//region 检查最佳方向是否走的通（进一步逼近半开陷阱）
+        if (UP == nextDirection)
+        {
+            if (trap._trap_type == TRAP_TYPE.TRAP_DOWNORRIGHT_EDGE)
+            {
+                newStartPoint.x = max(newStartPoint.x, trap._forward - BARRIER_SPACE);
+            }
+        }
+        else
+        {
+            if (trap._trap_type == TRAP_TYPE.TRAP_UPORLEFT_EDGE)
+            {
+                newStartPoint.x = max(newStartPoint.x, trap._forward - BARRIER_SPACE);
+            }
+        }
+//endregion 检查最佳方向是否走的桶（考虑平行障碍并进行坐标修正）
+
+        // 下一步能走多远，需要估算一个值，进而判断是否存在“线冲突”,如果存在则调节当前点(当前的机制是缩短走行路径)
+        newStartPoint = get_point_not_conincdence(RIGHT, newStartPoint, barrier, nextDirection, parallelBarrier, parallelInverse_trap);
+
+        route.add(newStartPoint);
+        processPoints(route, newStartPoint, nextDirection, Tuple.of(barrier, inverse_trap), parallelBarrierTuple, context);
+
+    }
+
+    Point get_point_not_conincdence(AIDirection direction, Point newStartPoint, AIRectangle barrier, AIDirection nextDirection, AIRectangle parallelBarrier, TrapData parallelInverse_trap)
+    {
+        Point newStartPoint2 = (Point) newStartPoint.clone();
+        Point nextStepPoint = conjecture_next_step(direction, newStartPoint2, barrier, nextDirection, parallelBarrier, parallelInverse_trap);
+
+        boolean bLoop = true;
+        int max_loop = AIConstants.MAX_RETRY_TIMES;
+        while (bLoop && max_loop-- >0)
+        {
+            boolean coin = _obstacles.check_conincdence(newStartPoint2, nextStepPoint);
+            if (coin)
+            {
+                if (barrier != null) {
+                    if (LEFT == direction) { newStartPoint2.x += AIConstants.POINT_SPACE; nextStepPoint.x += AIConstants.POINT_SPACE;}
+                    else if (UP == direction) { newStartPoint2.y += AIConstants.POINT_SPACE; nextStepPoint.y += AIConstants.POINT_SPACE;}
+                    else if (RIGHT == direction) { newStartPoint2.x -= AIConstants.POINT_SPACE; nextStepPoint.x -= AIConstants.POINT_SPACE;}
+                    else if (DOWN == direction) { newStartPoint2.y -= AIConstants.POINT_SPACE; nextStepPoint.y -= AIConstants.POINT_SPACE;}
+                }
+                else {
+                    if (LEFT == direction) { newStartPoint2.x -= AIConstants.POINT_SPACE; nextStepPoint.x -= AIConstants.POINT_SPACE; }
+                    else if (UP == direction) { newStartPoint2.y -= AIConstants.POINT_SPACE; nextStepPoint.y -= AIConstants.POINT_SPACE; }
+                    else if (RIGHT == direction) { newStartPoint2.x += AIConstants.POINT_SPACE; nextStepPoint.x += AIConstants.POINT_SPACE; }
+                    else if (DOWN == direction) { newStartPoint2.y += AIConstants.POINT_SPACE; nextStepPoint.y += AIConstants.POINT_SPACE; }
+                }
+            }
+            else {
+                bLoop = false;
+            }
+        }
+        // 重试次数用完仍然重合，或者错开后的线段碰到图元，就不错开了：宁可重合也不要绕远或穿过图元
+        if (bLoop || !newStartPoint2.equals(newStartPoint) && blocked(newStartPoint, newStartPoint2, nextStepPoint)) {
+            return newStartPoint;
+        }
+
+        return newStartPoint2;
+    }
+
+    /**
+     * 错开后的两段(原起点->新起点->下一步)是否与源、目标以外的图元相交
+     */
+    private boolean blocked(Point origin, Point shifted, Point next) {
+        Rectangle area = new Rectangle(origin);
+        area.add(shifted);
+        area.add(next);
+        boolean[] hit = {false};
+        _obstacles.query(area, rect -> {
+            if (rect != _srcRect && rect != _dstRect
+                    && (rect.intersectsLine(origin.x, origin.y, shifted.x, shifted.y)
+                    || rect.intersectsLine(shifted.x, shifted.y, next.x, next.y))) {
+                hit[0] = true;
+            }
+        });
+        return hit[0];
+    }
+
+    Point conjecture_next_step(AIDirection direction, Point newStartPoint, AIRectangle barrier, AIDirection nextDirection, AIRectangle parallelBarrier, TrapData parallelInverse_trap)
+    {
+        Point guess = (Point) newStartPoint.clone();
+        if (RIGHT == direction) {
+            if (barrier != null) {
+                if (UP == nextDirection) guess.y = min(barrier.y, _endPoint.get().y);
+                else if (DOWN == nextDirection) guess.y = max(barrier.bottom(), _endPoint.get().y);
+            }
+            else {
+                if (parallelBarrier != null)
+                {
+                    if (UP == nextDirection) guess.y = min(_endPoint.get().y, parallelInverse_trap._DownOrRight);
+                    else if (DOWN == nextDirection) guess.y = max(_endPoint.get().y, parallelInverse_trap._DownOrRight);
+                }
+                else {
+                    guess.y = _endPoint.get().y;
+                }
+            }
+        }
+        else if (LEFT == direction) {
+            if (barrier != null) {
+                if (UP == nextDirection) guess.y = min(barrier.y, _endPoint.get().y);
+                else if (DOWN == nextDirection) guess.y = max(barrier.bottom(), _endPoint.get().y);
+            }
+            else {
+                if (parallelBarrier != null)
+                {
+                    if (UP == nextDirection) guess.y = min(_endPoint.get().y, parallelInverse_trap._UpOrLeft);
+                    else if (DOWN == nextDirection) guess.y = max(_endPoint.get().y, parallelInverse_trap._UpOrLeft);
+                }
+                else {
+                    guess.y = _endPoint.get().y;
+                }
+            }
+        }
+        else if (UP == direction) {
+            if (barrier != null) {
+                if (LEFT == nextDirection) guess.x = min(barrier.x, _endPoint.get().x);
+                else if (RIGHT == nextDirection) guess.x = max(barrier.right(), _endPoint.get().x);
+            }
+            else {
+                if (parallelBarrier != null)
+                {
+                    if (LEFT == nextDirection) guess.x = min(_endPoint.get().x, parallelInverse_trap._UpOrLeft);
+                    else if (RIGHT == nextDirection) guess.x = max(_endPoint.get().x, parallelInverse_trap._UpOrLeft);
+                }
+                else {
+                    guess.y = _endPoint.get().y;
+                }
+            }
+        }
+        else if (DOWN == direction) {
+            if (barrier != null) {
+                if (LEFT == nextDirection) guess.x = min(barrier.x, _endPoint.get().x);
+                else if (RIGHT == nextDirection) guess.x = max(barrier.right(), _endPoint.get().x);
+            }
+            else {
+                if (parallelBarrier != null)
+                {
+                    if (LEFT == nextDirection) guess.x = min(_endPoint.get().x, parallelInverse_trap._DownOrRight);
+                    else if (RIGHT == nextDirection) guess.x = max(_endPoint.get().x, parallelInverse_trap._DownOrRight);
+                }
+                else {
+                    guess.y = _endPoint.get().y;
+                }
+            }
+        }
+
+
+        return guess;
+    }
+
+
+    interface TrapProcessCallback {
+        long trap_process(Point spPoint, AIDirection direction,
+                          AIRectangle spBarrier_inflate, AIRectangle spFront, TrapData trap_data, TrapData inverse_trap_data);
+    }
+
+    /**
+     * 用来计算陷阱的边缘。
+     */
+    class TrapCallback implements TrapProcessCallback {
+
+        @Override
+        public long trap_process(Point spPoint, AIDirection direction,
+                                 AIRectangle spBarrier_inflate, AIRectangle spFront, TrapData trap_data, TrapData inverse_trap_data) {
+            // 可以将本地参数带进来:std::shared_ptr<AIVector> vector, std::shared_ptr<POINT> spPoint
+            // 修正 四边大小
+            int left = spBarrier_inflate.x;
+            int top = spBarrier_inflate.y;
+            int right = spBarrier_inflate.x + spBarrier_inflate.width;
+            int bottom = spBarrier_inflate.y + spBarrier_inflate.height;
+
+            Rectangle cloneDst = _dstRect;
+
+            final int spFrontBottom = spFront.y + spFront.height;
+            final int spFrontRight = spFront.x + spFront.width;
+            switch (direction) {
+
+                case LEFT -> {
+                    //解决情况5的异常。考虑目标图元的左面无效部分图元，使宽度计算更精准
+                    if (spFront.x + spFront.width > cloneDst.x)
+                    {
+                        top = min(spFront.y, spBarrier_inflate.y);
+                        bottom = max(spFrontBottom, bottom);
+                    }
+
+                    if (spFrontBottom < spPoint.y)		// 上重叠
+                    {
+                        trap_data.transformByMax(spFrontRight, Integer.MIN_VALUE);
+                        // 条件保证增长是连续性的，不是跳跃的
+                        if(spFrontRight >= inverse_trap_data._UpOrLeft) inverse_trap_data.transformByMin(spFront.x, Integer.MAX_VALUE);
+                    }
+                    else if (spFront.y > spPoint.y)	// 下重叠
+                    {
+                        trap_data.transformByMax(Integer.MIN_VALUE, spFrontRight);
+                        if (spFrontRight >= inverse_trap_data._DownOrRight) inverse_trap_data.transformByMin(Integer.MAX_VALUE, spFront.x);
+                    }
+                    else if ( spFront.y < spPoint.y && spFrontBottom > spPoint.y)	//	考虑在穿过的情况：只反向需要
+                    {
+                        if (spFrontRight >= inverse_trap_data._UpOrLeft) inverse_trap_data.transformByMin(spFront.x, Integer.MAX_VALUE);
+                        if (spFrontRight >= inverse_trap_data._DownOrRight) inverse_trap_data.transformByMin(Integer.MAX_VALUE, spFront.x);
+                    }
+                }
+                case RIGHT -> {
+                    // 解决情况5的异常。考虑目标图元的右面无效部分图元，使宽度计算更精准*/
+                    if (spFront.x < cloneDst.x+cloneDst.width)
+                    {
+                        top = min(spFront.y, spBarrier_inflate.y);
+                        bottom = max(spFrontBottom, bottom);
+                    }
+
+                    if (spFrontBottom < spPoint.y)		// 上重叠
+                    {
+                        trap_data.transformByMin(spFront.x, Integer.MAX_VALUE);
+                        if (spFront.x <= inverse_trap_data._UpOrLeft) inverse_trap_data.transformByMax(spFrontRight, Integer.MIN_VALUE);
+                    }
+                    else if (spFront.y > spPoint.y)	// 下重叠
+                    {
+                        trap_data.transformByMin(Integer.MAX_VALUE, spFront.x);
+                        if (spFront.x <= inverse_trap_data._DownOrRight) inverse_trap_data.transformByMax(Integer.MIN_VALUE, spFrontRight);
+                    }
+                    else if (spFront.y < spPoint.y &&  spPoint.y < spFrontBottom)
+                    {
+                        if (spFront.x <= inverse_trap_data._UpOrLeft) inverse_trap_data.transformByMax(spFrontRight, Integer.MIN_VALUE);
+                        if (spFront.x <= inverse_trap_data._DownOrRight) inverse_trap_data.transformByMax(Integer.MIN_VALUE, spFrontRight);
+                    }
+                }
+                case UP -> {
+                    // 解决情况5的异常。考虑目标图元的上面无效部分图元，使宽度计算更精准*/
+                    if (spFrontBottom > cloneDst.y)
+                    {
+                        left = min(spFront.x, left);
+                        right = max(spFrontRight, right);
+                    }
+
+                    if (spFrontRight < spPoint.x)		// 左重叠
+                    {
+                        trap_data.transformByMax(spFrontBottom, Integer.MIN_VALUE);
+                        if (spFrontBottom >= inverse_trap_data._UpOrLeft) inverse_trap_data.transformByMin(spFront.y, Integer.MAX_VALUE);
+                    }
+                    else if (spFront.x > spPoint.x)	// 右重叠
+                    {
+                        trap_data.transformByMax(Integer.MIN_VALUE, spFrontBottom);
+                        if (spFrontBottom >= inverse_trap_data._DownOrRight) inverse_trap_data.transformByMin(Integer.MAX_VALUE, spFront.y);
+                    }
+                    else if (spFront.x < spPoint.x && spPoint.x < spFrontRight)
+                    {
+                        if (spFrontBottom >= inverse_trap_data._UpOrLeft) inverse_trap_data.transformByMin(spFront.y, Integer.MAX_VALUE);
+                        if (spFrontBottom >= inverse_trap_data._DownOrRight) inverse_trap_data.transformByMin(Integer.MAX_VALUE, spFront.y);
+                    }
+                }
+                case DOWN -> {
+                    // 解决情况5的异常。考虑目标图元的下面无效部分图元，使宽度计算更精准*/
+                    if (spFront.y < cloneDst.y+cloneDst.height)
+                    {
+                        left = min(spFront.x, left);
+                        right = max(spFrontRight, right);
+                    }
+
+                    if (spFrontRight < spPoint.x)		// 左重叠
+                    {
+                        trap_data.transformByMin(spFront.y, Integer.MAX_VALUE);
+                        if (spFront.y <= inverse_trap_data._UpOrLeft) inverse_trap_data.transformByMax(spFrontBottom, Integer.MIN_VALUE);
+                    }
+                    else if (spFront.x > spPoint.x)	// 右重叠
+                    {
+                        trap_data.transformByMin(Integer.MAX_VALUE, spFront.y);
+                        if (spFront.y <= inverse_trap_data._DownOrRight) inverse_trap_data.transformByMax(Integer.MIN_VALUE, spFrontBottom);
+                    }
+                    else if (spFront.x < spPoint.x && spPoint.x < spFrontRight)
+                    {
+                        if (spFront.y <= inverse_trap_data._UpOrLeft) inverse_trap_data.transformByMax(spFrontBottom, Integer.MIN_VALUE);
+                        if (spFront.y <= inverse_trap_data._DownOrRight) inverse_trap_data.transformByMax(Integer.MIN_VALUE, spFrontBottom);
+                    }
+                }
+                case UNKOWN -> {
+
+                }
+            }
+
+            spBarrier_inflate.setBounds(left, top, right-left, bottom-top);
+
+            return 0;
+        }
+    }
+
+    Triple<AIRectangle, TrapData, TrapData> barrier_detect(Point spPoint, AIDirection vector, AIRectangle parallelBarrier){
+        AIRectangle barrier = null;
+
+        if (vector == LEFT) {
+            barrier = barrier_left(spPoint, parallelBarrier);
+        }
+        else if (vector == RIGHT) {
+            barrier = barrier_right(spPoint, parallelBarrier);
+        }
+        else if (vector == UP) {
+            barrier = barrier_up(spPoint, parallelBarrier);
+        }
+        else if (vector == DOWN) {
+            barrier = barrier_down(spPoint, parallelBarrier);
+        }
+
+        // 如果检测到的这个障碍和目标图元重叠了，那么不算障碍
+        if (barrier != null) {
+            if (barrier.intersects(_dstRect)) barrier = null;
+        }
+        // 如果存在障碍，那么检测是否存在陷阱
+        TrapData trap_data = new TrapData();
+        TrapData inverse_trap_data = new TrapData();
+        AIRectangle full_growed = trap_detect(barrier, vector, spPoint, trap_data, inverse_trap_data);
+
+        // 根据方向进行不同的膨胀
+        AIRectangle barrier_grow = null;
+        if (barrier != null && full_growed != null)
+        {
+            if (vector == LEFT) {
+                barrier_grow = new AIRectangle( barrier.x, full_growed.y, barrier.right()-barrier.x, full_growed.bottom()-full_growed.y, barrier.get_table_id());
+            }
+            else if (vector == RIGHT) {
+                barrier_grow = new AIRectangle(barrier.x, full_growed.y, barrier.right()-barrier.x, full_growed.bottom()-full_growed.y, barrier.get_table_id());
+            }
+            else if (vector == UP) {
+                barrier_grow = new AIRectangle(full_growed.x, barrier.y, full_growed.right()-full_growed.x, barrier.bottom()-barrier.y, barrier.get_table_id());
+            }
+            else if (vector == DOWN) {
+                barrier_grow = new AIRectangle(full_growed.x, barrier.y, full_growed.right()-full_growed.x, barrier.bottom()-barrier.y, barrier.get_table_id());
+            }
+        }
+
+        if (barrier_grow != null) {
+            AIRectangle found = barrier_grow;
+            logger.info(() -> ">>>[barrier_find]<<< start point: " + spPoint + ", barrier: " + found);
+        }
+
+        return Triple.of(barrier_grow, trap_data, inverse_trap_data);
+    }
+
+    /**
+    功能：探测当前点左侧是否存在障碍<p>
+    返回值：<p>
+        不存在障碍返回 nullptr，存在障碍，返回障碍图元。
+    */
+    AIRectangle barrier_left(Point upPoint, AIRectangle parallelBarrier) {
+        int left = min(_endPoint.get().x, parallelBarrier != null ? parallelBarrier.x:Integer.MAX_VALUE) - BARRIER_SPACE;
+
+        return _obstacles.find_barrier(LEFT, upPoint, left, _barrierFilter);
+    }
+
+    /**
+     * 找到最先遇到的障碍，即最左边的障碍.
+     * @param upPoint 当前起始点
+     * @param parallelBarrier 平行障碍
+     * @return 最左边的障碍
+     */
+    AIRectangle barrier_right(Point upPoint, AIRectangle parallelBarrier) {
+        int right = max(_endPoint.get().x, parallelBarrier!=null? parallelBarrier.right(): Integer.MIN_VALUE) + BARRIER_SPACE;
+
+        return _obstacles.find_barrier(RIGHT, upPoint, right, _barrierFilter);
+    }
+
+    AIRectangle barrier_up(Point upPoint, AIRectangle parallelBarrier) {
+        int up = min(_endPoint.get().y, parallelBarrier != null? parallelBarrier.y: Integer.MAX_VALUE) - BARRIER_SPACE;
+
+        return _obstacles.find_barrier(UP, upPoint, up, _barrierFilter);
+    }
+
+    AIRectangle barrier_down(Point upPoint, AIRectangle parallelBarrier) {
+        int down = max(_endPoint.get().y, parallelBarrier != null? parallelBarrier.bottom(): Integer.MIN_VALUE)+ BARRIER_SPACE;
+
+        return _obstacles.find_barrier(DOWN, upPoint, down, _barrierFilter);
+    }
+
+    AIRectangle trap_detect(AIRectangle spBarrier, AIDirection direction, Point spPoint, TrapData trap_data
+            , TrapData inverse_trap_data)
+    {
+        if (spBarrier != null) {
+            if (direction == LEFT) {
+                trap_data.init(spBarrier.x + spBarrier.width);
+                inverse_trap_data.init(spBarrier.x);
+            }
+            else if (direction == RIGHT) {
+                trap_data.init(spBarrier.x);
+                inverse_trap_data.init(spBarrier.x + spBarrier.width);
+            }
+            else if (direction == UP) {
+                trap_data.init(spBarrier.y + spBarrier.height);
+                inverse_trap_data.init(spBarrier.y);
+            }
+            else if (direction == DOWN) {
+                trap_data.init(spBarrier.y);
+                inverse_trap_data.init(spBarrier.y + spBarrier.height);
+            }
+        }
+
+        AIRectangle spBarrier_inflate = null;
+        if (spBarrier != null) {
+            spBarrier_inflate = (AIRectangle) spBarrier.clone();
+            tranverse_overlap(spBarrier, spBarrier_inflate, spPoint, direction, trap_data, inverse_trap_data);
+        }
+
+        return spBarrier_inflate;
+    }
+
+    /**
+     * 按广度优先遍历障碍所在的重叠簇，逐个计算陷阱的两个边沿值，同时膨胀障碍。<p>
+     * 陷阱的状态迁移与遍历顺序有关，因此保持原有的遍历顺序：先障碍的重叠图元，再逐层展开。
+     * @param spBarrier 障碍
+     * @param spBarrier_inflate 障碍的副本，遍历过程中被膨胀
+     */
+    void tranverse_overlap(AIRectangle spBarrier, AIRectangle spBarrier_inflate, Point spPoint, AIDirection direction,
+                           TrapData trap_data, TrapData inverse_trap_data)
+    {
+        List<AIRectangle> overlap = _obstacles.get_overlaps(spBarrier.get_table_id());
+        // 障碍不与其他图元重叠，不需要遍历
+        if (overlap.isEmpty()) {
+            return;
+        }
+
+        TrapTraversalEvent event = new TrapTraversalEvent();
+        event.begin();
+        OverlapCluster cluster = _obstacles.get_overlap_cluster(spBarrier.get_table_id());
+        int capacity = cluster != null ? cluster.getSize() : overlap.size();
+        ArrayList<AIRectangle> spQueue = new ArrayList<>(capacity);
+        HashSet<Integer> visited = new HashSet<>(capacity * 2);
+        TrapCallback callback = new TrapCallback();
+        enqueue_overlap(overlap, spBarrier, spBarrier_inflate, spQueue, visited);
+
+        for (int position = 0; position < spQueue.size(); position++)
+        {
+            AIRectangle front = spQueue.get(position);
+            enqueue_overlap(_obstacles.get_overlaps(front.get_table_id()), spBarrier, spBarrier_inflate, spQueue, visited);
+
+            // 还需要根据点和方向来计算出陷阱的两个边沿值。
+            callback.trap_process(spPoint, direction, spBarrier_inflate, front, trap_data, inverse_trap_data);
+        }
+        if (event.shouldCommit()) {
+            event.barrierTableId = spBarrier.get_table_id();
+            event.direction = direction.name();
+            event.clusterSize = capacity;
+            event.visited = spQueue.size();
+            event.commit();
+        }
+    }
+
+    /**
+     * 加入遍历队列。障碍本身以膨胀副本的身份位于队首：只有当副本已经被膨胀(与障碍不再相等)时，障碍本身才作为重叠图元参与计算。
+     */
+    private static void enqueue_overlap(Collection<AIRectangle> overlaps, AIRectangle spBarrier, AIRectangle spBarrier_inflate,
+                                        List<AIRectangle> spQueue, Set<Integer> visited) {
+        for (AIRectangle overlap : overlaps) {
+            int table_id = overlap.get_table_id();
+            if (table_id == spBarrier.get_table_id() && !visited.contains(table_id) && overlap.equals(spBarrier_inflate)) {
+                continue;
+            }
+            if (visited.add(table_id)) {
+                spQueue.add(overlap);
+            }
+        }
+    }
+
+    /**
+     * 方向初始化
+     * @param lpSrcRect
+     * @param lpDstRect
+     * @return
+     */
+    static AIDirection init_direction(AIRectangle lpSrcRect, AIRectangle lpDstRect) {
+        var xSrc = lpSrcRect.x;
+        var ySrc = lpSrcRect.y;
+        var widthSrc = lpSrcRect.width;
+        var heightSrc = lpSrcRect.height;
+
+        var xDst = lpDstRect.x;
+        var yDst = lpDstRect.y;
+        var widthDst = lpDstRect.width;
+        var heightDst = lpDstRect.height;
+
+        var centerSrc = new Point((int) lpSrcRect.getCenterX(), (int) lpSrcRect.getCenterY());
+        var centerDst = new Point((int) lpDstRect.getCenterX(), (int) lpDstRect.getCenterY());
+
+        // 计算宽度差、高度差
+        var x_diff_center = abs(centerSrc.x - centerDst.x);
+        var y_diff_center = abs(centerSrc.y - centerDst.y);
+
+        // 垂直方向计算
+        if (abs(centerSrc.x - centerDst.x) <= (widthSrc/2 + widthDst/2)) {
+            if (lpSrcRect.bottom() < yDst) {
+                return DOWN;
+            }
+            else if (lpDstRect.bottom() < ySrc) {
+                return UP;
+            }
+        }
+        // 水平方向计算
+        else if (abs(centerSrc.y - centerDst.y) <= (heightSrc/2 + heightDst/2)) {
+            if (lpSrcRect.right() < xDst) {
+                return RIGHT;
+            }
+            else if (lpDstRect.right() < xSrc) {
+                return LEFT;
+            }
+        }
+        else if (lpDstRect.right() < xSrc) {
+            if (lpDstRect.bottom() < ySrc) {
+                return LEFT_UP;
+            }
+            else if (yDst > lpSrcRect.bottom()) {
+                return LEFT_DOWN;
+            }
+        }
+        else if (lpSrcRect.right() < xDst) {
+            if (lpSrcRect.bottom() < yDst) {
+                return RIGHT_DOWN;
+            }
+            else if (ySrc > lpDstRect.bottom()) {
+                return RIGHT_UP;
+            }
+        }
+        else {
+            return OVERLAP;
+        }
+
+        return UNKOWN;
+    }
+
+    /**
+     * 初始化开始点坐标.
+     * @param lpSrcRect
+     * @param lpDstRect
+     * @return <开始点坐标，终止点坐标>
+     */
+    private Tuple<Point,Point> init_start_point(AIDirection direction, AIRectangle lpSrcRect, AIRectangle lpDstRect) {
+        int up = max(lpSrcRect.y, lpDstRect.y);
+        int down = min(lpSrcRect.bottom(), lpDstRect.bottom());
+        int left = max(lpSrcRect.x, lpDstRect.x);
+        int right = min(lpSrcRect.right(), lpDstRect.right());
+
+        boolean horizontal = down >= up;	// 水平方向是否相交
+        boolean vertical = right >= left;	// 垂直方向是否相交
+
+        Tuple<Point, AIDirection> guide = null;
+
+        if (horizontal)
+        {
+            if (LEFT == direction)
+            {
+                guide = _anchors.free_anchor(lpSrcRect, new Point(lpSrcRect.x, up), LEFT, true);
+            }
+            else if (RIGHT == direction)
+            {
+                guide = _anchors.free_anchor(lpSrcRect, new Point(lpSrcRect.right(), up), RIGHT,false);
+            }
+        }
+        else if (vertical)
+        {
+            if (UP == direction)
+            {
+                guide = _anchors.free_anchor(lpSrcRect, new Point(left, lpSrcRect.y), UP, false);
+            }
+            else if (DOWN == direction)
+            {
+                guide = _anchors.free_anchor(lpSrcRect, new Point(left, lpSrcRect.bottom()), DOWN, true);
+            }
+        }
+        else
+        {   // 随便取点
+            if (LEFT == direction)
+            {
+                guide = _anchors.free_anchor(lpSrcRect, new Point(lpSrcRect.x, lpSrcRect.y+lpSrcRect.height/2), LEFT, false);
+            }
+            else if(RIGHT == direction)
+            {
+                guide = _anchors.free_anchor(lpSrcRect, new Point(lpSrcRect.right(), lpSrcRect.y+lpSrcRect.height/2), RIGHT, true);
+            }
+            else if (UP == direction)
+            {
+                guide = _anchors.free_anchor(lpSrcRect, new Point(lpSrcRect.x + lpSrcRect.width/2, lpSrcRect.y), UP, true);
+            }
+            else if (DOWN == direction)
+            {
+                guide = _anchors.free_anchor(lpSrcRect, new Point(lpSrcRect.x + lpSrcRect.width/2, lpSrcRect.bottom()), DOWN, false);
+            }
+        }
+
+        // solve the overlap problem
+        if (direction == OVERLAP)
+        {
+            guide = _anchors.free_anchor(lpSrcRect, new Point(lpSrcRect.right(), lpSrcRect.y+lpSrcRect.height/2), RIGHT, false);
+        }
+
+        assert guide != null;
+        return Tuple.of(guide.a,new Point());
+    }
+//    /**
+//     * 初始化开始、终止点坐标.
+//     * @param lpSrcRect
+//     * @param lpDstRect
+//     * @return <方向，开始点坐标，终止点坐标>
+//     */
+//    private Tuple<Point,Point> init_start_point(AIDirection direction, AIRectangle lpSrcRect, AIRectangle lpDstRect) {
+//        int up = max(lpSrcRect.y, lpDstRect.y);
+//        int down = min(lpSrcRect.bottom(), lpDstRect.bottom());
+//        int left = max(lpSrcRect.x, lpDstRect.x);
+//        int right = min(lpSrcRect.right(), lpDstRect.right());
+//
+//        boolean horizontal = down >= up;	// 水平方向是否相交
+//        boolean vertical = right >= left;	// 垂直方向是否相交
+//
+//        int connectorId = get_connector_id();
+//        Tuple<Point, AIDirection> guide = null;
+//
+//        if (horizontal)
+//        {
+//            if (LEFT == direction)
+//            {
+//                guide = lpSrcRect.get_free_anchor(connectorId, new Point(lpSrcRect.x, up), LEFT, true);
+//            }
+//            else if (RIGHT == direction)
+//            {
+//                guide = lpSrcRect.get_free_anchor(connectorId, new Point(lpSrcRect.right(), up), RIGHT,false);
+//            }
+//        }
+//        else if (vertical)
+//        {
+//            if (UP == direction)
+//            {
+//                guide = lpSrcRect.get_free_anchor( connectorId, new Point(left, lpSrcRect.y), UP, false);
+//            }
+//            else if (DOWN == direction)
+//            {
+//                guide = lpSrcRect.get_free_anchor( connectorId, new Point(left, lpSrcRect.bottom()), DOWN, true);
+//            }
+//        }
+//        else
+//        {
+//            if (LEFT_UP == direction)
+//            {
+//                guide = lpSrcRect.get_free_anchor( connectorId, new Point(lpSrcRect.x, lpSrcRect.y+lpSrcRect.height/2), LEFT, false);
+//            }
+//            else if(LEFT_DOWN == direction)
+//            {
+//                guide = lpSrcRect.get_free_anchor( connectorId, new Point(lpSrcRect.x, lpSrcRect.y+lpSrcRect.height/2), LEFT, true);
+//            }
+//            else if (RIGHT_UP == direction)
+//            {
+//                guide = lpSrcRect.get_free_anchor( connectorId, new Point(lpSrcRect.right(), lpSrcRect.y+lpSrcRect.height/2), RIGHT, true);
+//            }
+//            else if (RIGHT_DOWN == direction)
+//            {
+//                guide = lpSrcRect.get_free_anchor( connectorId, new Point(lpSrcRect.right(), lpSrcRect.y+lpSrcRect.height/2), RIGHT, false);
+//            }
+//        }
+//
+//        // solve the overlap problem
+//        if (direction == OVERLAP)
+//        {
+//            guide = lpSrcRect.get_free_anchor( connectorId, new Point(lpSrcRect.right(), lpSrcRect.y+lpSrcRect.height/2), RIGHT, false);
+//        }
+//
+//        assert guide != null;
+//        return Tuple.of(guide.a,new Point());
+//    }
+
+    /**
+     * 剪枝检查：已走路径长度 + 当前点到目标图元的曼哈顿距离(路径终点在目标图元边上，这是剩余路径长度的下界) 超过上界。
+     * 已走路径不合法时最终长度按0计算，不剪枝。
+     */
+    private boolean bound_exceeded(PolylineBuilder route, Point point, SearchContext context) {
+        long length = route.route_length();
+        if (length == 0 && route.size() > 1) {
+            return false;
+        }
+        return context.prune(length + distance_to_target(point.x, point.y));
+    }
+
+    /**
+     * @return 点到目标图元的曼哈顿距离，点在图元内为0
+     */
+    private long distance_to_target(int x, int y) {
+        long dx = max(0, max(_dstRect.x - x, x - _dstRect.right()));
+        long dy = max(0, max(_dstRect.y - y, y - _dstRect.bottom()));
+        return dx + dy;
+    }
+}
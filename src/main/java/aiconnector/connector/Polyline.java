@@ -0,0 +1,125 @@
+package aiconnector.connector;
+
+import lombok.EqualsAndHashCode;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 紧凑的折线路径：点坐标按x0,y0,x1,y1...交替存放在int[]中。<p>
+ * 不可修改，可以在线程间共享；路径长度、折点数、分段遍历都不创建Point。
+ * 搜索时用PolylineBuilder逐点构建，需要List&lt;Point&gt;的调用方用to_points转换。
+ * @see PolylineBuilder
+ */
+@EqualsAndHashCode
+public final class Polyline {
+    public static final Polyline EMPTY = new Polyline(new int[0]);
+
+    private final int[] _coords;
+
+    /**
+     * 遍历线段
+     */
+    public interface SegmentVisitor {
+        void visit(int x1, int y1, int x2, int y2);
+    }
+
+    /**
+     * @param coords 交替存放的坐标，不再修改
+     */
+    Polyline(int[] coords) {
+        _coords = coords;
+    }
+
+    public static Polyline of(List<Point> points) {
+        int[] coords = new int[points.size() * 2];
+        int i = 0;
+        for (Point point : points) {
+            coords[i++] = point.x;
+            coords[i++] = point.y;
+        }
+        return new Polyline(coords);
+    }
+
+    /**
+     * @return 点数
+     */
+    public int size() {
+        return _coords.length >> 1;
+    }
+
+    public boolean isEmpty() {
+        return _coords.length == 0;
+    }
+
+    public int x(int index) {
+        return _coords[Objects.checkIndex(index, size()) << 1];
+    }
+
+    public int y(int index) {
+        return _coords[(Objects.checkIndex(index, size()) << 1) + 1];
+    }
+
+    public Point point(int index) {
+        return new Point(x(index), y(index));
+    }
+
+    /**
+     * @return 路径长度，不足两个点或有斜线时为0
+     */
+    public long route_length() {
+        long length = 0;
+        for (int i = 2; i < _coords.length; i += 2) {
+            int dx = Math.abs(_coords[i] - _coords[i - 2]), dy = Math.abs(_coords[i + 1] - _coords[i - 1]);
+            if (dx != 0 && dy != 0) {
+                return 0;
+            }
+            length += dx + dy;
+        }
+        return length;
+    }
+
+    /**
+     * @return 折点数：相邻两段横竖方向改变的次数，长度为0的线段不计
+     */
+    public int bends() {
+        int bends = 0;
+        // 0：还没有线段，1：横向，2：纵向
+        int previous = 0;
+        for (int i = 2; i < _coords.length; i += 2) {
+            int current = _coords[i + 1] == _coords[i - 1] ? (_coords[i] == _coords[i - 2] ? 0 : 1) : 2;
+            if (current == 0) continue;
+            if (previous != 0 && previous != current) bends++;
+            previous = current;
+        }
+        return bends;
+    }
+
+    /**
+     * 按顺序遍历线段
+     */
+    public void for_each_segment(SegmentVisitor visitor) {
+        for (int i = 2; i < _coords.length; i += 2) {
+            visitor.visit(_coords[i - 2], _coords[i - 1], _coords[i], _coords[i + 1]);
+        }
+    }
+
+    /**
+     * @return 新建的点集合
+     */
+    public List<Point> to_points() {
+        List<Point> points = new ArrayList<>(size());
+        for (int i = 0; i < _coords.length; i += 2) {
+            points.add(new Point(_coords[i], _coords[i + 1]));
+        }
+        return points;
+    }
+
+    @Override
+    public String toString() {
+        return "Polyline" + Arrays.toString(_coords);
+    }
+}
@@ -0,0 +1,148 @@
+package aiconnector.connector;
+
+import java.awt.*;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * 可修改、可复用的折线构建器，路径搜索逐点加入。<p>
+ * 路径长度随加点累计，剪枝检查不需要每步重新遍历路径。
+ * fork出的子构建器只继承当前的点数、长度和最后一个点，不复制已有的点，
+ * 两路搜索结束后由父构建器append胜出的一路。不是线程安全的，每路搜索各用一个。
+ * @see Polyline
+ */
+public final class PolylineBuilder {
+    private int[] _coords;
+    /**
+     * 本构建器加入的点数
+     */
+    private int _count;
+    /**
+     * fork时父构建器的点数，本构建器的第一个点序号为_offset
+     */
+    private final int _offset;
+    private long _length;
+    private boolean _orthogonal;
+    private int _lastX, _lastY;
+
+    public PolylineBuilder() {
+        this(0, 0, true, 0, 0);
+    }
+
+    private PolylineBuilder(int offset, long length, boolean orthogonal, int lastX, int lastY) {
+        _coords = new int[16];
+        _offset = offset;
+        _length = length;
+        _orthogonal = orthogonal;
+        _lastX = lastX;
+        _lastY = lastY;
+    }
+
+    public PolylineBuilder add(int x, int y) {
+        if (size() > 0) {
+            if (x == _lastX) {
+                _length += Math.abs(y - _lastY);
+            } else if (y == _lastY) {
+                _length += Math.abs(x - _lastX);
+            } else {
+                _orthogonal = false;
+            }
+        }
+        if (_count << 1 == _coords.length) {
+            _coords = Arrays.copyOf(_coords, _coords.length << 1);
+        }
+        _coords[_count << 1] = x;
+        _coords[(_count << 1) + 1] = y;
+        _count++;
+        _lastX = x;
+        _lastY = y;
+        return this;
+    }
+
+    public PolylineBuilder add(Point point) {
+        return add(point.x, point.y);
+    }
+
+    public PolylineBuilder append(Polyline polyline) {
+        for (int i = 0; i < polyline.size(); i++) {
+            add(polyline.x(i), polyline.y(i));
+        }
+        return this;
+    }
+
+    /**
+     * 接上子构建器加入的点
+     * @param child 在本构建器当前位置fork出的子构建器
+     */
+    public PolylineBuilder append(PolylineBuilder child) {
+        if (child._offset != size()) {
+            throw new IllegalArgumentException("child forked at " + child._offset + ", current size " + size());
+        }
+        for (int i = 0; i < child._count; i++) {
+            add(child._coords[i << 1], child._coords[(i << 1) + 1]);
+        }
+        return this;
+    }
+
+    /**
+     * @return 从当前位置继续的子构建器，不复制已有的点
+     */
+    public PolylineBuilder fork() {
+        return new PolylineBuilder(size(), _length, _orthogonal, _lastX, _lastY);
+    }
+
+    /**
+     * @return 点数，包括fork之前的点
+     */
+    public int size() {
+        return _offset + _count;
+    }
+
+    /**
+     * @param index 点的序号，fork出的子构建器只能访问fork之后加入的点
+     */
+    public int x(int index) {
+        return _coords[Objects.checkIndex(index - _offset, _count) << 1];
+    }
+
+    public int y(int index) {
+        return _coords[(Objects.checkIndex(index - _offset, _count) << 1) + 1];
+    }
+
+    /**
+     * @return 路径长度，与Polyline#route_length相同：不足两个点或有斜线时为0
+     */
+    public long route_length() {
+        return size() < 2 || !_orthogonal ? 0 : _length;
+    }
+
+    /**
+     * @return 从from开始的点
+     */
+    public Polyline slice(int from) {
+        Objects.checkFromToIndex(from - _offset, _count, _count);
+        return new Polyline(Arrays.copyOfRange(_coords, (from - _offset) << 1, _count << 1));
+    }
+
+    /**
+     * @return 当前的全部点，之后继续修改构建器不影响返回的Polyline
+     */
+    public Polyline build() {
+        if (_offset != 0) {
+            throw new IllegalStateException("forked builder holds only a suffix");
+        }
+        return slice(0);
+    }
+
+    /**
+     * 清空，复用已分配的数组
+     */
+    public void clear() {
+        if (_offset != 0) {
+            throw new IllegalStateException("forked builder holds only a suffix");
+        }
+        _count = 0;
+        _length = 0;
+        _orthogonal = true;
+    }
+}
@@ -0,0 +1,92 @@
+package aiconnector.connector;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一路搜索分支的状态(branch-and-bound)。<p>
+ * 同一次搜索的所有分支共享一个最优长度上界：任一分支走到终点后发布自己的路径长度，
+ * 其余分支一旦 已走长度 + 到目标图元的最短距离 超过上界即停止搜索，判负。<p>
+ * 分叉出的子分支继承同一个上界。
+ */
+class SearchContext {
+    /**
+     * 已完成分支的最短路径长度
+     */
+    private final AtomicLong _bestLength;
+    /**
+     * 本分支已被剪枝
+     */
+    private boolean _pruned;
+    /**
+     * 本分支路径长度的下界(各步检查时的最大值)
+     */
+    private long _estimate;
+    /**
+     * 本分支超过了MAX_STEP
+     */
+    private boolean _truncated;
+
+    SearchContext() {
+        this(new AtomicLong(Long.MAX_VALUE));
+    }
+
+    private SearchContext(AtomicLong _bestLength) {
+        this._bestLength = _bestLength;
+    }
+
+    /**
+     * @return 共享上界的子分支
+     */
+    SearchContext fork() {
+        return new SearchContext(_bestLength);
+    }
+
+    /**
+     * 检查本分支的最短可能长度是否已经超过上界，超过则剪枝。
+     * 长度相同时还要比较折点数，所以只有严格大于才剪枝。
+     * @param estimate 本分支路径长度的下界
+     * @return true：已剪枝
+     */
+    boolean prune(long estimate) {
+        _estimate = Math.max(_estimate, estimate);
+        if (estimate > _bestLength.get()) {
+            _pruned = true;
+        }
+        return _pruned;
+    }
+
+    /**
+     * 子分支全部被剪枝时，本分支也判负
+     */
+    void pruned() {
+        _pruned = true;
+    }
+
+    boolean is_pruned() {
+        return _pruned;
+    }
+
+    /**
+     * 路径超过MAX_STEP，搜索终止
+     */
+    void truncated() {
+        _truncated = true;
+    }
+
+    boolean is_truncated() {
+        return _truncated;
+    }
+
+    /**
+     * 分支结束，发布路径长度。<p>
+     * 走到终点的路径，长度不小于各步的下界，结果就是路径长度；超过MAX_STEP没有走到终点的路径，
+     * 长度可能小于途中的下界，这时按下界计算，保证无论另一路是否先完成、本分支是否被剪枝，比较结果都相同。
+     * @param estimate 路径长度 + 终点到目标图元的距离
+     * @return 用于比较的路径长度
+     */
+    long complete(long estimate) {
+        _estimate = Math.max(_estimate, estimate);
+        _bestLength.accumulateAndGet(_estimate, Math::min);
+        return _estimate;
+    }
+}
@@ -1,14 +1,39 @@
 package aiconnector.manager;
 
+import aiconnector.collide.BarrierIndexType;
 import aiconnector.connector.AIRectangle;
 import lombok.NonNull;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.logging.Logger;
 
 
 /**
- * 层管理对象
+ * 层管理对象。<p>
+ * 加入的画布注册为MBean(aiconnector:type=Canvas,name=画布名称)，移除或被替换时注销。
+ * put、remove、replace、clear、compute、merge等增删方法都经过swap，在键的锁内注册、注销；
+ * 视图的迭代器、removeIf不经过这些方法，不要用来移除画布。
+ * @see AIManagerMXBean
  */
 public class AILayerManager extends ConcurrentHashMap<String, AIManagerItf> {
+    private static final long serialVersionUID = 1L;
+    private static final Logger logger = Logger.getLogger(AILayerManager.class.getName());
+
+    /**
+     * 新建画布时使用的路径搜索执行器
+     */
+    private volatile RouteExecutor defaultExecutor = ForkJoinRouteExecutor.shared();
+    /**
+     * 新建画布时使用的慢搜索捕获
+     */
+    private volatile SlowSearchCapture defaultCapture;
 
     /**
      * 静态内部类,包含一个静态属性：Singleton
@@ -30,13 +55,181 @@ public class AILayerManager extends ConcurrentHashMap<String, AIManagerItf> {
      * @return 画布对应manager
      */
     public AIManagerItf getManager(String key) {
-        AIManagerItf orDefault = get(key);
-        if (orDefault == null) {
-            orDefault = new AIManager();
-            put(key, orDefault);
+        return getManager(key, BarrierIndexType.RTREE);
+    }
+
+    /**
+     * 获取指定layout名称的manager对象，不存在时使用指定的障碍索引类型新建。
+     * @param key manager对象名称
+     * @param indexType 新建画布时使用的障碍索引类型，画布已存在时忽略
+     * @return 画布对应manager
+     */
+    public AIManagerItf getManager(String key, @NonNull BarrierIndexType indexType) {
+        return computeIfAbsent(key, k -> create(new AIManager(indexType, defaultExecutor)));
+    }
+
+    /**
+     * 获取指定layout名称的manager对象，不存在时使用指定的障碍索引类型、执行器新建。
+     * @param key manager对象名称
+     * @param indexType 新建画布时使用的障碍索引类型，画布已存在时忽略
+     * @param executor 新建画布时使用的路径搜索执行器，画布已存在时忽略
+     * @return 画布对应manager
+     */
+    public AIManagerItf getManager(String key, @NonNull BarrierIndexType indexType, @NonNull RouteExecutor executor) {
+        return computeIfAbsent(key, k -> create(new AIManager(indexType, executor)));
+    }
+
+    /**
+     * 运行时切换所有画布的路径搜索执行器，之后新建的画布也使用该执行器。<p>
+     * 例如在Java 21上切换为虚拟线程：set_executor(VirtualThreadRouteExecutor.shared())
+     * @param executor 路径搜索执行器
+     */
+    public void set_executor(@NonNull RouteExecutor executor) {
+        defaultExecutor = executor;
+        values().forEach(manager -> manager.set_executor(executor));
+    }
+
+    /**
+     * 设置所有画布的慢搜索捕获，之后新建的画布也使用该设置。所有画布共享快照目录和文件数上限
+     * @param capture null为不捕获
+     */
+    public void set_slow_search_capture(SlowSearchCapture capture) {
+        defaultCapture = capture;
+        values().forEach(manager -> manager.set_slow_search_capture(capture));
+    }
+
+    @Override
+    public AIManagerItf put(@NonNull String key, @NonNull AIManagerItf value) {
+        AIManagerItf[] old = new AIManagerItf[1];
+        super.compute(key, (k, manager) -> swap(k, old[0] = manager, value));
+        return old[0];
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ? extends AIManagerItf> m) {
+        m.forEach(this::put);
+    }
+
+    @Override
+    public AIManagerItf putIfAbsent(@NonNull String key, @NonNull AIManagerItf value) {
+        AIManagerItf[] old = new AIManagerItf[1];
+        super.compute(key, (k, manager) -> manager != null ? old[0] = manager : swap(k, null, value));
+        return old[0];
+    }
+
+    /**
+     * 移除画布并注销其MBean
+     */
+    @Override
+    public AIManagerItf remove(@NonNull Object key) {
+        if (!(key instanceof String)) {
+            return null;
         }
+        AIManagerItf[] old = new AIManagerItf[1];
+        super.computeIfPresent((String) key, (k, manager) -> swap(k, old[0] = manager, null));
+        return old[0];
+    }
+
+    @Override
+    public boolean remove(@NonNull Object key, Object value) {
+        if (!(key instanceof String) || value == null) {
+            return false;
+        }
+        boolean[] removed = new boolean[1];
+        super.computeIfPresent((String) key, (k, manager) -> (removed[0] = manager.equals(value)) ? swap(k, manager, null) : manager);
+        return removed[0];
+    }
+
+    @Override
+    public AIManagerItf replace(@NonNull String key, @NonNull AIManagerItf value) {
+        AIManagerItf[] old = new AIManagerItf[1];
+        super.computeIfPresent(key, (k, manager) -> swap(k, old[0] = manager, value));
+        return old[0];
+    }
+
+    @Override
+    public boolean replace(@NonNull String key, @NonNull AIManagerItf oldValue, @NonNull AIManagerItf newValue) {
+        boolean[] replaced = new boolean[1];
+        super.computeIfPresent(key, (k, manager) -> (replaced[0] = manager.equals(oldValue)) ? swap(k, manager, newValue) : manager);
+        return replaced[0];
+    }
 
-        return orDefault;
+    @Override
+    public void replaceAll(@NonNull BiFunction<? super String, ? super AIManagerItf, ? extends AIManagerItf> function) {
+        keySet().forEach(key -> super.computeIfPresent(key, (k, manager) -> swap(k, manager, function.apply(k, manager))));
+    }
+
+    /**
+     * 移除所有画布并注销其MBean
+     */
+    @Override
+    public void clear() {
+        keySet().forEach(this::remove);
+    }
+
+    @Override
+    public AIManagerItf computeIfAbsent(@NonNull String key, @NonNull Function<? super String, ? extends AIManagerItf> mappingFunction) {
+        return super.computeIfAbsent(key, k -> swap(k, null, mappingFunction.apply(k)));
+    }
+
+    @Override
+    public AIManagerItf computeIfPresent(@NonNull String key, @NonNull BiFunction<? super String, ? super AIManagerItf, ? extends AIManagerItf> remappingFunction) {
+        return super.computeIfPresent(key, (k, manager) -> swap(k, manager, remappingFunction.apply(k, manager)));
+    }
+
+    @Override
+    public AIManagerItf compute(@NonNull String key, @NonNull BiFunction<? super String, ? super AIManagerItf, ? extends AIManagerItf> remappingFunction) {
+        return super.compute(key, (k, manager) -> swap(k, manager, remappingFunction.apply(k, manager)));
+    }
+
+    @Override
+    public AIManagerItf merge(@NonNull String key, @NonNull AIManagerItf value, @NonNull BiFunction<? super AIManagerItf, ? super AIManagerItf, ? extends AIManagerItf> remappingFunction) {
+        return super.compute(key, (k, manager) -> swap(k, manager, manager == null ? value : remappingFunction.apply(manager, value)));
+    }
+
+    /**
+     * @return 画布的MBean名称
+     */
+    public static ObjectName object_name(String key) throws JMException {
+        return new ObjectName("aiconnector:type=Canvas,name=" + ObjectName.quote(key));
+    }
+
+    /**
+     * 新建的画布使用默认的慢搜索捕获
+     */
+    private AIManager create(AIManager manager) {
+        manager.set_slow_search_capture(defaultCapture);
+        return manager;
+    }
+
+    /**
+     * 画布增删的唯一入口，在键的锁内调用：注销旧画布的MBean，注册新画布的MBean。
+     * 注册、注销失败只记录日志，不影响画布的使用
+     * @param old 原来的画布，没有为null
+     * @param manager 新的画布，null为移除
+     * @return manager
+     */
+    private AIManagerItf swap(String key, AIManagerItf old, AIManagerItf manager) {
+        if (old == manager) {
+            return manager;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = object_name(key);
+            if (old instanceof AIManager && server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            if (manager instanceof AIManager) {
+                // 同名的MBean是经由视图移除的画布留下的，以新画布为准
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+                server.registerMBean(((AIManager) manager).metrics, name);
+            }
+        } catch (JMException e) {
+            logger.warning(() -> "failed to update the MBean of canvas " + key + ": " + e);
+        }
+        return manager;
     }
 
 }
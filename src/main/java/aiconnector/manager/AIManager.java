@@ -1,19 +1,40 @@
 package aiconnector.manager;
 
+import aiconnector.collide.BarrierIndex;
+import aiconnector.collide.BarrierIndexType;
+import aiconnector.collide.SegmentIndex;
 import aiconnector.connector.AIConnector;
+import aiconnector.connector.AIDirection;
 import aiconnector.connector.AIRectangle;
+import aiconnector.connector.AnchorPlanner;
+import aiconnector.connector.HeuristicRoutingEngine;
+import aiconnector.connector.Polyline;
+import aiconnector.monitor.BarrierProbeEvent;
+import aiconnector.router.RoutingEngine;
+import aiconnector.router.RoutingEngines;
 import aiconnector.setting.AIConstants;
+import aiconnector.utils.IntObjectMap;
+import aiconnector.utils.IntSetMap;
 import aiconnector.utils.Tuple;
-import lombok.Getter;
 import lombok.NonNull;
 
 import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
 
 class AIManager implements AIManagerItf {
     /**
@@ -30,21 +51,116 @@ class AIManager implements AIManagerItf {
     /**
      * 所有的<b>图元</b>: 表hashCode-> 表图元
      */
-    @Getter
-    ConcurrentHashMap<Integer, AIRectangle> mapTableId2Rect = new ConcurrentHashMap<>();
+    final IntObjectMap<AIRectangle> mapTableId2Rect = new IntObjectMap<>();
     /**
      * 所有<b>连线</b>.connectorID-> AIConnector。connectorID的生成规则：Pair.with(hBox, hBox2).hashCode()
      */
-    ConcurrentHashMap<Integer, AIConnector> mapLineId2Connector = new ConcurrentHashMap<>();
+    final IntObjectMap<AIConnector> mapLineId2Connector = new IntObjectMap<>();
     /**
      * 图元->图元所有<b>连线关系</b>. 表id->表连线id. id的生成规则都是使用的视图对象。<p>
      * 表id的生成规则：formTemplate的hashcode;
      */
-    ConcurrentHashMap<Integer, CopyOnWriteArrayList<Integer>> mapTableId2LineIDs = new ConcurrentHashMap<>();
+    final IntSetMap mapTableId2LineIDs = new IntSetMap();
     /**
-     * 存储图元<b>冲突</b>: 图元-> 冲突图元
+     * 存储图元<b>冲突</b>: 图元-> 冲突图元，按建立关系的先后排列
      */
-    ConcurrentHashMap<Integer, CopyOnWriteArraySet<AIRectangle>> mapTableId2Overlaps = new ConcurrentHashMap<>();
+    final IntSetMap mapTableId2Overlaps = new IntSetMap();
+    /**
+     * 图元<b>空间索引</b>，与mapTableId2Rect同步更新，用于障碍探测
+     */
+    final BarrierIndex barrierIndex;
+    final BarrierIndexType indexType;
+    /**
+     * 重叠关系的连通分量(重叠簇)
+     */
+    final OverlapClusters overlapClusters = new OverlapClusters(mapTableId2Rect, mapTableId2Overlaps);
+    /**
+     * 路径搜索的执行器，默认为所有画布共享的ForkJoinPool，可以在运行时切换为虚拟线程
+     */
+    private volatile RouteExecutor executor;
+    /**
+     * 路径搜索引擎，默认为启发式搜索
+     */
+    private volatile RoutingEngine routingEngine = new HeuristicRoutingEngine(this);
+    /**
+     * 连线路径的缓存，图元增删改时按区域失效
+     */
+    final RouteCache routeCache = new RouteCache(AIConstants.ROUTE_CACHE_SIZE);
+    /**
+     * 所有连线的线段索引，用于连线间的重合检查和图元移动后的连线查找
+     */
+    final SegmentIndex segmentIndex = new SegmentIndex();
+    /**
+     * 运行指标，由AILayerManager注册为MBean
+     */
+    final AIManagerMetrics metrics = new AIManagerMetrics(this);
+    /**
+     * 慢搜索捕获，默认不捕获
+     */
+    private volatile SlowSearchCapture slowSearchCapture;
+
+    AIManager() {
+        this(BarrierIndexType.RTREE);
+    }
+
+    AIManager(@NonNull BarrierIndexType indexType) {
+        this(indexType, ForkJoinRouteExecutor.shared());
+    }
+
+    AIManager(@NonNull BarrierIndexType indexType, @NonNull RouteExecutor executor) {
+        this.indexType = indexType;
+        barrierIndex = indexType.create();
+        this.executor = executor;
+    }
+
+    @Override
+    public RouteExecutor get_executor() {
+        return executor;
+    }
+
+    @Override
+    public void set_executor(@NonNull RouteExecutor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public SlowSearchCapture get_slow_search_capture() {
+        return slowSearchCapture;
+    }
+
+    @Override
+    public void set_slow_search_capture(SlowSearchCapture capture) {
+        this.slowSearchCapture = capture;
+    }
+
+    @Override
+    public RoutingEngine get_routing_engine() {
+        return routingEngine;
+    }
+
+    @Override
+    public void set_routing_engine(@NonNull String name) {
+        set_routing_engine(RoutingEngines.create(name, this));
+    }
+
+    @Override
+    public void set_routing_engine(@NonNull RoutingEngine engine) {
+        // 先接收图元变化再补入已有图元，重复加入的图元按table_id替换
+        this.routingEngine = engine;
+        mapTableId2Rect.values().forEach(engine::insert);
+        // 不同引擎的路径不同
+        routeCache.clear();
+    }
+
+    @Override
+    public SegmentIndex get_segment_index() {
+        return segmentIndex;
+    }
+
+    @Override
+    public void query(Rectangle area, Consumer<AIRectangle> consumer) {
+        barrierIndex.query(area, consumer);
+    }
 
     /**
      * 存储跟特定图元相关的连线<p>
@@ -54,8 +170,19 @@ class AIManager implements AIManagerItf {
      * @return
      */
     @Override
-    public CopyOnWriteArraySet<AIRectangle> getOverlap(Integer table_id) {
-        return mapTableId2Overlaps.get(table_id);
+    public List<AIRectangle> get_overlaps(int table_id) {
+        int[] ids = mapTableId2Overlaps.get(table_id);
+        List<AIRectangle> overlaps = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            AIRectangle overlap = mapTableId2Rect.get(id);
+            if (overlap != null) overlaps.add(overlap);
+        }
+        return overlaps;
+    }
+
+    @Override
+    public int[] get_table_ids() {
+        return mapTableId2Rect.keys();
     }
 
     /**
@@ -67,6 +194,9 @@ class AIManager implements AIManagerItf {
     public boolean add_rect(@NonNull AIRectangle rectangle) {
         int table_id = rectangle.get_table_id();
         if (mapTableId2Rect.putIfAbsent(table_id,rectangle) == null) {
+            barrierIndex.insert(rectangle);
+            routingEngine.insert(rectangle);
+            routeCache.invalidate(rectangle);
             // 建立图元关联
             return build_overlap(table_id);
         }
@@ -80,18 +210,21 @@ class AIManager implements AIManagerItf {
      * @return true：删除成功
      */
     @Override
-    public boolean delete_rect(Integer table_id) {
+    public boolean delete_rect(int table_id) {
         AIRectangle removed = mapTableId2Rect.get(table_id);
         if (removed != null) {
             // 删除连线
-            CopyOnWriteArrayList<Integer> integers = mapTableId2LineIDs.get(table_id);
-            if (integers != null) {
-                integers.parallelStream().forEach(this::delete_line);
+            for (int line : mapTableId2LineIDs.get(table_id)) {
+                delete_line(line);
             }
             // 解除关系
             delete_overlap(table_id);
+            overlapClusters.remove(table_id);
             // 先删除连线在删除图元
             mapTableId2Rect.remove(table_id);
+            barrierIndex.remove(removed);
+            routingEngine.remove(removed);
+            routeCache.invalidate(removed);
         }
 
         return true;
@@ -104,21 +237,124 @@ class AIManager implements AIManagerItf {
      */
     public List<Tuple<Integer, List<Point>>> searchRoute(int src_table_id)
     {
-        CopyOnWriteArrayList<Integer> lines = get_connections(src_table_id);
-        if (lines == null) {
+        int[] lines = get_line_ids(src_table_id);
+        if (lines.length == 0) {
+            return null;
+        }
+
+        return reroute(Arrays.stream(lines).boxed().toList(), AIConnector::get_route);
+    }
+
+    @Override
+    public List<Tuple<Integer, Polyline>> search_polyline(int src_table_id) {
+        int[] lines = get_line_ids(src_table_id);
+        if (lines.length == 0) {
+            return null;
+        }
+
+        return reroute(Arrays.stream(lines).boxed().toList(), AIConnector::get_polyline);
+    }
+
+    /**
+     * 重新搜索连线的路径
+     * @param lines 连线id
+     * @param result 从连线取出路径
+     * @return <连线id，路径>，路径为空的连线不返回
+     */
+    private <R> List<Tuple<Integer, R>> reroute(List<Integer> lines, Function<AIConnector, R> result) {
+        plan_anchors(lines.stream().map(mapLineId2Connector::get).filter(Objects::nonNull).toList());
+        // 每条连线一个任务，由执行器决定在ForkJoinPool还是虚拟线程上执行
+        return executor.invoke_all(lines, line -> {
+            AIConnector connector = route_line(line);
+            return connector != null ? Tuple.of(line, result.apply(connector)) : null;
+        }).stream().filter(Objects::nonNull).toList();
+    }
+
+    /**
+     * 搜索之前统一分配锚点，缓存仍然有效的连线保留原来的锚点
+     */
+    private void plan_anchors(List<AIConnector> connectors) {
+        AnchorPlanner.plan(connectors.stream().filter(connector -> !routeCache.fresh(connector)).toList());
+    }
+
+    /**
+     * 搜索一条连线的路径，先查缓存。未命中缓存的搜索计入运行指标，慢搜索按设置捕获现场
+     * @return 搜索完成的连线，连线不存在或路径为空返回null
+     */
+    private AIConnector route_line(int line) {
+        AIConnector aiConnector = mapLineId2Connector.get(line);
+        if (aiConnector == null) {
             return null;
         }
+        Polyline route = routeCache.get(aiConnector);
+        if (route == null) {
+            long stamp = routeCache.stamp();
+            SlowSearchCapture capture = slowSearchCapture;
+            // 搜索会改写连线自身的锚点，现场需要搜索前预分配、预留的锚点
+            List<int[]> planned = capture == null ? null : SearchSnapshot.planned_anchors(aiConnector);
+            long start = metrics.search_started();
+            long nanos;
+            try {
+                route = aiConnector.search_polyline();
+            } finally {
+                nanos = metrics.search_finished(start, route == null ? Polyline.EMPTY : route);
+            }
+            if (capture != null && capture.should_capture(nanos, route)) {
+                capture.capture(this, aiConnector, planned, route, nanos);
+            }
+            if (!route.isEmpty()) {
+                routeCache.put(aiConnector, route, stamp);
+            }
+        }
+        return route.isEmpty() ? null : aiConnector;
+    }
 
-        return lines.parallelStream().map(line -> {
-            AIConnector aiConnector = mapLineId2Connector.get(line);
-            if (aiConnector != null) {
-                List<Point> route = aiConnector.search_route();
-                if (!route.isEmpty()) {
-                    return Tuple.of(aiConnector.get_connector_id(), route);
+    @Override
+    public Map<Integer, List<Point>> routeAll() {
+        return routeAll(Arrays.stream(mapLineId2Connector.keys()).boxed().toList());
+    }
+
+    @Override
+    public Map<Integer, List<Point>> routeAll(@NonNull Collection<Integer> lineIds) {
+        ConcurrentHashMap<Integer, List<Point>> routes = new ConcurrentHashMap<>();
+        routeAll(lineIds, routes::put);
+        return routes;
+    }
+
+    @Override
+    public void routeAll(@NonNull Collection<Integer> lineIds, @NonNull BiConsumer<Integer, List<Point>> consumer) {
+        // 去重，按两端图元中心的距离从长到短排序：长的连线搜索慢，先开始可以缩短总时间
+        List<AIConnector> connectors = new LinkedHashSet<>(lineIds).stream()
+                .map(mapLineId2Connector::get)
+                .filter(Objects::nonNull)
+                .sorted(Comparator.comparingLong(AIManager::estimate_length).reversed())
+                .toList();
+        if (connectors.isEmpty()) {
+            return;
+        }
+        plan_anchors(connectors);
+
+        // 固定数量的工作者依次领取连线，并发度与执行器无关
+        AtomicInteger next = new AtomicInteger();
+        int workers = Math.min(AIConstants.ROUTE_ALL_WORKERS, connectors.size());
+        executor.invoke_all(IntStream.range(0, workers).boxed().toList(), worker -> {
+            for (int i = next.getAndIncrement(); i < connectors.size(); i = next.getAndIncrement()) {
+                int line = connectors.get(i).get_connector_id();
+                AIConnector connector = route_line(line);
+                if (connector != null) {
+                    consumer.accept(line, connector.get_route());
                 }
             }
             return null;
-        }).filter(Objects::nonNull).toList();
+        });
+    }
+
+    /**
+     * @return 两端图元中心的曼哈顿距离
+     */
+    private static long estimate_length(AIConnector connector) {
+        AIRectangle src = connector.get_srcRect(), dst = connector.get_dstRect();
+        return (long) Math.abs(src.getCenterX() - dst.getCenterX()) + (long) Math.abs(src.getCenterY() - dst.getCenterY());
     }
 
 //    Boolean refresh_overlap(int table_id, REFRESH_REASON refresh_type)
@@ -146,8 +382,39 @@ class AIManager implements AIManagerItf {
 //    }
 
     @Override
-    public Optional<AIRectangle> find_rect(Integer table_id) {
-        return Optional.ofNullable(mapTableId2Rect.get(table_id)) ;
+    public AIRectangle get_rect(int table_id) {
+        return mapTableId2Rect.get(table_id);
+    }
+
+    @Override
+    public OverlapCluster get_overlap_cluster(int table_id) {
+        return overlapClusters.get(table_id);
+    }
+
+    @Override
+    public AIRectangle find_barrier(AIDirection direction, Point origin, int bound, Predicate<AIRectangle> filter) {
+        BarrierProbeEvent event = new BarrierProbeEvent();
+        if (!event.isEnabled()) {
+            return barrierIndex.nearest(direction, origin, bound, filter);
+        }
+        // 记录交给过滤条件判断的图元数
+        int[] candidates = {0};
+        event.begin();
+        AIRectangle barrier = barrierIndex.nearest(direction, origin, bound, rect -> {
+            candidates[0]++;
+            return filter.test(rect);
+        });
+        if (event.shouldCommit()) {
+            event.direction = direction.name();
+            event.originX = origin.x;
+            event.originY = origin.y;
+            event.bound = bound;
+            event.candidates = candidates[0];
+            event.hit = barrier != null;
+            event.barrierTableId = barrier != null ? barrier.get_table_id() : 0;
+            event.commit();
+        }
+        return barrier;
     }
 
     /**
@@ -162,61 +429,62 @@ class AIManager implements AIManagerItf {
      */
     private boolean build_overlap(int table_id)    // 建立关系
     {
-        var spTempRect = find_rect(table_id);
-        if (spTempRect.isEmpty()) return false;
+        AIRectangle newRectangle = mapTableId2Rect.get(table_id);
+        if (newRectangle == null) return false;
 
-        // 循环当前所有图元，建立图元关系
-        AIRectangle newRectangle = spTempRect.get();
-        mapTableId2Rect.values().parallelStream().forEach(spExist -> {
+        // 通过空间索引找到与膨胀后的新图元相交的图元，建立图元关系
+        barrierIndex.query(overlap_bounds(newRectangle), spExist -> {
             // 跳过自身
-            if (spExist.equals(newRectangle)) return;
-            // 如果图元重叠,则加入
-            boolean boverlap =  spExist.intersects(new Rectangle(newRectangle.x - AIConstants.OVERLAP_SPACE, newRectangle.y - AIConstants.OVERLAP_SPACE, newRectangle.width+AIConstants.OVERLAP_SPACE, newRectangle.height+AIConstants.OVERLAP_SPACE));
-            if (boverlap) {
-                // 更新新图元的覆盖关系
-                CopyOnWriteArraySet<AIRectangle> overlaps = mapTableId2Overlaps.getOrDefault(table_id, new CopyOnWriteArraySet<>());
-                overlaps.add(spExist);
-                mapTableId2Overlaps.put(table_id, overlaps);
-
-                // 更新与新图元覆盖的 图元 的覆盖关系
-                CopyOnWriteArraySet<AIRectangle> alreadyExist = mapTableId2Overlaps.getOrDefault(spExist.get_table_id(), new CopyOnWriteArraySet<>());
-                alreadyExist.add(newRectangle);
-                mapTableId2Overlaps.put(spExist.get_table_id(), alreadyExist);
-            }
+            if (spExist == newRectangle) return;
+            attach_overlap(newRectangle, spExist);
         });
 
         return true;
     }
 
+    /**
+     * 判定重叠时使用的膨胀区域(在两个图元相邻很近的情况下判定为重叠)
+     */
+    private static Rectangle overlap_bounds(Rectangle rect) {
+        return new Rectangle(rect.x - AIConstants.OVERLAP_SPACE, rect.y - AIConstants.OVERLAP_SPACE, rect.width+AIConstants.OVERLAP_SPACE, rect.height+AIConstants.OVERLAP_SPACE);
+    }
+
+    /**
+     * 建立两个图元的双向重叠关系
+     */
+    private void attach_overlap(AIRectangle rect, AIRectangle other) {
+        mapTableId2Overlaps.add(rect.get_table_id(), other.get_table_id());
+        mapTableId2Overlaps.add(other.get_table_id(), rect.get_table_id());
+        overlapClusters.union(rect.get_table_id(), other.get_table_id());
+    }
+
+    /**
+     * 从table_id的重叠关系中删除图元，删除后为空则移除
+     */
+    private void detach_overlap(int table_id, int other_id) {
+        mapTableId2Overlaps.remove(table_id, other_id);
+    }
+
     /**
      * v2.0 <p>
      * 解除table_id与其他图元的关系
      * @param table_id
      * @return
      */
-    boolean delete_overlap(Integer table_id)
+    boolean delete_overlap(int table_id)
     {
-        Optional<AIRectangle> spTempRect = find_rect(table_id);
-        if (spTempRect.isEmpty()) return false;
+        if (!mapTableId2Rect.containsKey(table_id)) return false;
 
         // 不存在重叠关系
-        AIRectangle rectDelete = spTempRect.get();
-        CopyOnWriteArraySet<AIRectangle> rc_overlaps = mapTableId2Overlaps.remove(table_id);
-        if (rc_overlaps == null) {
+        int[] rc_overlaps = mapTableId2Overlaps.remove(table_id);
+        if (rc_overlaps.length == 0) {
             return false;
         }
 
         // 删除重叠关系
-        rc_overlaps.parallelStream().forEach(overlap -> {
-            int idByRect = overlap.get_table_id();
-            CopyOnWriteArraySet<AIRectangle> suboverlap = mapTableId2Overlaps.get(idByRect);
-            if (suboverlap != null) {
-                suboverlap.remove(rectDelete);
-                if (suboverlap.isEmpty()) {
-                    mapTableId2Overlaps.remove(idByRect);
-                }
-            }
-        });
+        for (int overlap : rc_overlaps) {
+            detach_overlap(overlap, table_id);
+        }
 
         return true;
     }
@@ -230,7 +498,7 @@ class AIManager implements AIManagerItf {
      * @return
      */
     @Override
-    public boolean delete_line(Integer lineId) {
+    public boolean delete_line(int lineId) {
         AIConnector remove = mapLineId2Connector.remove(lineId);
         // 连线不存在
         if (remove == null) return false;
@@ -242,26 +510,20 @@ class AIManager implements AIManagerItf {
         return delete_line(lineId, srcRect, dstRect);
     }
 
-    private boolean delete_line(Integer lineId, @NonNull AIRectangle srcRect, @NonNull AIRectangle dstRect) {
-        CopyOnWriteArrayList<Integer> integersLine = mapTableId2LineIDs.get(srcRect.get_table_id());
-        CopyOnWriteArrayList<Integer> integersLine1 = mapTableId2LineIDs.get(dstRect.get_table_id());
-
+    private boolean delete_line(int lineId, @NonNull AIRectangle srcRect, @NonNull AIRectangle dstRect) {
+        // 集合变空时自动删除图元的键
         boolean delete = true;
-        if (integersLine != null) {
-            delete = integersLine.remove(lineId);
-            if (integersLine.isEmpty()) {
-                mapTableId2LineIDs.remove(srcRect.get_table_id());
-            }
+        if (mapTableId2LineIDs.containsKey(srcRect.get_table_id())) {
+            delete = mapTableId2LineIDs.remove(srcRect.get_table_id(), lineId);
         }
-        if (integersLine1 != null) {
-            delete &= integersLine1.remove(lineId);
-            if (integersLine1.isEmpty()) {
-                mapTableId2LineIDs.remove(dstRect.get_table_id());
-            }
+        if (mapTableId2LineIDs.containsKey(dstRect.get_table_id())) {
+            delete &= mapTableId2LineIDs.remove(dstRect.get_table_id(), lineId);
         }
 
         // 删除锚点
         delete_anchor(srcRect, dstRect, lineId);
+        routeCache.remove(lineId);
+        segmentIndex.remove(lineId);
         return delete;
     }
 
@@ -319,26 +581,18 @@ class AIManager implements AIManagerItf {
         // 添加到 表->连线
         int srcTableID = spConnector.get_srcRect().get_table_id();
         int dstTableID = spConnector.get_dstRect().get_table_id();
-        CopyOnWriteArrayList<Integer> orDefault = mapTableId2LineIDs.getOrDefault(srcTableID, new CopyOnWriteArrayList<>());
-        if (orDefault.isEmpty()) {
-            mapTableId2LineIDs.put(srcTableID, orDefault);
-        }
-        orDefault.add(connectorId);
+        mapTableId2LineIDs.add(srcTableID, connectorId);
         // 如果源表和目标表是一个，那么添加一个即可。
         if (srcTableID == dstTableID) {
             return true;
         }
-        CopyOnWriteArrayList<Integer> orDefault2 = mapTableId2LineIDs.getOrDefault(dstTableID, new CopyOnWriteArrayList<>());
-        if (orDefault2.isEmpty()) {
-            mapTableId2LineIDs.put(dstTableID, orDefault2);
-        }
-        orDefault2.add(connectorId);
+        mapTableId2LineIDs.add(dstTableID, connectorId);
 
         return true;
     }
 
     @Override
-    public boolean add_line(@NonNull AIRectangle srcRect, @NonNull AIRectangle dstRect, @NonNull Integer lineId) {
+    public boolean add_line(@NonNull AIRectangle srcRect, @NonNull AIRectangle dstRect, int lineId) {
         return add_line(new AIConnector(srcRect, dstRect, lineId, this));
     }
 
@@ -350,40 +604,82 @@ class AIManager implements AIManagerItf {
      * @return
      */
     @Override
-    public boolean delete_line(Integer line_id, int srcId, int dstId) {
-        var spSrcRect = find_rect(srcId);
-        var spDstRect = find_rect(dstId);
-        if (spSrcRect.isEmpty() || spDstRect.isEmpty()) {
+    public boolean delete_line(int line_id, int srcId, int dstId) {
+        AIRectangle spSrcRect = mapTableId2Rect.get(srcId);
+        AIRectangle spDstRect = mapTableId2Rect.get(dstId);
+        if (spSrcRect == null || spDstRect == null) {
             return false;
         }
 
-        return delete_line(line_id, spSrcRect.get(), spDstRect.get());
+        return delete_line(line_id, spSrcRect, spDstRect);
     }
 
     /**
      * v2.0 获取与图元相关的连线
      * @param table_id 图元id
-     * @return 连线列表
+     * @return 连线id，按添加的先后排列
      */
     @Override
-    public CopyOnWriteArrayList<Integer> get_connections(Integer table_id) {
+    public int[] get_line_ids(int table_id) {
         return mapTableId2LineIDs.get(table_id);
     }
 
     @Override
-    public AIConnector get_connection(Integer connection_id) {
+    public AIConnector get_connection(int connection_id) {
         return mapLineId2Connector.get(connection_id);
     }
 
+    /**
+     * 移动图元：图元对象保持不变，只修改坐标。<p>
+     * 重叠关系只更新新旧邻域的差异：离开的邻居解除关系，新进入的邻居建立关系。
+     */
     @Override
-    public void move_rect(Integer table_id, @NonNull Rectangle lpRect) {
-        Optional<AIRectangle> spTempRect = find_rect(table_id);
-        if (spTempRect.isEmpty()) return;
+    public List<Tuple<Integer, List<Point>>> move_rect(int table_id, @NonNull Rectangle lpRect) {
+        AIRectangle rect = mapTableId2Rect.get(table_id);
+        if (rect == null) return List.of();
+
+        Rectangle oldBounds = rect.getBounds();
+        // 图元上的锚点全部失效，连线重新搜索时重新分配
+        rect.clear_anchor_points();
+        barrierIndex.remove(rect);
+        rect.setBounds(lpRect);
+        barrierIndex.insert(rect);
+        routingEngine.insert(rect);
+        routeCache.invalidate(oldBounds);
+        routeCache.invalidate(rect);
+
+        // 新的邻域
+        HashMap<Integer, AIRectangle> after = new HashMap<>();
+        barrierIndex.query(overlap_bounds(rect), spExist -> {
+            if (spExist != rect) after.put(spExist.get_table_id(), spExist);
+        });
+        // 旧的邻域
+        for (int overlap : mapTableId2Overlaps.get(table_id)) {
+            if (after.remove(overlap) == null) {
+                detach_overlap(table_id, overlap);
+                detach_overlap(overlap, table_id);
+            }
+        }
+        after.values().forEach(overlap -> attach_overlap(rect, overlap));
+        overlapClusters.rebuild(table_id);
 
- 		// 删除图元
- 		delete_rect(table_id);
- 		// 添加图元
- 		add_rect(new AIRectangle(lpRect, table_id));
+        return reroute(dirty_lines(table_id, oldBounds, rect.getBounds()), AIConnector::get_route);
+    }
+
+    /**
+     * 图元移动后需要重新搜索的连线：图元自身的连线，以及路径经过旧位置或新位置(外扩BARRIER_SPACE)的连线。
+     * 经过旧位置的连线原本在绕行，可能有了更短的路径；经过新位置的连线被挡住了。
+     */
+    private List<Integer> dirty_lines(int table_id, Rectangle oldBounds, Rectangle newBounds) {
+        LinkedHashSet<Integer> dirty = new LinkedHashSet<>();
+        mapTableId2LineIDs.forEach(table_id, dirty::add);
+        oldBounds.grow(AIConstants.BARRIER_SPACE, AIConstants.BARRIER_SPACE);
+        newBounds.grow(AIConstants.BARRIER_SPACE, AIConstants.BARRIER_SPACE);
+        segmentIndex.query(oldBounds, dirty::add);
+        segmentIndex.query(newBounds, dirty::add);
+        // 连线删除时正在进行的搜索在写入线段索引之后才移除自己的线段，中间可能被查到
+        dirty.removeIf(line -> !mapLineId2Connector.containsKey(line));
+        return new ArrayList<>(dirty);
     }
 
     @Override
@@ -399,7 +695,7 @@ class AIManager implements AIManagerItf {
      * @param lineId 与lineId关联的锚点
      * @return
      */
-    boolean delete_anchor(@NonNull AIRectangle spSrcRect, @NonNull AIRectangle spDstRect, Integer lineId) {
+    boolean delete_anchor(@NonNull AIRectangle spSrcRect, @NonNull AIRectangle spDstRect, int lineId) {
         spSrcRect.detach_anchor_point(lineId);
         spDstRect.detach_anchor_point(lineId);
 
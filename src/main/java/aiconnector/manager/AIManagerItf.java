@@ -1,34 +1,235 @@
 package aiconnector.manager;
 
+import aiconnector.collide.SegmentIndex;
 import aiconnector.connector.AIConnector;
+import aiconnector.connector.AIDirection;
 import aiconnector.connector.AIRectangle;
+import aiconnector.connector.Polyline;
+import aiconnector.router.RoutingEngine;
+import aiconnector.utils.Tuple;
 import lombok.NonNull;
 
 import java.awt.*;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 public interface AIManagerItf {
-    CopyOnWriteArraySet<AIRectangle> getOverlap(Integer table_id);
+    /**
+     * @deprecated 每次调用都复制一份集合，使用{@link #get_overlaps(int)}
+     */
+    @Deprecated
+    default CopyOnWriteArraySet<AIRectangle> getOverlap(Integer table_id) {
+        List<AIRectangle> overlaps = get_overlaps(table_id);
+        return overlaps.isEmpty() ? null : new CopyOnWriteArraySet<>(overlaps);
+    }
+
+    /**
+     * @return 与图元重叠的图元，按建立关系的先后排列；没有返回空列表
+     */
+    List<AIRectangle> get_overlaps(int table_id);
+
+    /**
+     * @return 图元所在的重叠簇(重叠关系的连通分量)，图元不存在返回null
+     */
+    OverlapCluster get_overlap_cluster(int table_id);
 
     boolean add_rect(@NonNull AIRectangle rectangle);
-    boolean delete_rect(Integer table_id);
+    boolean delete_rect(int table_id);
+
+    /**
+     * @deprecated 使用{@link #delete_rect(int)}
+     */
+    @Deprecated
+    default boolean delete_rect(Integer table_id) {
+        return delete_rect(table_id.intValue());
+    }
+
+    /**
+     * @return 图元，不存在返回null
+     */
+    AIRectangle get_rect(int table_id);
 
-    Optional<AIRectangle> find_rect(Integer table_id);
+    /**
+     * @deprecated 使用{@link #get_rect(int)}
+     */
+    @Deprecated
+    default Optional<AIRectangle> find_rect(Integer table_id) {
+        return Optional.ofNullable(get_rect(table_id));
+    }
+
+    /**
+     * @return 所有图元id的快照
+     */
+    int[] get_table_ids();
+
+    /**
+     * 障碍探测：从origin出发沿direction方向最先遇到的图元
+     * @see aiconnector.collide.BarrierIndex#nearest
+     */
+    AIRectangle find_barrier(AIDirection direction, Point origin, int bound, Predicate<AIRectangle> filter);
 
     boolean add_line(@NonNull AIConnector spConnector);
-    boolean add_line(@NonNull AIRectangle srcRect, @NonNull AIRectangle dstRect, @NonNull Integer lineId);
-    boolean delete_line(Integer lineId);
-    boolean delete_line(Integer line_id, int srcId, int dstId);
+    boolean add_line(@NonNull AIRectangle srcRect, @NonNull AIRectangle dstRect, int lineId);
+    boolean delete_line(int lineId);
+    boolean delete_line(int line_id, int srcId, int dstId);
+
+    /**
+     * @deprecated 使用{@link #add_line(AIRectangle, AIRectangle, int)}
+     */
+    @Deprecated
+    default boolean add_line(@NonNull AIRectangle srcRect, @NonNull AIRectangle dstRect, @NonNull Integer lineId) {
+        return add_line(srcRect, dstRect, lineId.intValue());
+    }
+
+    /**
+     * @deprecated 使用{@link #delete_line(int)}
+     */
+    @Deprecated
+    default boolean delete_line(Integer lineId) {
+        return delete_line(lineId.intValue());
+    }
+
+    /**
+     * @deprecated 使用{@link #delete_line(int, int, int)}
+     */
+    @Deprecated
+    default boolean delete_line(Integer line_id, int srcId, int dstId) {
+        return delete_line(line_id.intValue(), srcId, dstId);
+    }
+
+    /**
+     * @return 图元的连线id，按添加的先后排列；没有返回空数组
+     */
+    int[] get_line_ids(int table_id);
+    AIConnector get_connection(int connection_id);
+
+    /**
+     * @deprecated 每次调用都复制一份列表，使用{@link #get_line_ids(int)}
+     */
+    @Deprecated
+    default CopyOnWriteArrayList<Integer> get_connections(Integer table_id) {
+        int[] lines = get_line_ids(table_id);
+        return lines.length == 0 ? null : new CopyOnWriteArrayList<>(Arrays.stream(lines).boxed().toList());
+    }
+
+    /**
+     * @deprecated 使用{@link #get_connection(int)}
+     */
+    @Deprecated
+    default AIConnector get_connection(Integer connection_id) {
+        return get_connection(connection_id.intValue());
+    }
+
+    /**
+     * 移动图元。图元的连线保留，图元自身的连线以及路径经过旧位置或新位置的连线重新搜索。
+     * @return 重新搜索的<连线id，路径>
+     */
+    List<Tuple<Integer, List<Point>>> move_rect(int table_id, @NonNull Rectangle lpRect);
 
-    CopyOnWriteArrayList<Integer> get_connections(Integer table_id);
-    AIConnector get_connection(Integer connection_id);
+    /**
+     * @deprecated 使用{@link #move_rect(int, Rectangle)}
+     */
+    @Deprecated
+    default List<Tuple<Integer, List<Point>>> move_rect(Integer table_id, @NonNull Rectangle lpRect) {
+        return move_rect(table_id.intValue(), lpRect);
+    }
 
-    void move_rect(Integer table_id, @NonNull Rectangle lpRect);
+    /**
+     * 重新搜索图元上所有连线的路径
+     * @param src_table_id 图元
+     * @return <连线id，紧凑的折线路径>，图元上没有连线返回null
+     */
+    List<Tuple<Integer, Polyline>> search_polyline(int src_table_id);
+
+    /**
+     * 搜索画布上所有连线的路径
+     * @return 连线id -> 路径，路径为空的连线不返回
+     */
+    Map<Integer, List<Point>> routeAll();
+
+    /**
+     * 批量搜索连线的路径。重复的连线只搜索一次，两端图元距离远的先搜索，并发的连线数不超过ROUTE_ALL_WORKERS。
+     * @param lineIds 连线id
+     * @return 连线id -> 路径，路径为空的连线不返回
+     */
+    Map<Integer, List<Point>> routeAll(@NonNull Collection<Integer> lineIds);
+
+    /**
+     * 批量搜索连线的路径，每条连线搜索完成后立即回调
+     * @param consumer <连线id，路径>，在搜索线程上并发调用，路径为空的连线不回调
+     */
+    void routeAll(@NonNull Collection<Integer> lineIds, @NonNull BiConsumer<Integer, List<Point>> consumer);
 
     boolean attach_anchor(AIRectangle spSrcRect, Point point, int connectorID);
 
-    ConcurrentHashMap<Integer, AIRectangle> getMapTableId2Rect();
+    /**
+     * @deprecated 每次调用都复制所有图元，使用{@link #get_table_ids()}、{@link #get_rect(int)}
+     */
+    @Deprecated
+    default ConcurrentHashMap<Integer, AIRectangle> getMapTableId2Rect() {
+        ConcurrentHashMap<Integer, AIRectangle> rects = new ConcurrentHashMap<>();
+        for (int table_id : get_table_ids()) {
+            AIRectangle rect = get_rect(table_id);
+            if (rect != null) rects.put(table_id, rect);
+        }
+        return rects;
+    }
+
+    /**
+     * @return 路径搜索的执行器
+     */
+    RouteExecutor get_executor();
+
+    /**
+     * 替换路径搜索的执行器，之后开始的搜索生效
+     */
+    void set_executor(@NonNull RouteExecutor executor);
+
+    /**
+     * @return 慢搜索捕获，没有设置返回null
+     */
+    SlowSearchCapture get_slow_search_capture();
+
+    /**
+     * 设置慢搜索捕获：未命中缓存的搜索耗时达到阈值或者路径超过MAX_STEP时保存现场，用SearchSnapshot离线重放
+     * @param capture null为不捕获
+     */
+    void set_slow_search_capture(SlowSearchCapture capture);
+
+    /**
+     * @return 画布上所有连线的线段索引，连线搜索完成后更新
+     */
+    SegmentIndex get_segment_index();
+
+    /**
+     * 区域查询：与area相交的所有图元
+     * @see aiconnector.collide.BarrierIndex#query
+     */
+    void query(Rectangle area, Consumer<AIRectangle> consumer);
+
+    /**
+     * @return 路径搜索引擎
+     */
+    RoutingEngine get_routing_engine();
+
+    /**
+     * 按名称切换路径搜索引擎，之后开始的搜索生效
+     * @param name 引擎名称，见RoutingEngines#names
+     * @throws IllegalArgumentException 没有该名称的引擎
+     */
+    void set_routing_engine(@NonNull String name);
+
+    /**
+     * 切换路径搜索引擎，画布上已有的图元逐个加入新引擎。之后开始的搜索生效
+     */
+    void set_routing_engine(@NonNull RoutingEngine engine);
 }
@@ -0,0 +1,96 @@
+package aiconnector.manager;
+
+/**
+ * 画布的运行指标，AILayerManager新建画布时注册为aiconnector:type=Canvas,name=画布名称。<p>
+ * 搜索耗时只统计未命中缓存、实际执行的搜索；耗时分布从注册或上次resetStatistics开始累计。
+ */
+public interface AIManagerMXBean {
+    int getRectangleCount();
+
+    int getConnectorCount();
+
+    /**
+     * @return 重叠关系数，每对重叠的图元算一次
+     */
+    long getOverlapEdgeCount();
+
+    /**
+     * @return 最大重叠簇的图元数
+     */
+    int getLargestOverlapCluster();
+
+    /**
+     * @return 实际执行的搜索次数
+     */
+    long getSearchCount();
+
+    /**
+     * @return 最近10秒平均每秒的搜索次数
+     */
+    double getRoutesPerSecond();
+
+    /**
+     * @return 搜索耗时的总和，用于判断哪个画布占用CPU
+     */
+    long getSearchTimeMillis();
+
+    double getSearchLatencyP50Micros();
+
+    double getSearchLatencyP99Micros();
+
+    double getSearchLatencyMaxMicros();
+
+    /**
+     * @return 超过MAX_STEP、路径不完整的搜索次数
+     */
+    long getPartialRouteCount();
+
+    /**
+     * @return 没有找到路径的搜索次数
+     */
+    long getFailedRouteCount();
+
+    long getCacheHits();
+
+    long getCacheMisses();
+
+    /**
+     * @return 缓存命中率，没有查询过返回0
+     */
+    double getCacheHitRate();
+
+    /**
+     * @return 正在进行的搜索数
+     */
+    int getActiveSearches();
+
+    /**
+     * @return 同时进行的搜索数的最大值
+     */
+    int getPeakActiveSearches();
+
+    /**
+     * @return 路径搜索执行器的类名
+     */
+    String getExecutor();
+
+    /**
+     * @return 执行器线程池中正在执行任务的线程数，执行器不是ForkJoinRouteExecutor返回-1
+     */
+    int getExecutorActiveThreads();
+
+    /**
+     * @return 执行器线程池的线程数，执行器不是ForkJoinRouteExecutor返回-1
+     */
+    int getExecutorPoolSize();
+
+    /**
+     * @return 执行器线程池的任务窃取次数，执行器不是ForkJoinRouteExecutor返回-1。线程池在画布间共享时为所有画布的合计
+     */
+    long getExecutorStealCount();
+
+    /**
+     * 清零搜索次数、耗时分布和缓存命中计数
+     */
+    void resetStatistics();
+}
@@ -0,0 +1,184 @@
+package aiconnector.manager;
+
+import aiconnector.connector.Polyline;
+import aiconnector.monitor.LatencyHistogram;
+import aiconnector.monitor.RateCounter;
+import aiconnector.setting.AIConstants;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * AIManager的运行指标。搜索线程上只做计数，图元数、重叠关系等在读取时从画布计算。
+ */
+final class AIManagerMetrics implements AIManagerMXBean {
+    private final AIManager _manager;
+    private final LatencyHistogram _latency = new LatencyHistogram();
+    private final RateCounter _rate = new RateCounter();
+    private final LongAdder _searchNanos = new LongAdder();
+    private final LongAdder _partial = new LongAdder();
+    private final LongAdder _failed = new LongAdder();
+    private final AtomicInteger _active = new AtomicInteger();
+    private final AtomicInteger _peak = new AtomicInteger();
+
+    AIManagerMetrics(AIManager manager) {
+        _manager = manager;
+    }
+
+    /**
+     * @return 搜索开始的时间，传给search_finished
+     */
+    long search_started() {
+        _peak.accumulateAndGet(_active.incrementAndGet(), Math::max);
+        return System.nanoTime();
+    }
+
+    /**
+     * @return 搜索耗时
+     */
+    long search_finished(long start, Polyline route) {
+        long nanos = System.nanoTime() - start;
+        _active.decrementAndGet();
+        _latency.record(nanos);
+        _rate.mark();
+        _searchNanos.add(nanos);
+        if (route.isEmpty()) {
+            _failed.increment();
+        } else if (route.size() > AIConstants.MAX_STEP) {
+            _partial.increment();
+        }
+        return nanos;
+    }
+
+    @Override
+    public int getRectangleCount() {
+        return _manager.mapTableId2Rect.size();
+    }
+
+    @Override
+    public int getConnectorCount() {
+        return _manager.mapLineId2Connector.size();
+    }
+
+    @Override
+    public long getOverlapEdgeCount() {
+        long edges = 0;
+        for (int table_id : _manager.mapTableId2Rect.keys()) {
+            edges += _manager.mapTableId2Overlaps.size(table_id);
+        }
+        return edges / 2;
+    }
+
+    @Override
+    public int getLargestOverlapCluster() {
+        OverlapCluster largest = _manager.overlapClusters.largest();
+        return largest == null ? 0 : largest.getSize();
+    }
+
+    @Override
+    public long getSearchCount() {
+        return _latency.count();
+    }
+
+    @Override
+    public double getRoutesPerSecond() {
+        return _rate.rate();
+    }
+
+    @Override
+    public long getSearchTimeMillis() {
+        return _searchNanos.sum() / 1_000_000;
+    }
+
+    @Override
+    public double getSearchLatencyP50Micros() {
+        return _latency.percentile(50) / 1e3;
+    }
+
+    @Override
+    public double getSearchLatencyP99Micros() {
+        return _latency.percentile(99) / 1e3;
+    }
+
+    @Override
+    public double getSearchLatencyMaxMicros() {
+        return _latency.max() / 1e3;
+    }
+
+    @Override
+    public long getPartialRouteCount() {
+        return _partial.sum();
+    }
+
+    @Override
+    public long getFailedRouteCount() {
+        return _failed.sum();
+    }
+
+    @Override
+    public long getCacheHits() {
+        return _manager.routeCache.getHits().get();
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return _manager.routeCache.getMisses().get();
+    }
+
+    @Override
+    public double getCacheHitRate() {
+        long hits = getCacheHits(), total = hits + getCacheMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public int getActiveSearches() {
+        return _active.get();
+    }
+
+    @Override
+    public int getPeakActiveSearches() {
+        return _peak.get();
+    }
+
+    @Override
+    public String getExecutor() {
+        return _manager.get_executor().getClass().getSimpleName();
+    }
+
+    @Override
+    public int getExecutorActiveThreads() {
+        ForkJoinPool pool = pool();
+        return pool == null ? -1 : pool.getActiveThreadCount();
+    }
+
+    @Override
+    public int getExecutorPoolSize() {
+        ForkJoinPool pool = pool();
+        return pool == null ? -1 : pool.getPoolSize();
+    }
+
+    @Override
+    public long getExecutorStealCount() {
+        ForkJoinPool pool = pool();
+        return pool == null ? -1 : pool.getStealCount();
+    }
+
+    private ForkJoinPool pool() {
+        RouteExecutor executor = _manager.get_executor();
+        return executor instanceof ForkJoinRouteExecutor ? ((ForkJoinRouteExecutor) executor).getPool() : null;
+    }
+
+    @Override
+    public void resetStatistics() {
+        _latency.reset();
+        _rate.reset();
+        _searchNanos.reset();
+        _partial.reset();
+        _failed.reset();
+        _peak.set(_active.get());
+        _manager.routeCache.getHits().set(0);
+        _manager.routeCache.getMisses().set(0);
+    }
+}
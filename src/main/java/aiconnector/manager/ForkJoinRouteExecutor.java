@@ -0,0 +1,104 @@
+package aiconnector.manager;
+
+import aiconnector.utils.Tuple;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 基于ForkJoinPool的执行器。<p>
+ * 在池内调用时，第一个分支fork出去，第二个分支在当前线程执行，然后join：
+ * join会帮助执行其他任务而不是阻塞工作线程，因此嵌套的分叉不会占满线程池。
+ */
+public class ForkJoinRouteExecutor implements RouteExecutor {
+    /**
+     * 静态内部类,包含一个静态属性：所有画布共享的执行器
+     */
+    private static class SharedInstance {
+        private static final ForkJoinRouteExecutor INSTANCE = new ForkJoinRouteExecutor(new ForkJoinPool(Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * @return 所有画布共享的执行器
+     */
+    public static ForkJoinRouteExecutor shared() {
+        return SharedInstance.INSTANCE;
+    }
+
+    @Getter
+    private final ForkJoinPool pool;
+
+    public ForkJoinRouteExecutor(@NonNull ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public <A, B> Tuple<A, B> fork_join(Supplier<A> left, Supplier<B> right) {
+        if (ForkJoinTask.getPool() != pool) {
+            // 从池外调用，提交到池中执行
+            return pool.invoke(new Branch<>(() -> fork_join(left, right)));
+        }
+
+        ForkJoinTask<A> leftTask = new Branch<>(left).fork();
+        B b;
+        try {
+            b = right.get();
+        } catch (RuntimeException | Error e) {
+            leftTask.quietlyJoin();
+            throw e;
+        }
+        return Tuple.of(leftTask.join(), b);
+    }
+
+    @Override
+    public <T, R> List<R> invoke_all(List<T> items, Function<T, R> task) {
+        if (ForkJoinTask.getPool() != pool) {
+            return pool.invoke(new Branch<>(() -> invoke_all(items, task)));
+        }
+
+        // 不用ForkJoinTask.invokeAll：一项失败时它会取消其余的项，其他连线就不再搜索
+        List<ForkJoinTask<R>> tasks = new ArrayList<>(items.size());
+        for (T item : items) {
+            tasks.add(new Branch<>(() -> task.apply(item)).fork());
+        }
+        // 倒序等待：最后fork的任务在当前线程队列的顶端，可以直接在当前线程执行
+        for (int i = tasks.size() - 1; i >= 0; i--) {
+            tasks.get(i).quietlyJoin();
+        }
+        List<R> results = new ArrayList<>(tasks.size());
+        RuntimeException failure = null;
+        for (ForkJoinTask<R> branch : tasks) {
+            try {
+                results.add(branch.join());
+            } catch (RuntimeException e) {
+                if (failure == null) failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+    private static final class Branch<T> extends RecursiveTask<T> {
+        private static final long serialVersionUID = 1L;
+
+        private final Supplier<T> supplier;
+
+        Branch(Supplier<T> supplier) {
+            this.supplier = supplier;
+        }
+
+        @Override
+        protected T compute() {
+            return supplier.get();
+        }
+    }
+}
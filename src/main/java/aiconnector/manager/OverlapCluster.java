@@ -0,0 +1,22 @@
+package aiconnector.manager;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.awt.*;
+
+/**
+ * 重叠簇：重叠关系图的一个连通分量(只读快照)
+ */
+@Getter
+@AllArgsConstructor
+public class OverlapCluster {
+    /**
+     * 簇中图元个数
+     */
+    private final int size;
+    /**
+     * 簇中所有图元的外包矩形
+     */
+    private final Rectangle bounds;
+}
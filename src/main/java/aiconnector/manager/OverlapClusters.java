@@ -0,0 +1,210 @@
+package aiconnector.manager;
+
+import aiconnector.connector.AIRectangle;
+import aiconnector.utils.IntObjectMap;
+import aiconnector.utils.IntSetMap;
+
+import java.awt.*;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * 重叠关系图的连通分量(重叠簇)，每个图元直接记录所在的簇：<p>
+ * 1、建立重叠关系时合并两个簇，小簇的图元改为指向大簇；<p>
+ * 2、删除图元、移动图元后，对受影响的簇按当前重叠关系重新做一次广度遍历(rebuild-on-delete)。<p>
+ * 只记录两个以上图元的簇，没有重叠的图元自成一簇、不占用空间。每个簇缓存其外包矩形，查询为O(1)。<p>
+ * 簇的大小和外包矩形只提供给调用者和运行指标(陷阱判定中只用簇的大小预分配遍历队列)：
+ * 陷阱的状态迁移依赖遍历顺序，不能用外包矩形提前判定、跳过遍历。
+ */
+class OverlapClusters {
+    private final IntObjectMap<AIRectangle> mapTableId2Rect;
+    private final IntSetMap mapTableId2Overlaps;
+    /**
+     * 图元 -> 所在的簇，只有两个以上图元的簇
+     */
+    private final IntObjectMap<Component> clusterOf = new IntObjectMap<>();
+    /**
+     * 两个以上图元的簇
+     */
+    private final HashSet<Component> components = new HashSet<>();
+
+    OverlapClusters(IntObjectMap<AIRectangle> mapTableId2Rect, IntSetMap mapTableId2Overlaps) {
+        this.mapTableId2Rect = mapTableId2Rect;
+        this.mapTableId2Overlaps = mapTableId2Overlaps;
+    }
+
+    /**
+     * 建立重叠关系后合并所在的簇
+     */
+    synchronized void union(int table_id, int other_id) {
+        Component component = find(table_id), other = find(other_id);
+        if (component == null || other == null || component == other) {
+            return;
+        }
+        if (component.size < other.size) {
+            Component tmp = component; component = other; other = tmp;
+        }
+        if (components.add(component)) {
+            attach(component);
+        }
+        components.remove(other);
+        for (int i = 0; i < other.size; i++) {
+            clusterOf.put(other.members[i], component);
+        }
+        component.merge(other);
+    }
+
+    /**
+     * 删除图元，图元所在簇的其余图元重新分簇。调用前需要已经解除该图元的重叠关系。
+     */
+    synchronized void remove(int table_id) {
+        Component component = detach(table_id);
+        if (component != null) {
+            rebuild(component, table_id);
+        }
+    }
+
+    /**
+     * 图元所在簇按当前的重叠关系、坐标重新分簇(图元移动后使用)
+     */
+    synchronized void rebuild(int table_id) {
+        Component component = detach(table_id);
+        if (component != null) {
+            rebuild(component, null);
+        }
+    }
+
+    /**
+     * @return 图元所在簇的快照，图元不存在返回null
+     */
+    synchronized OverlapCluster get(int table_id) {
+        Component component = find(table_id);
+        return component == null ? null : component.snapshot();
+    }
+
+    /**
+     * @return 最大的簇，没有图元返回null
+     */
+    synchronized OverlapCluster largest() {
+        Component largest = null;
+        for (Component component : components) {
+            if (largest == null || component.size > largest.size) {
+                largest = component;
+            }
+        }
+        if (largest == null) {
+            // 都是单独的图元
+            int[] table_ids = mapTableId2Rect.keys();
+            largest = table_ids.length == 0 ? null : find(table_ids[0]);
+        }
+        return largest == null ? null : largest.snapshot();
+    }
+
+    /**
+     * @return 图元所在的簇，单独的图元返回新建的只有该图元的簇(不记录)，图元不存在返回null
+     */
+    private Component find(int table_id) {
+        Component component = clusterOf.get(table_id);
+        if (component != null) {
+            return component;
+        }
+        AIRectangle rect = mapTableId2Rect.get(table_id);
+        if (rect == null) {
+            return null;
+        }
+        component = new Component();
+        component.add(rect);
+        return component;
+    }
+
+    private void attach(Component component) {
+        for (int i = 0; i < component.size; i++) {
+            clusterOf.put(component.members[i], component);
+        }
+    }
+
+    /**
+     * 移除图元所在的簇
+     * @return 簇，图元不存在返回null
+     */
+    private Component detach(int table_id) {
+        Component component = find(table_id);
+        if (component != null && components.remove(component)) {
+            for (int i = 0; i < component.size; i++) {
+                clusterOf.remove(component.members[i]);
+            }
+        }
+        return component;
+    }
+
+    /**
+     * 从原来簇的图元出发广度遍历重叠关系，重新建立簇。遍历到其他簇的图元时，该簇整体并入。
+     * @param excluded 不参与的图元(已删除)
+     */
+    private void rebuild(Component seeds, Integer excluded) {
+        HashSet<Integer> visited = new HashSet<>();
+        if (excluded != null) {
+            visited.add(excluded);
+        }
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int i = 0; i < seeds.size; i++) {
+            int seed = seeds.members[i];
+            if (!mapTableId2Rect.containsKey(seed) || !visited.add(seed)) {
+                continue;
+            }
+            Component component = new Component();
+            component.add(mapTableId2Rect.get(seed));
+            queue.add(seed);
+            while (!queue.isEmpty()) {
+                for (int id : mapTableId2Overlaps.get(queue.poll())) {
+                    if (!mapTableId2Rect.containsKey(id) || !visited.add(id)) continue;
+                    // 连通的其他簇整体并入，其图元都会被遍历到
+                    Component other = clusterOf.get(id);
+                    if (other != null) {
+                        components.remove(other);
+                    }
+                    component.add(mapTableId2Rect.get(id));
+                    queue.add(id);
+                }
+            }
+            if (component.size > 1) {
+                components.add(component);
+                attach(component);
+            }
+        }
+    }
+
+    private static final class Component {
+        int[] members = new int[2];
+        int size;
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+
+        void add(AIRectangle rect) {
+            if (size == members.length) {
+                members = Arrays.copyOf(members, size * 2);
+            }
+            members[size++] = rect.get_table_id();
+            minX = Math.min(minX, rect.x);
+            minY = Math.min(minY, rect.y);
+            maxX = Math.max(maxX, rect.right());
+            maxY = Math.max(maxY, rect.bottom());
+        }
+
+        void merge(Component other) {
+            if (size + other.size > members.length) {
+                members = Arrays.copyOf(members, Math.max(size + other.size, members.length * 2));
+            }
+            System.arraycopy(other.members, 0, members, size, other.size);
+            size += other.size;
+            minX = Math.min(minX, other.minX);
+            minY = Math.min(minY, other.minY);
+            maxX = Math.max(maxX, other.maxX);
+            maxY = Math.max(maxY, other.maxY);
+        }
+
+        OverlapCluster snapshot() {
+            return new OverlapCluster(size, new Rectangle(minX, minY, maxX - minX, maxY - minY));
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package aiconnector.manager;
+
+import aiconnector.connector.AIConnector;
+import aiconnector.connector.Polyline;
+import aiconnector.setting.AIConstants;
+import lombok.Getter;
+
+import java.awt.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 连线路径的缓存，每个画布一个。<p>
+ * 画布按ROUTE_CACHE_CELL划分网格，每个格子记录最后一次图元变化的版本号；缓存项记录搜索开始时的版本号，
+ * 以及路径所在区域(路径、源、目标图元的包围盒外扩BARRIER_SPACE)。区域内任一格子的版本号更新后缓存项失效。<p>
+ * 区域外的图元变化不会使路径不合法，但有可能改变重新搜索的结果，这里不考虑。<p>
+ * 容量有限，按LRU淘汰。
+ */
+class RouteCache {
+    /**
+     * 图元变化的版本号
+     */
+    private final AtomicLong _epoch = new AtomicLong();
+    /**
+     * 格子 -> 最后一次图元变化的版本号，没有变化过的格子不记录
+     */
+    private final ConcurrentHashMap<Long, Long> _cells = new ConcurrentHashMap<>();
+    /**
+     * 连线id -> 缓存项，按访问顺序排列
+     */
+    private final LinkedHashMap<Integer, Entry> _entries;
+    @Getter
+    private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong();
+
+    RouteCache(int capacity) {
+        _entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @return 搜索开始时调用，作为put的版本号
+     */
+    long stamp() {
+        return _epoch.get();
+    }
+
+    /**
+     * 查找连线的缓存路径。两端图元的位置、连线当前的路径都与缓存时相同，并且区域内没有图元变化，才算命中。
+     * @return 路径，未命中返回null
+     */
+    Polyline get(AIConnector connector) {
+        if (fresh(connector)) {
+            hits.incrementAndGet();
+            return connector.get_polyline();
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * 与get的命中条件相同，不计入命中率
+     */
+    boolean fresh(AIConnector connector) {
+        Entry entry;
+        synchronized (_entries) {
+            entry = _entries.get(connector.get_connector_id());
+        }
+        return entry != null
+                && entry.src.equals(connector.get_srcRect().getBounds())
+                && entry.dst.equals(connector.get_dstRect().getBounds())
+                && entry.route.equals(connector.get_polyline())
+                && valid(entry);
+    }
+
+    /**
+     * 缓存搜索结果
+     * @param stamp 搜索开始前调用stamp()的返回值，搜索期间的图元变化会使该缓存项失效
+     */
+    void put(AIConnector connector, Polyline route, long stamp) {
+        Rectangle src = connector.get_srcRect().getBounds(), dst = connector.get_dstRect().getBounds();
+        Rectangle region = src.union(dst);
+        for (int i = 0; i < route.size(); i++) {
+            region.add(route.x(i), route.y(i));
+        }
+        region.grow(AIConstants.BARRIER_SPACE, AIConstants.BARRIER_SPACE);
+        Entry entry = new Entry(src, dst, route, region, stamp);
+        synchronized (_entries) {
+            _entries.put(connector.get_connector_id(), entry);
+        }
+    }
+
+    void remove(int connectorId) {
+        synchronized (_entries) {
+            _entries.remove(connectorId);
+        }
+    }
+
+    void clear() {
+        synchronized (_entries) {
+            _entries.clear();
+        }
+    }
+
+    /**
+     * 图元变化，区域内的缓存项失效
+     * @param area 变化的图元(移动时旧、新位置各调用一次)
+     */
+    void invalidate(Rectangle area) {
+        long version = _epoch.incrementAndGet();
+        // 路径与图元保持BARRIER_SPACE的间距，贴着图元的路径也要失效
+        Rectangle grown = new Rectangle(area);
+        grown.grow(AIConstants.BARRIER_SPACE, AIConstants.BARRIER_SPACE);
+        for_each_cell(grown, cell -> {
+            _cells.merge(cell, version, Math::max);
+            return true;
+        });
+    }
+
+    private boolean valid(Entry entry) {
+        return for_each_cell(entry.region, cell -> _cells.getOrDefault(cell, 0L) <= entry.stamp);
+    }
+
+    /**
+     * 遍历区域覆盖的格子，visitor返回false时停止
+     * @return false：遍历被停止
+     */
+    private static boolean for_each_cell(Rectangle area, CellVisitor visitor) {
+        int size = AIConstants.ROUTE_CACHE_CELL;
+        int x0 = Math.floorDiv(area.x, size), x1 = Math.floorDiv(area.x + area.width, size);
+        int y0 = Math.floorDiv(area.y, size), y1 = Math.floorDiv(area.y + area.height, size);
+        for (int x = x0; x <= x1; x++) {
+            for (int y = y0; y <= y1; y++) {
+                if (!visitor.visit(((long) x << 32) | (y & 0xffffffffL))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private interface CellVisitor {
+        boolean visit(long cell);
+    }
+
+    private static final class Entry {
+        final Rectangle src, dst;
+        final Polyline route;
+        final Rectangle region;
+        final long stamp;
+
+        Entry(Rectangle src, Rectangle dst, Polyline route, Rectangle region, long stamp) {
+            this.src = src;
+            this.dst = dst;
+            this.route = route;
+            this.region = region;
+            this.stamp = stamp;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package aiconnector.manager;
+
+import aiconnector.utils.Tuple;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 路径搜索的执行器。两路搜索(左上、左下、右上、右下)的分叉、一个图元所有连线的搜索通过它执行，每个画布可以单独注入。
+ */
+public interface RouteExecutor {
+    /**
+     * 同时执行两个分支，等待两个分支都完成后返回结果。任一分支抛出的异常会在两个分支都结束后重新抛出。
+     * @param left 第一个分支
+     * @param right 第二个分支
+     * @return <第一个分支结果，第二个分支结果>
+     */
+    <A, B> Tuple<A, B> fork_join(Supplier<A> left, Supplier<B> right);
+
+    /**
+     * 对每一项同时执行task，等待全部完成后按items的顺序返回结果。任一项抛出的异常会在全部结束后重新抛出。
+     * @param items 待处理项，例如图元的所有连线
+     * @param task 处理
+     * @return 与items一一对应的结果
+     */
+    <T, R> List<R> invoke_all(List<T> items, Function<T, R> task);
+}
@@ -0,0 +1,401 @@
+package aiconnector.manager;
+
+import aiconnector.collide.BarrierIndexType;
+import aiconnector.connector.AIConnector;
+import aiconnector.connector.AIDirection;
+import aiconnector.connector.AIRectangle;
+import aiconnector.connector.Polyline;
+import aiconnector.setting.AIConstants;
+import aiconnector.utils.Tuple;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.awt.*;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+
+/**
+ * 一次路径搜索的现场，用于离线复现。包括：
+ * <ul>
+ *     <li>连线id、两端图元，搜索耗时，画布的障碍索引类型、路径搜索引擎，搜索得到的路径</li>
+ *     <li>搜索区域(两端图元与路径的外包矩形，外扩SNAPSHOT_MARGIN)内的图元，以及它们所在的整个重叠簇(陷阱判定遍历整个簇)</li>
+ *     <li>这些图元之间的重叠关系、图元上其他连线的锚点，以及搜索前该连线在两端图元上预分配、预留的锚点</li>
+ *     <li>经过搜索区域的其他连线的路径(重合检查用)</li>
+ * </ul>
+ * 保存为文本，每行一项，#开头的行为注释。restore在新画布上重建现场，replay重新搜索该连线。<p>
+ * 现场在搜索完成后捕获，同时进行的其他搜索改变的锚点、线段也会记录下来。障碍距离相同时选中哪个图元取决于障碍索引的内部结构，
+ * 只含局部图元的新画布偶尔会选中另一个，重放的路径与原来不同(随机画布上约千分之二)。
+ * @see SlowSearchCapture
+ */
+public final class SearchSnapshot {
+    private static final Logger logger = Logger.getLogger(SearchSnapshot.class.getName());
+
+    @Getter
+    private final int _connector_id;
+    @Getter
+    private final int _src_table_id;
+    @Getter
+    private final int _dst_table_id;
+    /**
+     * 搜索耗时
+     */
+    @Getter
+    private final long _nanos;
+    @Getter
+    private final BarrierIndexType _index_type;
+    /**
+     * 路径搜索引擎的名称
+     */
+    @Getter
+    private final String _engine;
+    /**
+     * 捕获时搜索得到的路径
+     */
+    @Getter
+    private final Polyline _route;
+    /**
+     * 搜索区域
+     */
+    private final Rectangle _region;
+    /**
+     * 图元，按table_id排列
+     */
+    private final List<AIRectangle> _rects;
+    /**
+     * 重叠关系，每条边一项<较小的table_id，较大的table_id>
+     */
+    private final List<int[]> _overlaps;
+    /**
+     * 锚点，每个一项<table_id，连线id，x，y>
+     */
+    private final List<int[]> _anchors;
+    /**
+     * 搜索前预分配、预留的锚点，每个一项<table_id，x，y，查找的边(AIDirection的序号)，预留为1>
+     */
+    private final List<int[]> _planned;
+    /**
+     * 其他连线的路径：连线id -> 路径
+     */
+    private final TreeMap<Integer, Polyline> _lines;
+
+    private SearchSnapshot(int connector_id, int src_table_id, int dst_table_id, long nanos, BarrierIndexType index_type, String engine,
+                           Polyline route, Rectangle region, List<AIRectangle> rects, List<int[]> overlaps, List<int[]> anchors,
+                           List<int[]> planned, TreeMap<Integer, Polyline> lines) {
+        _connector_id = connector_id;
+        _src_table_id = src_table_id;
+        _dst_table_id = dst_table_id;
+        _nanos = nanos;
+        _index_type = index_type;
+        _engine = engine;
+        _route = route;
+        _region = region;
+        _rects = rects;
+        _overlaps = overlaps;
+        _anchors = anchors;
+        _planned = planned;
+        _lines = lines;
+    }
+
+    /**
+     * @return 连线在两端图元上预分配、预留的锚点，在搜索之前调用
+     */
+    static List<int[]> planned_anchors(AIConnector connector) {
+        int line = connector.get_connector_id();
+        List<int[]> planned = new ArrayList<>();
+        for (AIRectangle rect : List.of(connector.get_srcRect(), connector.get_dstRect())) {
+            planned_anchor(planned, rect.get_table_id(), rect.get_planned_anchor(line), false);
+            planned_anchor(planned, rect.get_table_id(), rect.get_reserved_anchor(line), true);
+        }
+        return planned;
+    }
+
+    private static void planned_anchor(List<int[]> planned, int table_id, Tuple<Point, AIDirection> anchor, boolean reserved) {
+        if (anchor != null) {
+            planned.add(new int[]{table_id, anchor.a.x, anchor.a.y, anchor.b.ordinal(), reserved ? 1 : 0});
+        }
+    }
+
+    /**
+     * 在搜索线程上捕获现场，只读画布
+     * @param planned planned_anchors的结果
+     */
+    static SearchSnapshot capture(AIManager manager, AIConnector connector, List<int[]> planned, Polyline route, long nanos) {
+        AIRectangle src = connector.get_srcRect(), dst = connector.get_dstRect();
+        Rectangle region = src.union(dst);
+        for (int i = 0; i < route.size(); i++) {
+            region.add(route.x(i), route.y(i));
+        }
+        region.grow(AIConstants.SNAPSHOT_MARGIN, AIConstants.SNAPSHOT_MARGIN);
+
+        // 区域内的图元，沿重叠关系补全所在的簇
+        TreeSet<Integer> ids = new TreeSet<>();
+        ArrayDeque<Integer> pending = new ArrayDeque<>(List.of(src.get_table_id(), dst.get_table_id()));
+        manager.query(region, rect -> pending.add(rect.get_table_id()));
+        while (!pending.isEmpty()) {
+            int table_id = pending.poll();
+            if (ids.add(table_id)) {
+                manager.mapTableId2Overlaps.forEach(table_id, pending::add);
+            }
+        }
+
+        List<AIRectangle> rects = new ArrayList<>(ids.size());
+        List<int[]> overlaps = new ArrayList<>();
+        List<int[]> anchors = new ArrayList<>();
+        for (int table_id : ids) {
+            AIRectangle rect = manager.get_rect(table_id);
+            if (rect == null) continue;
+            rects.add(new AIRectangle(rect.getBounds(), table_id));
+            for (int overlap : manager.mapTableId2Overlaps.get(table_id)) {
+                if (table_id < overlap && ids.contains(overlap)) {
+                    overlaps.add(new int[]{table_id, overlap});
+                }
+            }
+            new TreeMap<>(rect.get_anchorLine2Point()).forEach((line, point) -> {
+                if (line != connector.get_connector_id()) {
+                    anchors.add(new int[]{table_id, line, point.x, point.y});
+                }
+            });
+        }
+
+        TreeMap<Integer, Polyline> lines = new TreeMap<>();
+        manager.segmentIndex.query(region, line -> {
+            AIConnector other = line == connector.get_connector_id() ? null : manager.get_connection(line);
+            if (other != null && !other.get_polyline().isEmpty()) {
+                lines.put(line, other.get_polyline());
+            }
+        });
+
+        return new SearchSnapshot(connector.get_connector_id(), src.get_table_id(), dst.get_table_id(), nanos, manager.indexType,
+                manager.get_routing_engine().name(), route, region, rects, overlaps, anchors, List.copyOf(planned), lines);
+    }
+
+    /**
+     * @return 搜索区域
+     */
+    public Rectangle get_region() {
+        return new Rectangle(_region);
+    }
+
+    /**
+     * @return 图元(不带锚点)，按table_id排列
+     */
+    public List<AIRectangle> get_rects() {
+        return Collections.unmodifiableList(_rects);
+    }
+
+    /**
+     * @return 重叠关系的边数
+     */
+    public int overlap_count() {
+        return _overlaps.size();
+    }
+
+    /**
+     * @return 其他连线的id
+     */
+    public Set<Integer> get_line_ids() {
+        return Collections.unmodifiableSet(_lines.keySet());
+    }
+
+    /**
+     * 在新画布上重建现场：图元、锚点、其他连线的线段，以及被搜索的连线(未搜索，带有预分配的锚点)。
+     * 新画布不注册到AILayerManager，重建的重叠关系与保存的不一致时记录日志。
+     */
+    public AIManagerItf restore() {
+        AIManager manager = new AIManager(_index_type);
+        manager.set_routing_engine(_engine);
+        for (AIRectangle rect : _rects) {
+            manager.add_rect(new AIRectangle(rect, rect.get_table_id()));
+        }
+        if (!edges(manager).equals(edges(_overlaps))) {
+            logger.warning(() -> "overlaps rebuilt for connector " + _connector_id + " differ from the snapshot, OVERLAP_SPACE may have changed");
+        }
+        for (int[] anchor : _anchors) {
+            manager.get_rect(anchor[0]).insert_or_update_anchor_point(new Point(anchor[2], anchor[3]), anchor[1]);
+        }
+        _lines.forEach((line, route) -> manager.segmentIndex.update(line, route.to_points()));
+        AIRectangle src = manager.get_rect(_src_table_id), dst = manager.get_rect(_dst_table_id);
+        manager.add_line(src, dst, _connector_id);
+        for (int[] anchor : _planned) {
+            AIRectangle rect = anchor[0] == _src_table_id ? src : dst;
+            rect.plan_anchor(new Point(anchor[1], anchor[2]), AIDirection.values()[anchor[3]], anchor[4] == 1, _connector_id);
+        }
+        return manager;
+    }
+
+    /**
+     * 在新画布上重新搜索该连线，不经过路径缓存和运行指标
+     * @return 搜索得到的路径，与get_route比较即可判断是否复现
+     */
+    public Polyline replay() {
+        return restore().get_connection(_connector_id).search_polyline();
+    }
+
+    private static Set<List<Integer>> edges(AIManager manager) {
+        Set<List<Integer>> edges = new HashSet<>();
+        for (int table_id : manager.get_table_ids()) {
+            manager.mapTableId2Overlaps.forEach(table_id, overlap -> {
+                if (table_id < overlap) edges.add(List.of(table_id, overlap));
+            });
+        }
+        return edges;
+    }
+
+    private static Set<List<Integer>> edges(List<int[]> overlaps) {
+        Set<List<Integer>> edges = new HashSet<>();
+        for (int[] overlap : overlaps) {
+            edges.add(List.of(overlap[0], overlap[1]));
+        }
+        return edges;
+    }
+
+    public void write(Writer writer) throws IOException {
+        writer.write("# connector src dst / search nanos index engine / region x y w h / route x y ...\n");
+        writer.write("# rect id x y w h / overlap id id / anchor table_id line_id x y / planned|reserved table_id x y side / line id x y ...\n");
+        line(writer, "connector", _connector_id, _src_table_id, _dst_table_id);
+        writer.write("search " + _nanos + ' ' + _index_type.name() + ' ' + _engine + '\n');
+        line(writer, "region", _region.x, _region.y, _region.width, _region.height);
+        writer.write("route" + coords(_route) + '\n');
+        for (AIRectangle rect : _rects) {
+            line(writer, "rect", rect.get_table_id(), rect.x, rect.y, rect.width, rect.height);
+        }
+        for (int[] overlap : _overlaps) {
+            line(writer, "overlap", overlap);
+        }
+        for (int[] anchor : _anchors) {
+            line(writer, "anchor", anchor);
+        }
+        for (int[] anchor : _planned) {
+            writer.write((anchor[4] == 1 ? "reserved " : "planned ") + anchor[0] + ' ' + anchor[1] + ' ' + anchor[2] + ' '
+                    + AIDirection.values()[anchor[3]].name() + '\n');
+        }
+        for (var entry : _lines.entrySet()) {
+            writer.write("line " + entry.getKey() + coords(entry.getValue()) + '\n');
+        }
+        writer.flush();
+    }
+
+    private static void line(Writer writer, String kind, int... values) throws IOException {
+        StringBuilder builder = new StringBuilder(kind);
+        for (int value : values) {
+            builder.append(' ').append(value);
+        }
+        writer.write(builder.append('\n').toString());
+    }
+
+    private static String coords(Polyline route) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < route.size(); i++) {
+            builder.append(' ').append(route.x(i)).append(' ').append(route.y(i));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @throws IllegalArgumentException 格式错误
+     */
+    public static SearchSnapshot read(Reader reader) throws IOException {
+        int[] connector = null;
+        long nanos = 0;
+        BarrierIndexType indexType = null;
+        String engine = null;
+        Polyline route = Polyline.EMPTY;
+        Rectangle region = new Rectangle();
+        List<AIRectangle> rects = new ArrayList<>();
+        List<int[]> overlaps = new ArrayList<>();
+        List<int[]> anchors = new ArrayList<>();
+        List<int[]> planned = new ArrayList<>();
+        TreeMap<Integer, Polyline> lines = new TreeMap<>();
+
+        BufferedReader input = new BufferedReader(reader);
+        for (String line = input.readLine(); line != null; line = input.readLine()) {
+            if (line.isBlank() || line.startsWith("#")) continue;
+            String[] tokens = line.trim().split("\\s+");
+            try {
+                switch (tokens[0].toLowerCase(Locale.ROOT)) {
+                    case "connector" -> connector = values(tokens, 1, 3, line);
+                    case "search" -> {
+                        if (tokens.length != 4) throw new IllegalArgumentException("malformed snapshot line: " + line);
+                        nanos = Long.parseLong(tokens[1]);
+                        indexType = BarrierIndexType.valueOf(tokens[2]);
+                        engine = tokens[3];
+                    }
+                    case "region" -> {
+                        int[] values = values(tokens, 1, 4, line);
+                        region = new Rectangle(values[0], values[1], values[2], values[3]);
+                    }
+                    case "route" -> route = polyline(tokens, 1, line);
+                    case "rect" -> {
+                        int[] values = values(tokens, 1, 5, line);
+                        rects.add(new AIRectangle(values[1], values[2], values[3], values[4], values[0]));
+                    }
+                    case "overlap" -> overlaps.add(values(tokens, 1, 2, line));
+                    case "anchor" -> anchors.add(values(tokens, 1, 4, line));
+                    case "planned", "reserved" -> {
+                        if (tokens.length != 5) throw new IllegalArgumentException("malformed snapshot line: " + line);
+                        planned.add(new int[]{Integer.parseInt(tokens[1]), Integer.parseInt(tokens[2]), Integer.parseInt(tokens[3]),
+                                AIDirection.valueOf(tokens[4]).ordinal(), tokens[0].equalsIgnoreCase("reserved") ? 1 : 0});
+                    }
+                    case "line" -> lines.put(Integer.parseInt(tokens[1]), polyline(tokens, 2, line));
+                    default -> throw new IllegalArgumentException("malformed snapshot line: " + line);
+                }
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("malformed snapshot line: " + line, e);
+            }
+        }
+        if (connector == null || indexType == null) {
+            throw new IllegalArgumentException("snapshot without connector or search line");
+        }
+        return new SearchSnapshot(connector[0], connector[1], connector[2], nanos, indexType, engine, route, region,
+                rects, overlaps, anchors, planned, lines);
+    }
+
+    private static int[] values(String[] tokens, int from, int count, String line) {
+        if (tokens.length != from + count) {
+            throw new IllegalArgumentException("malformed snapshot line: " + line);
+        }
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = Integer.parseInt(tokens[from + i]);
+        }
+        return values;
+    }
+
+    private static Polyline polyline(String[] tokens, int from, String line) {
+        if ((tokens.length - from) % 2 != 0) {
+            throw new IllegalArgumentException("malformed snapshot line: " + line);
+        }
+        List<Point> points = new ArrayList<>();
+        for (int i = from; i < tokens.length; i += 2) {
+            points.add(new Point(Integer.parseInt(tokens[i]), Integer.parseInt(tokens[i + 1])));
+        }
+        return Polyline.of(points);
+    }
+
+    public void save(@NonNull Path path) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            write(writer);
+        }
+    }
+
+    public static SearchSnapshot load(@NonNull Path path) throws IOException {
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return read(reader);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package aiconnector.manager;
+
+import aiconnector.connector.AIConnector;
+import aiconnector.connector.Polyline;
+import aiconnector.setting.AIConstants;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * 慢搜索捕获：搜索耗时达到阈值或者路径超过MAX_STEP时，把现场保存为SearchSnapshot，
+ * 写入目录下的一组环形文件(slow-search-*.snapshot)，超过capacity个时删除最早的。<p>
+ * 同一时刻只写一个快照，其他搜索在写快照期间跳过捕获，大量的慢搜索不会拖慢整个画布。写文件失败只记录日志。
+ * @see AIManagerItf#set_slow_search_capture
+ */
+public final class SlowSearchCapture {
+    private static final Logger logger = Logger.getLogger(SlowSearchCapture.class.getName());
+    private static final String PREFIX = "slow-search-";
+    private static final String SUFFIX = ".snapshot";
+
+    @Getter
+    private final Path _directory;
+    /**
+     * 最多保留的快照文件数
+     */
+    @Getter
+    private final int _capacity;
+    private final long _thresholdNanos;
+    private final ReentrantLock _writing = new ReentrantLock();
+    private final AtomicLong _sequence = new AtomicLong();
+    /**
+     * 已写入的快照数
+     */
+    private final AtomicLong _captured = new AtomicLong();
+
+    /**
+     * @param directory 快照目录，不存在时自动创建
+     * @param capacity 最多保留的快照文件数
+     * @param threshold 搜索耗时的阈值
+     */
+    public SlowSearchCapture(@NonNull Path directory, int capacity, @NonNull Duration threshold) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        _directory = directory;
+        _capacity = capacity;
+        _thresholdNanos = threshold.toNanos();
+    }
+
+    public Duration get_threshold() {
+        return Duration.ofNanos(_thresholdNanos);
+    }
+
+    public long captured() {
+        return _captured.get();
+    }
+
+    boolean should_capture(long nanos, Polyline route) {
+        return nanos >= _thresholdNanos || route.size() > AIConstants.MAX_STEP;
+    }
+
+    /**
+     * 在搜索线程上捕获并写入快照
+     * @param planned 搜索前连线在两端图元上预分配、预留的锚点
+     */
+    void capture(AIManager manager, AIConnector connector, List<int[]> planned, Polyline route, long nanos) {
+        if (!_writing.tryLock()) {
+            return;
+        }
+        try {
+            write(SearchSnapshot.capture(manager, connector, planned, route, nanos));
+        } catch (IOException | RuntimeException e) {
+            logger.warning(() -> "failed to capture search of connector " + connector.get_connector_id() + ": " + e);
+        } finally {
+            _writing.unlock();
+        }
+    }
+
+    /**
+     * 写入一个快照，删除超出capacity的最早的快照
+     * @return 快照文件
+     */
+    Path write(SearchSnapshot snapshot) throws IOException {
+        Files.createDirectories(_directory);
+        // 毫秒时间戳定长，文件名的顺序就是写入的顺序
+        Path file = _directory.resolve(String.format("%s%013d-%06d-%d%s", PREFIX, System.currentTimeMillis(),
+                _sequence.getAndIncrement() % 1_000_000, snapshot.get_connector_id(), SUFFIX));
+        snapshot.save(file);
+        _captured.incrementAndGet();
+
+        List<Path> files = files();
+        for (Path old : files.subList(0, Math.max(0, files.size() - _capacity))) {
+            Files.deleteIfExists(old);
+        }
+        return file;
+    }
+
+    /**
+     * @return 目录下的快照文件，从早到晚排列
+     */
+    public List<Path> files() throws IOException {
+        if (!Files.isDirectory(_directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(_directory)) {
+            return files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            }).sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package aiconnector.manager;
+
+import aiconnector.utils.Tuple;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 每个分支一个线程的执行器，用于Java 21的虚拟线程。<p>
+ * 第一个分支提交为新线程，第二个分支在当前线程执行，然后阻塞等待：虚拟线程阻塞时只挂起自身、不占用载体线程，
+ * 因此每条连线、每个分叉都可以有自己的线程，不会耗尽公共线程池。<p>
+ * 项目按Java 17编译，虚拟线程通过反射获取；运行在Java 21以下时{@link #supported()}返回false。
+ */
+public class VirtualThreadRouteExecutor implements RouteExecutor {
+    /**
+     * 静态内部类,包含一个静态属性：所有画布共享的执行器，虚拟线程不可用时为null
+     */
+    private static class SharedInstance {
+        private static final VirtualThreadRouteExecutor INSTANCE = create();
+
+        private static VirtualThreadRouteExecutor create() {
+            try {
+                ExecutorService service = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                return new VirtualThreadRouteExecutor(service);
+            } catch (ReflectiveOperationException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * @return true：当前JVM支持虚拟线程
+     */
+    public static boolean supported() {
+        return SharedInstance.INSTANCE != null;
+    }
+
+    /**
+     * @return 所有画布共享的虚拟线程执行器
+     * @throws UnsupportedOperationException 当前JVM不支持虚拟线程
+     */
+    public static VirtualThreadRouteExecutor shared() {
+        if (SharedInstance.INSTANCE == null) {
+            throw new UnsupportedOperationException("virtual threads require Java 21+, running on " + Runtime.version());
+        }
+        return SharedInstance.INSTANCE;
+    }
+
+    /**
+     * 每个任务一个线程的ExecutorService。不能是固定大小的线程池：分支会阻塞等待子分支，固定大小的池可能死锁。
+     */
+    @Getter
+    private final ExecutorService service;
+
+    public VirtualThreadRouteExecutor(@NonNull ExecutorService service) {
+        this.service = service;
+    }
+
+    @Override
+    public <A, B> Tuple<A, B> fork_join(Supplier<A> left, Supplier<B> right) {
+        Future<A> leftFuture = service.submit(left::get);
+        B b;
+        try {
+            b = right.get();
+        } catch (RuntimeException | Error e) {
+            await(leftFuture, true);
+            throw e;
+        }
+        return Tuple.of(await(leftFuture, false), b);
+    }
+
+    @Override
+    public <T, R> List<R> invoke_all(List<T> items, Function<T, R> task) {
+        List<Future<R>> futures = new ArrayList<>(items.size());
+        for (T item : items) {
+            futures.add(service.submit(() -> task.apply(item)));
+        }
+        List<R> results = new ArrayList<>(futures.size());
+        RuntimeException failure = null;
+        for (Future<R> future : futures) {
+            try {
+                results.add(await(future, false));
+            } catch (RuntimeException e) {
+                // 等其余的连线都结束后再抛出
+                if (failure == null) failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+    /**
+     * 等待分支完成，分支抛出的RuntimeException/Error原样抛出
+     * @param quietly true：只等待完成，忽略分支的结果和异常
+     */
+    private static <T> T await(Future<T> future, boolean quietly) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    // 分支仍在执行，等它结束，中断状态留给调用方处理
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (quietly) return null;
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                    if (cause instanceof Error) throw (Error) cause;
+                    throw new IllegalStateException(cause);
+                } catch (CancellationException e) {
+                    if (quietly) return null;
+                    throw e;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
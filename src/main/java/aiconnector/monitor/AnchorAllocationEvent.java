@@ -0,0 +1,34 @@
+package aiconnector.monitor;
+
+import jdk.jfr.*;
+
+/**
+ * 在图元的边上查找空闲锚点。<p>
+ * probes是找到空闲槽位前经过的槽位数，图元上连线很多时变大；直接使用预分配的槽位时planned为true、probes为0。默认关闭。
+ */
+@Name("aiconnector.AnchorAllocation")
+@Label("Anchor Allocation")
+@Category({"AIConnector", "Routing"})
+@Description("A search for a free anchor slot on the sides of a table")
+@StackTrace(false)
+@Enabled(false)
+public final class AnchorAllocationEvent extends Event {
+    @Label("Table Id")
+    public int tableId;
+    @Label("Connector Id")
+    public int connectorId;
+    @Label("Side")
+    public String side;
+    @Label("Probes")
+    @Description("Slots passed before a free one was found")
+    public int probes;
+    @Label("Sides")
+    @Description("Sides searched, including the starting one")
+    public int sides;
+    @Label("Found")
+    @Description("False when every side is full")
+    public boolean found;
+    @Label("Planned")
+    @Description("The slot was assigned by AnchorPlanner before the search")
+    public boolean planned;
+}
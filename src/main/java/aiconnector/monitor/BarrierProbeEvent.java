@@ -0,0 +1,31 @@
+package aiconnector.monitor;
+
+import jdk.jfr.*;
+
+/**
+ * 一次障碍探测：从origin沿direction方向找最先遇到的图元。<p>
+ * 每次搜索有几十次探测，默认关闭。candidates是满足几何条件、交给过滤条件判断的图元数，与障碍索引的实现有关。
+ */
+@Name("aiconnector.BarrierProbe")
+@Label("Barrier Probe")
+@Category({"AIConnector", "Routing"})
+@Description("A nearest-barrier query along one direction")
+@StackTrace(false)
+@Enabled(false)
+public final class BarrierProbeEvent extends Event {
+    @Label("Direction")
+    public String direction;
+    @Label("Origin X")
+    public int originX;
+    @Label("Origin Y")
+    public int originY;
+    @Label("Bound")
+    public int bound;
+    @Label("Candidates")
+    @Description("Tables passed to the filter")
+    public int candidates;
+    @Label("Hit")
+    public boolean hit;
+    @Label("Barrier Table Id")
+    public int barrierTableId;
+}
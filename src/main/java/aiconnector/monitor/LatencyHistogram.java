@@ -0,0 +1,98 @@
+package aiconnector.monitor;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 耗时的直方图，桶的划分与HdrHistogram相同：按2的幂分组，每组再线性分为32个桶，相对误差不超过1/32。<p>
+ * record无锁，可以在搜索线程上并发调用；读取时按当前计数统计，不与record互斥。
+ */
+public final class LatencyHistogram {
+    /**
+     * 每组的线性桶数为2^SUB_BITS
+     */
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    /**
+     * 小于2^(SUB_BITS+1)的值每个值一个桶
+     */
+    private static final int DIRECT = SUB_COUNT * 2;
+    private static final int BUCKETS = DIRECT + (63 - SUB_BITS - 1) * SUB_COUNT;
+
+    private final AtomicLongArray _counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong _count = new AtomicLong();
+    private final AtomicLong _max = new AtomicLong();
+
+    /**
+     * @param nanos 耗时，负数按0记录
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        _counts.incrementAndGet(index(value));
+        _count.incrementAndGet();
+        _max.accumulateAndGet(value, Math::max);
+    }
+
+    public long count() {
+        return _count.get();
+    }
+
+    public long max() {
+        return _max.get();
+    }
+
+    /**
+     * @param percentile 0~100
+     * @return 不超过该百分比的最大耗时所在桶的中值，没有记录返回0
+     */
+    public long percentile(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = _counts.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * Math.min(100, percentile) / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(middle(i), max());
+            }
+        }
+        return max();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            _counts.set(i, 0);
+        }
+        _count.set(0);
+        _max.set(0);
+    }
+
+    static int index(long value) {
+        if (value < DIRECT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) - SUB_COUNT;
+        return DIRECT + (exponent - SUB_BITS - 1) * SUB_COUNT + sub;
+    }
+
+    /**
+     * @return 桶的中值
+     */
+    static long middle(int index) {
+        if (index < DIRECT) {
+            return index;
+        }
+        int exponent = (index - DIRECT) / SUB_COUNT + SUB_BITS + 1;
+        long sub = (index - DIRECT) % SUB_COUNT;
+        long width = 1L << (exponent - SUB_BITS);
+        return ((SUB_COUNT + sub) << (exponent - SUB_BITS)) + width / 2;
+    }
+}
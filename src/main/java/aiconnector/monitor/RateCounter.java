@@ -0,0 +1,51 @@
+package aiconnector.monitor;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 每秒次数：按秒计数，取最近WINDOW个完整秒的平均值。<p>
+ * 跨秒时复用的计数槽先清零，清零与同时的计数之间可能丢失个别计数，用于监控足够。
+ */
+public final class RateCounter {
+    private static final int WINDOW = 10;
+    private static final long SECOND = 1_000_000_000L;
+
+    /**
+     * 当前秒和之前WINDOW秒各一个槽
+     */
+    private final AtomicLongArray _counts = new AtomicLongArray(WINDOW + 1);
+    private final AtomicLongArray _seconds = new AtomicLongArray(WINDOW + 1);
+
+    public void mark() {
+        long second = Math.floorDiv(System.nanoTime(), SECOND);
+        int slot = Math.floorMod(second, WINDOW + 1);
+        long stamp = _seconds.get(slot);
+        if (stamp != second && _seconds.compareAndSet(slot, stamp, second)) {
+            _counts.set(slot, 0);
+        }
+        _counts.incrementAndGet(slot);
+    }
+
+    /**
+     * @return 最近WINDOW秒(不含当前秒)的平均每秒次数
+     */
+    public double rate() {
+        long now = Math.floorDiv(System.nanoTime(), SECOND);
+        long total = 0;
+        for (long second = now - WINDOW; second < now; second++) {
+            int slot = Math.floorMod(second, WINDOW + 1);
+            if (_seconds.get(slot) == second) {
+                total += _counts.get(slot);
+            }
+        }
+        return (double) total / WINDOW;
+    }
+
+    public void reset() {
+        for (int i = 0; i <= WINDOW; i++) {
+            // 不会与任何一秒相同，下一次mark时重新占用
+            _seconds.set(i, Long.MIN_VALUE);
+            _counts.set(i, 0);
+        }
+    }
+}
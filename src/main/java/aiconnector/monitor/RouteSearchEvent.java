@@ -0,0 +1,34 @@
+package aiconnector.monitor;
+
+import jdk.jfr.*;
+
+/**
+ * 一次启发式路径搜索，从确定初始方向到占用两端锚点。<p>
+ * 默认开启，可用threshold只记录慢的搜索；truncated为true的搜索超过了MAX_STEP，路径不完整。
+ */
+@Name("aiconnector.RouteSearch")
+@Label("Route Search")
+@Category({"AIConnector", "Routing"})
+@Description("A heuristic route search of one connector")
+@StackTrace(false)
+public final class RouteSearchEvent extends Event {
+    @Label("Connector Id")
+    public int connectorId;
+    @Label("Source Table Id")
+    public int srcTableId;
+    @Label("Target Table Id")
+    public int dstTableId;
+    @Label("Direction")
+    @Description("Initial direction from the source to the target table")
+    public String direction;
+    @Label("Points")
+    @Description("Points on the route, compared against MAX_STEP")
+    public int points;
+    @Label("Route Length")
+    public long routeLength;
+    @Label("Bends")
+    public int bends;
+    @Label("Truncated")
+    @Description("Some branch exceeded MAX_STEP")
+    public boolean truncated;
+}
@@ -0,0 +1,24 @@
+package aiconnector.monitor;
+
+import jdk.jfr.*;
+
+/**
+ * 陷阱判定时对障碍所在重叠簇的一次遍历。<p>
+ * 大的重叠簇每次遇到都要整个遍历，是搜索变慢的常见原因。默认关闭。
+ */
+@Name("aiconnector.TrapTraversal")
+@Label("Trap Traversal")
+@Category({"AIConnector", "Routing"})
+@Description("A breadth-first traversal of the overlap cluster around a barrier")
+@StackTrace(false)
+@Enabled(false)
+public final class TrapTraversalEvent extends Event {
+    @Label("Barrier Table Id")
+    public int barrierTableId;
+    @Label("Direction")
+    public String direction;
+    @Label("Cluster Size")
+    public int clusterSize;
+    @Label("Visited")
+    public int visited;
+}
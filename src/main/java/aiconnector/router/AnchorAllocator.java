@@ -0,0 +1,29 @@
+package aiconnector.router;
+
+import aiconnector.connector.AIDirection;
+import aiconnector.connector.AIRectangle;
+import aiconnector.utils.Tuple;
+
+import java.awt.*;
+
+/**
+ * 为一条连线分配图元上的锚点。
+ */
+public interface AnchorAllocator {
+    /**
+     * @return 分配锚点的连线
+     */
+    int connector_id();
+
+    /**
+     * 从startPoint出发沿边查找没有被其他连线占用的锚点
+     * @see AIRectangle#get_free_anchor
+     * @return <锚点，锚点所在的边>
+     */
+    Tuple<Point, AIDirection> free_anchor(AIRectangle rect, Point startPoint, AIDirection direction, boolean bInvertPeek);
+
+    /**
+     * 占用锚点，路径搜索完成后调用
+     */
+    void attach(AIRectangle rect, Point anchor);
+}
@@ -0,0 +1,42 @@
+package aiconnector.router;
+
+import aiconnector.connector.AIDirection;
+import aiconnector.connector.AIRectangle;
+import aiconnector.manager.OverlapCluster;
+
+import java.awt.*;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * 路径搜索引擎看到的障碍：画布上的图元、图元之间的重叠关系，以及需要避开的已有连线。
+ */
+public interface ObstacleView {
+    /**
+     * 障碍探测：从origin出发沿direction方向最先遇到的图元
+     * @see aiconnector.collide.BarrierIndex#nearest
+     */
+    AIRectangle find_barrier(AIDirection direction, Point origin, int bound, Predicate<AIRectangle> filter);
+
+    /**
+     * 区域查询：与area相交的所有图元
+     * @see aiconnector.collide.BarrierIndex#query
+     */
+    void query(Rectangle area, Consumer<AIRectangle> consumer);
+
+    /**
+     * @return 与图元重叠的图元，按建立关系的先后排列；没有重叠返回空列表
+     */
+    List<AIRectangle> get_overlaps(int table_id);
+
+    /**
+     * @return 图元所在的重叠簇，图元不存在返回null
+     */
+    OverlapCluster get_overlap_cluster(int table_id);
+
+    /**
+     * @return true：线段与其他连线的平行线段重合(间距过近)
+     */
+    boolean check_conincdence(Point from, Point to);
+}
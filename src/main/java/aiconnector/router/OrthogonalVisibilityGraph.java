@@ -0,0 +1,856 @@
+package aiconnector.router;
+
+import aiconnector.connector.AIDirection;
+import aiconnector.connector.AIRectangle;
+import aiconnector.setting.AIConstants;
+import aiconnector.utils.Tuple;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static aiconnector.connector.AIDirection.*;
+import static aiconnector.setting.AIConstants.BARRIER_SPACE;
+import static aiconnector.setting.AIConstants.BEND_PENALTY;
+
+/**
+ * 正交可见图(orthogonal visibility graph)路径搜索。<p>
+ * 障碍区：图元四边外扩BARRIER_SPACE后的内部，路径不能穿过，可以沿其边界行走。<p>
+ * 1、关注线：障碍区四条边所在的横线、竖线，用计数的TreeMap维护，图元增删改时增量更新；<p>
+ * 2、每条关注线被障碍区切分为若干自由段，包含障碍区边的自由段为关注段。图的顶点为横竖关注段的交点，
+ * 边为同一关注段上相邻的顶点，搜索时按需生成。关注线的切分结果按坐标缓存，图元变化时只丢弃其范围内的缓存；
+ * 每条关注线上的顶点(在这条线上是关注段的另一方向关注线)按图元版本缓存，扩展时二分直接跳到下一个顶点；<p>
+ * 3、在源、目标图元四条边上各取一个空闲锚点，多起点、多终点A*搜索，代价为 路径长度 + 折点数 * BEND_PENALTY。
+ * 搜索状态的代价存放在按状态散列的基本类型数组中，开放表为按槽位的二叉堆。<p>
+ * 只要存在不穿过障碍区的路径就一定能找到，不受MAX_STEP限制。
+ */
+public class OrthogonalVisibilityGraph {
+    /**
+     * 单次搜索最多扩展的状态数，超过认为不可达
+     */
+    private static final int MAX_EXPANSIONS = 1 << 20;
+    private static final int[] DX = {-1, 0, 1, 0};
+    private static final int[] DY = {0, -1, 0, 1};
+    /**
+     * 方向的下标，见index(AIDirection)
+     */
+    private static final int LEFT_INDEX = 0, UP_INDEX = 1, RIGHT_INDEX = 2, DOWN_INDEX = 3;
+    /**
+     * 切分关注线时区域查询的范围(覆盖整个画布)
+     */
+    private static final int FAR = 1 << 29;
+
+    private final ReadWriteLock _readWriteLock = new ReentrantReadWriteLock();
+    /**
+     * table_id -> 加入时的障碍区 {左, 上, 右, 下}
+     */
+    private final HashMap<Integer, int[]> _zones = new HashMap<>();
+    /**
+     * 竖向关注线的x坐标 -> 引用计数
+     */
+    private final TreeMap<Integer, Integer> _xs = new TreeMap<>();
+    /**
+     * 横向关注线的y坐标 -> 引用计数
+     */
+    private final TreeMap<Integer, Integer> _ys = new TreeMap<>();
+    /**
+     * 当前版本的关注线及顶点，图元变化后在下一次搜索时重建
+     */
+    private volatile Version _current;
+    /**
+     * 竖线x -> 切分结果
+     */
+    private final ConcurrentSkipListMap<Integer, Line> _verticals = new ConcurrentSkipListMap<>();
+    /**
+     * 横线y -> 切分结果
+     */
+    private final ConcurrentSkipListMap<Integer, Line> _horizontals = new ConcurrentSkipListMap<>();
+    /**
+     * 图元变化次数，切分期间发生变化的结果不缓存
+     */
+    private long _version;
+
+    /**
+     * 加入图元。如果相同table_id的图元已经存在，则先移除旧的(图元移动后调用)。
+     */
+    public void insert(AIRectangle rectangle) {
+        int[] zone = {rectangle.x - BARRIER_SPACE, rectangle.y - BARRIER_SPACE, rectangle.right() + BARRIER_SPACE, rectangle.bottom() + BARRIER_SPACE};
+        _readWriteLock.writeLock().lock();
+        try {
+            int[] old = _zones.put(rectangle.get_table_id(), zone);
+            if (old != null) {
+                update(old, -1);
+            }
+            update(zone, 1);
+        } finally {
+            _readWriteLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 移除图元(按table_id查找)
+     */
+    public void remove(AIRectangle rectangle) {
+        _readWriteLock.writeLock().lock();
+        try {
+            int[] old = _zones.remove(rectangle.get_table_id());
+            if (old != null) {
+                update(old, -1);
+            }
+        } finally {
+            _readWriteLock.writeLock().unlock();
+        }
+    }
+
+    private void update(int[] zone, int delta) {
+        count(_xs, zone[0], delta);
+        count(_xs, zone[2], delta);
+        count(_ys, zone[1], delta);
+        count(_ys, zone[3], delta);
+        // 只有穿过障碍区或与其边重合的线受影响
+        _verticals.subMap(zone[0], true, zone[2], true).clear();
+        _horizontals.subMap(zone[1], true, zone[3], true).clear();
+        _current = null;
+        _version++;
+    }
+
+    private static void count(TreeMap<Integer, Integer> lines, int coordinate, int delta) {
+        lines.merge(coordinate, delta, (a, b) -> a + b == 0 ? null : a + b);
+    }
+
+    private Version current() {
+        Version current = _current;
+        if (current != null) {
+            return current;
+        }
+        _readWriteLock.readLock().lock();
+        try {
+            current = new Version(
+                    _xs.keySet().stream().mapToInt(Integer::intValue).toArray(),
+                    _ys.keySet().stream().mapToInt(Integer::intValue).toArray());
+            _current = current;
+            return current;
+        } finally {
+            _readWriteLock.readLock().unlock();
+        }
+    }
+
+    private Line vertical(int x, ObstacleView obstacles) {
+        Line line = _verticals.get(x);
+        return line != null ? line : split(x, true, obstacles);
+    }
+
+    private Line horizontal(int y, ObstacleView obstacles) {
+        Line line = _horizontals.get(y);
+        return line != null ? line : split(y, false, obstacles);
+    }
+
+    /**
+     * 切分一条线并缓存
+     * @param coordinate 竖线的x或横线的y
+     * @param vertical true：竖线
+     * @param obstacles 障碍
+     */
+    private Line split(int coordinate, boolean vertical, ObstacleView obstacles) {
+        long version;
+        _readWriteLock.readLock().lock();
+        try {
+            version = _version;
+        } finally {
+            _readWriteLock.readLock().unlock();
+        }
+
+        // 多查1，边恰好在这条线上的障碍区也要查出来
+        int c = coordinate - BARRIER_SPACE - 1, width = 2 * BARRIER_SPACE + 2;
+        Rectangle area = vertical ? new Rectangle(c, -FAR, width, 2 * FAR) : new Rectangle(-FAR, c, 2 * FAR, width);
+        List<int[]> blocked = new ArrayList<>(), edges = new ArrayList<>();
+        obstacles.query(area, rect -> {
+            int lo = (vertical ? rect.x : rect.y) - BARRIER_SPACE, hi = (vertical ? rect.right() : rect.bottom()) + BARRIER_SPACE;
+            int[] span = vertical
+                    ? new int[]{rect.y - BARRIER_SPACE, rect.bottom() + BARRIER_SPACE}
+                    : new int[]{rect.x - BARRIER_SPACE, rect.right() + BARRIER_SPACE};
+            if (lo < coordinate && coordinate < hi) {
+                blocked.add(span);
+            } else if (lo == coordinate || hi == coordinate) {
+                edges.add(span);
+            }
+        });
+        Line line = new Line(blocked, edges);
+
+        _readWriteLock.readLock().lock();
+        try {
+            if (version == _version) {
+                (vertical ? _verticals : _horizontals).put(coordinate, line);
+            }
+        } finally {
+            _readWriteLock.readLock().unlock();
+        }
+        return line;
+    }
+
+    /**
+     * 搜索源图元到目标图元的路径
+     * @param src 源图元
+     * @param dst 目标图元
+     * @param obstacles 障碍
+     * @param anchors 本连线的锚点分配，这里只选取空闲锚点，不占用
+     * @return 路径点集合(起点、终点为源、目标图元上的锚点)，不可达返回null
+     */
+    public List<Point> search_route(AIRectangle src, AIRectangle dst, ObstacleView obstacles, AnchorAllocator anchors) {
+        List<Tuple<Point, AIDirection>> sources = free_anchors(src, dst, anchors);
+        List<Tuple<Point, AIDirection>> targets = free_anchors(dst, src, anchors);
+
+        // 全局关注线 + 锚点引出点所在的线
+        Version version = current();
+        List<Point> stubs = new ArrayList<>();
+        sources.forEach(anchor -> stubs.add(stub(anchor)));
+        targets.forEach(anchor -> stubs.add(stub(anchor)));
+        return new Search(version, stubs, obstacles).run(sources, targets);
+    }
+
+    /**
+     * 图元四条边上各取一个空闲锚点，起始位置为另一个图元中心在该边上的投影
+     */
+    private static List<Tuple<Point, AIDirection>> free_anchors(AIRectangle rect, AIRectangle other, AnchorAllocator allocator) {
+        int gap = AIConstants.POINT2EDGE_GAP;
+        int cx = clamp((int) other.getCenterX(), rect.x + gap, rect.right() - gap);
+        int cy = clamp((int) other.getCenterY(), rect.y + gap, rect.bottom() - gap);
+        List<Tuple<Point, AIDirection>> anchors = new ArrayList<>(4);
+        for (Tuple<Point, AIDirection> start : List.of(
+                Tuple.of(new Point(rect.x, cy), LEFT),
+                Tuple.of(new Point(cx, rect.y), UP),
+                Tuple.of(new Point(rect.right(), cy), RIGHT),
+                Tuple.of(new Point(cx, rect.bottom()), DOWN))) {
+            Tuple<Point, AIDirection> anchor = allocator.free_anchor(rect, start.a, start.b, false);
+            if (anchors.stream().noneMatch(a -> a.a.equals(anchor.a))) {
+                anchors.add(anchor);
+            }
+        }
+        return anchors;
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return min > max ? (min + max) / 2 : Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * @return 锚点沿边的法向引出BARRIER_SPACE的点
+     */
+    private static Point stub(Tuple<Point, AIDirection> anchor) {
+        int d = index(anchor.b);
+        return new Point(anchor.a.x + DX[d] * BARRIER_SPACE, anchor.a.y + DY[d] * BARRIER_SPACE);
+    }
+
+    private static int index(AIDirection direction) {
+        return switch (direction) {
+            case LEFT -> LEFT_INDEX;
+            case UP -> UP_INDEX;
+            case RIGHT -> RIGHT_INDEX;
+            default -> DOWN_INDEX;
+        };
+    }
+
+    /**
+     * 一个图元版本下的全局关注线，以及按需取得的切分结果、每条关注线上的顶点(按关注线下标存放)
+     */
+    private static final class Version {
+        final int[] xs, ys;
+        final Line[] verticals, horizontals;
+        /**
+         * 横线上的顶点：在这条横线上是关注段的竖向关注线的下标(升序)
+         */
+        final AtomicReferenceArray<int[]> rows;
+        /**
+         * 竖线上的顶点：在这条竖线上是关注段的横向关注线的下标
+         */
+        final AtomicReferenceArray<int[]> columns;
+
+        Version(int[] xs, int[] ys) {
+            this.xs = xs;
+            this.ys = ys;
+            verticals = new Line[xs.length];
+            horizontals = new Line[ys.length];
+            rows = new AtomicReferenceArray<>(ys.length);
+            columns = new AtomicReferenceArray<>(xs.length);
+        }
+    }
+
+    /**
+     * 一条线的切分结果：障碍区内部之外为自由段(闭区间，按坐标排序)，包含障碍区边的自由段为关注段。
+     */
+    private static final class Line {
+        final int[] lo, hi;
+        final boolean[] interesting;
+
+        /**
+         * @param blocked 覆盖这条线的障碍区在线上的范围(开区间)
+         * @param edges 边在这条线上的障碍区在线上的范围
+         */
+        Line(List<int[]> blocked, List<int[]> edges) {
+            blocked.sort(Comparator.comparingInt(span -> span[0]));
+            int[] lo = new int[blocked.size() + 1], hi = new int[blocked.size() + 1];
+            int n = 0, end = Integer.MIN_VALUE;
+            for (int[] span : blocked) {
+                if (n > 0 && span[0] < end) {
+                    // 与前一个障碍区重叠
+                    end = Math.max(end, span[1]);
+                    continue;
+                }
+                lo[n] = n == 0 ? Integer.MIN_VALUE : end;
+                hi[n++] = span[0];
+                end = span[1];
+            }
+            lo[n] = n == 0 ? Integer.MIN_VALUE : end;
+            hi[n++] = Integer.MAX_VALUE;
+            this.lo = Arrays.copyOf(lo, n);
+            this.hi = Arrays.copyOf(hi, n);
+
+            interesting = new boolean[n];
+            for (int[] edge : edges) {
+                for (int i = 0; i < n && this.lo[i] <= edge[1]; i++) {
+                    if (this.hi[i] >= edge[0]) interesting[i] = true;
+                }
+            }
+        }
+
+        /**
+         * @return 包含v的自由段，v在障碍区内部返回-1
+         */
+        int run_at(int v) {
+            int low = 0, high = lo.length - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (lo[mid] <= v) low = mid;
+                else high = mid - 1;
+            }
+            return v <= hi[low] ? low : -1;
+        }
+    }
+
+    /**
+     * 一次A*搜索。关注线用下标表示：全局关注线在前，之后是不在其中的锚点引出点所在的线。<p>
+     * 状态为(顶点, 进入方向)，编码为 xi << 32 | yi << 2 | dir；终止状态(从引出点进入终点锚点)编码为 -1 - 终点序号。
+     */
+    private final class Search {
+        final Version version;
+        final int[] xs, ys;
+        /**
+         * 全局关注线的条数
+         */
+        final int gx, gy;
+        final ObstacleView obstacles;
+        /**
+         * 锚点引出点所在的线的切分结果、顶点，按下标 - 全局关注线条数存放
+         */
+        final Line[] stubVerticals, stubHorizontals;
+        final int[][] stubRows, stubColumns;
+        /**
+         * 锚点引出点所在的自由段也是关注段：{竖线下标, 自由段lo, hi, ...}、{横线下标, 自由段lo, hi, ...}
+         */
+        final int[] stubColumnRuns, stubRowRuns;
+        /**
+         * 终点引出点(方向为0的状态)及其坐标、终点锚点、进入锚点的方向
+         */
+        final long[] goalVertices = new long[4];
+        final int[] goalX = new int[4], goalY = new int[4];
+        final Point[] goalAnchors = new Point[4];
+        final int[] goalInward = new int[4];
+        int goals;
+        /**
+         * 起始状态的槽位 -> 起点锚点
+         */
+        final HashMap<Integer, Point> sourceAnchors = new HashMap<>();
+
+        /**
+         * 状态 -> 槽位 + 1，开放寻址
+         */
+        long[] table = new long[1 << 12];
+        int[] tableSlots = new int[1 << 12];
+        /**
+         * 按槽位存放的状态、代价、父槽位、在堆中的位置(-1：不在堆中)
+         */
+        long[] keys = new long[1 << 11];
+        long[] g = new long[1 << 11], f = new long[1 << 11];
+        int[] parent = new int[1 << 11], heapIndex = new int[1 << 11];
+        /**
+         * 按槽位存放的进入方向所在的线上的位置：在线上顶点中的位置、所在的自由段，未知为-1
+         */
+        int[] lanePositions = new int[1 << 11], laneRuns = new int[1 << 11];
+        int slots;
+        /**
+         * 开放表：槽位的二叉堆，按f升序，f相同时g大的(已走得远的)优先
+         */
+        int[] heap = new int[1 << 11];
+        int heapSize;
+
+        Search(Version version, List<Point> stubs, ObstacleView obstacles) {
+            this.version = version;
+            this.obstacles = obstacles;
+            xs = with_stubs(version.xs, stubs, true);
+            ys = with_stubs(version.ys, stubs, false);
+            gx = version.xs.length;
+            gy = version.ys.length;
+            stubVerticals = new Line[xs.length - gx];
+            stubHorizontals = new Line[ys.length - gy];
+            stubColumns = new int[xs.length - gx][];
+            stubRows = new int[ys.length - gy][];
+            stubColumnRuns = stub_runs(stubs, true);
+            stubRowRuns = stub_runs(stubs, false);
+        }
+
+        /**
+         * 全局关注线之后追加不在其中的锚点引出点所在的线
+         */
+        private int[] with_stubs(int[] global, List<Point> stubs, boolean x) {
+            int[] lines = Arrays.copyOf(global, global.length + stubs.size());
+            int n = global.length;
+            for (Point stub : stubs) {
+                int c = x ? stub.x : stub.y;
+                if (index_of(lines, global.length, n, c) < 0) lines[n++] = c;
+            }
+            return Arrays.copyOf(lines, n);
+        }
+
+        /**
+         * @param global 全局关注线的条数
+         * @param n 关注线的条数
+         * @return 坐标c的关注线下标，没有返回-1
+         */
+        private int index_of(int[] lines, int global, int n, int c) {
+            int i = Arrays.binarySearch(lines, 0, global, c);
+            if (i >= 0) return i;
+            for (i = global; i < n; i++) {
+                if (lines[i] == c) return i;
+            }
+            return -1;
+        }
+
+        private int[] stub_runs(List<Point> stubs, boolean vertical) {
+            int[] runs = new int[stubs.size() * 3];
+            int n = 0;
+            for (Point stub : stubs) {
+                int index = vertical ? index_of(xs, gx, xs.length, stub.x) : index_of(ys, gy, ys.length, stub.y);
+                Line line = vertical ? vertical_at(index) : horizontal_at(index);
+                int run = line.run_at(vertical ? stub.y : stub.x);
+                if (run >= 0) {
+                    runs[n++] = index;
+                    runs[n++] = line.lo[run];
+                    runs[n++] = line.hi[run];
+                }
+            }
+            return Arrays.copyOf(runs, n);
+        }
+
+        List<Point> run(List<Tuple<Point, AIDirection>> sources, List<Tuple<Point, AIDirection>> targets) {
+            // 引出点落在其他图元的障碍区内的锚点不可用
+            for (Tuple<Point, AIDirection> target : targets) {
+                Point stub = stub(target);
+                long vertex = state(index_of(xs, gx, xs.length, stub.x), index_of(ys, gy, ys.length, stub.y), 0);
+                if (horizontal(stub.y, obstacles).run_at(stub.x) >= 0 && goal(vertex) < 0) {
+                    goalVertices[goals] = vertex;
+                    goalX[goals] = stub.x;
+                    goalY[goals] = stub.y;
+                    goalAnchors[goals] = target.a;
+                    goalInward[goals++] = (index(target.b) + 2) % 4;
+                }
+            }
+            for (Tuple<Point, AIDirection> source : sources) {
+                Point stub = stub(source);
+                if (horizontal(stub.y, obstacles).run_at(stub.x) >= 0) {
+                    int slot = push(state(index_of(xs, gx, xs.length, stub.x), index_of(ys, gy, ys.length, stub.y), index(source.b)), BARRIER_SPACE, -1, -1, -1);
+                    if (slot >= 0) {
+                        sourceAnchors.put(slot, source.a);
+                    }
+                }
+            }
+            if (goals == 0) {
+                return null;
+            }
+
+            int expansions = 0;
+            while (heapSize > 0 && expansions < MAX_EXPANSIONS) {
+                int slot = poll();
+                long key = keys[slot];
+                if (key < 0) {
+                    return path(slot);
+                }
+                expansions++;
+                int dir = (int) (key & 3);
+                int goal = goal(key & ~3L);
+                if (goal >= 0) {
+                    // 从引出点沿法向进入终点锚点，终止状态不再加启发值
+                    push(-1 - goal, g[slot] + BARRIER_SPACE + (goalInward[goal] != dir ? BEND_PENALTY : 0), slot, -1, -1);
+                }
+                expand(slot, (int) (key >>> 32), (int) key >>> 2, dir);
+            }
+            return null;
+        }
+
+        /**
+         * @param vertex 方向为0的状态
+         * @return 顶点上的终点序号，不是终点返回-1
+         */
+        private int goal(long vertex) {
+            for (int i = 0; i < goals; i++) {
+                if (goalVertices[i] == vertex) return i;
+            }
+            return -1;
+        }
+
+        /**
+         * 除回头方向外，沿每个方向跳到当前自由段上的下一个顶点
+         */
+        void expand(int slot, int xi, int yi, int dir) {
+            // 沿进入方向所在的线，位置和自由段可以沿用
+            boolean horizontal = dir == LEFT_INDEX || dir == RIGHT_INDEX;
+            move(slot, xi, yi, dir, true, horizontal ? lanePositions[slot] : -1, horizontal ? laneRuns[slot] : -1);
+            move(slot, xi, yi, dir, false, horizontal ? -1 : lanePositions[slot], horizontal ? -1 : laneRuns[slot]);
+        }
+
+        /**
+         * 沿横线或竖线向两侧(回头方向除外)跳到当前自由段上的下一个顶点
+         * @param row true：横线
+         * @param position 当前位置在线上顶点中的位置，未知为-1
+         * @param run 当前位置所在的自由段，未知为-1
+         */
+        private void move(int slot, int xi, int yi, int dir, boolean row, int position, int run) {
+            int[] lines = row ? xs : ys;
+            int index = row ? xi : yi, from = lines[index], at = row ? ys[yi] : xs[xi];
+            Line line = row ? horizontal_at(yi) : vertical_at(xi);
+            if (run < 0 && (run = line.run_at(from)) < 0) {
+                return;
+            }
+            int[] vertices = row ? row_at(yi) : column_at(xi);
+            int before = position - 1, after = position + 1;
+            if (position < 0) {
+                long around = around(vertices, index, row ? gx : gy, row ? version.xs : version.ys, from);
+                before = (int) (around >> 32);
+                after = (int) around;
+            }
+            for (int d = row ? LEFT_INDEX : UP_INDEX; d < 4; d += 2) {
+                // 不走回头路
+                if (d == (dir + 2) % 4) continue;
+                int step = row ? DX[d] : DY[d];
+                int next = step < 0 ? before : after;
+                next = next >= 0 && next < vertices.length ? vertices[next] : -1;
+                int stub = next_stub(row ? stubColumnRuns : stubRowRuns, lines, from, at, step, next);
+                int nextPosition = stub == next && next >= 0 ? (step < 0 ? before : after) : -1;
+                if (stub >= 0 && line.lo[run] <= lines[stub] && lines[stub] <= line.hi[run]) {
+                    long cost = g[slot] + (d != dir ? BEND_PENALTY : 0) + Math.abs(lines[stub] - from);
+                    push(row ? state(stub, yi, d) : state(xi, stub, d), cost, slot, nextPosition, run);
+                }
+            }
+        }
+
+        /**
+         * 线上当前位置两侧最近的顶点(全局关注线)
+         * @param vertices 线上的顶点，全局关注线的下标(升序)
+         * @param index 当前位置所在的关注线下标
+         * @param global 全局关注线的条数
+         * @param globalLines 全局关注线
+         * @param from 当前位置的坐标
+         * @return 坐标减小方向的顶点在vertices中的位置 << 32 | 坐标增大方向的顶点的位置，没有为-1或vertices.length
+         */
+        private long around(int[] vertices, int index, int global, int[] globalLines, int from) {
+            // 第一个下标 >= rank的顶点
+            int rank = index < global ? index : -Arrays.binarySearch(globalLines, from) - 1;
+            int low = 0, high = vertices.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (vertices[mid] < rank) low = mid + 1;
+                else high = mid;
+            }
+            // 当前位置本身是顶点
+            int after = low < vertices.length && vertices[low] == index ? low + 1 : low;
+            return (long) (low - 1) << 32 | after;
+        }
+
+        /**
+         * 锚点引出点所在的自由段与线相交时，比next更近的交点
+         * @param runs 引出点所在的自由段
+         * @param lines 关注线
+         * @param from 当前位置的坐标
+         * @param at 这条线的坐标
+         * @param next 全局关注线上的下一个顶点，没有为-1
+         * @return 关注线下标，没有返回-1
+         */
+        private int next_stub(int[] runs, int[] lines, int from, int at, int step, int next) {
+            for (int k = 0; k < runs.length; k += 3) {
+                int c = lines[runs[k]];
+                if (runs[k + 1] <= at && at <= runs[k + 2]
+                        && (step > 0 ? from < c && (next < 0 || c < lines[next]) : c < from && (next < 0 || c > lines[next]))) {
+                    next = runs[k];
+                }
+            }
+            return next;
+        }
+
+        Line vertical_at(int xi) {
+            Line[] lines = xi < gx ? version.verticals : stubVerticals;
+            int i = xi < gx ? xi : xi - gx;
+            Line line = lines[i];
+            return line != null ? line : (lines[i] = vertical(xs[xi], obstacles));
+        }
+
+        Line horizontal_at(int yi) {
+            Line[] lines = yi < gy ? version.horizontals : stubHorizontals;
+            int i = yi < gy ? yi : yi - gy;
+            Line line = lines[i];
+            return line != null ? line : (lines[i] = horizontal(ys[yi], obstacles));
+        }
+
+        int[] row_at(int yi) {
+            if (yi >= gy) {
+                int[] row = stubRows[yi - gy];
+                return row != null ? row : (stubRows[yi - gy] = crossing(yi, true, stubRowRuns));
+            }
+            int[] row = version.rows.get(yi);
+            if (row == null) version.rows.set(yi, row = crossing(yi, true, null));
+            return row;
+        }
+
+        int[] column_at(int xi) {
+            if (xi >= gx) {
+                int[] column = stubColumns[xi - gx];
+                return column != null ? column : (stubColumns[xi - gx] = crossing(xi, false, stubColumnRuns));
+            }
+            int[] column = version.columns.get(xi);
+            if (column == null) version.columns.set(xi, column = crossing(xi, false, null));
+            return column;
+        }
+
+        /**
+         * 一条线上的顶点：另一方向的全局关注线在这条线上是关注段的位置
+         * @param line 关注线下标
+         * @param row true：横线
+         * @param runs 不为null时只计算其中属于这条线的自由段范围内的顶点(不是全局关注线的线上只有这些状态)
+         * @return 另一方向的全局关注线的下标，升序
+         */
+        private int[] crossing(int line, boolean row, int[] runs) {
+            int[] lines = row ? version.xs : version.ys;
+            int coordinate = row ? ys[line] : xs[line];
+            int from = 0, to = lines.length;
+            if (runs != null) {
+                int lo = Integer.MAX_VALUE, hi = Integer.MIN_VALUE;
+                for (int k = 0; k < runs.length; k += 3) {
+                    if (runs[k] == line) {
+                        lo = Math.min(lo, runs[k + 1]);
+                        hi = Math.max(hi, runs[k + 2]);
+                    }
+                }
+                if (lo > hi) return new int[0];
+                from = insertion(lines, lo);
+                to = insertion(lines, hi == Integer.MAX_VALUE ? hi : hi + 1);
+            }
+            int[] vertices = new int[Math.max(0, to - from)];
+            int n = 0;
+            for (int i = from; i < to; i++) {
+                Line crossing = row ? vertical_at(i) : horizontal_at(i);
+                int run = crossing.run_at(coordinate);
+                if (run >= 0 && crossing.interesting[run]) vertices[n++] = i;
+            }
+            return Arrays.copyOf(vertices, n);
+        }
+
+        /**
+         * @return 第一个 >= c 的位置
+         */
+        private int insertion(int[] sorted, int c) {
+            int i = Arrays.binarySearch(sorted, c);
+            return i >= 0 ? i : -i - 1;
+        }
+
+        /**
+         * 状态的代价比已有的小时加入(或更新)开放表
+         * @param from 父槽位，起始状态为-1
+         * @param position 在进入方向所在的线上顶点中的位置，未知为-1
+         * @param run 在进入方向所在的线上的自由段，未知为-1
+         * @return 状态的槽位，没有更新返回-1
+         */
+        int push(long key, long cost, int from, int position, int run) {
+            int slot = slot(key);
+            if (slot < slots && cost >= g[slot]) {
+                return -1;
+            }
+            if (slot == slots) {
+                add_slot(key);
+            }
+            g[slot] = cost;
+            parent[slot] = from;
+            lanePositions[slot] = position;
+            laneRuns[slot] = run;
+            if (key >= 0) {
+                f[slot] = cost + heuristic(xs[(int) (key >>> 32)], ys[(int) key >>> 2], (int) (key & 3));
+            } else {
+                f[slot] = cost;
+            }
+            if (heapIndex[slot] < 0) {
+                if (heapSize == heap.length) heap = Arrays.copyOf(heap, heapSize * 2);
+                heap[heapSize] = slot;
+                heapIndex[slot] = heapSize++;
+            }
+            sift_up(heapIndex[slot]);
+            return slot;
+        }
+
+        /**
+         * @return 状态的槽位，新状态返回slots(尚未分配)
+         */
+        private int slot(long key) {
+            int mask = table.length - 1;
+            for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+                if (tableSlots[i] == 0) return slots;
+                if (table[i] == key) return tableSlots[i] - 1;
+            }
+        }
+
+        private void add_slot(long key) {
+            if (slots == keys.length) {
+                int capacity = slots * 2;
+                keys = Arrays.copyOf(keys, capacity);
+                g = Arrays.copyOf(g, capacity);
+                f = Arrays.copyOf(f, capacity);
+                parent = Arrays.copyOf(parent, capacity);
+                heapIndex = Arrays.copyOf(heapIndex, capacity);
+                lanePositions = Arrays.copyOf(lanePositions, capacity);
+                laneRuns = Arrays.copyOf(laneRuns, capacity);
+            }
+            keys[slots] = key;
+            heapIndex[slots] = -1;
+            slots++;
+            // 装载因子不超过1/2
+            if (slots * 2 > table.length) {
+                table = new long[table.length * 2];
+                tableSlots = new int[table.length];
+                for (int slot = 0; slot < slots; slot++) put(keys[slot], slot);
+            } else {
+                put(key, slots - 1);
+            }
+        }
+
+        private void put(long key, int slot) {
+            int mask = table.length - 1;
+            int i = hash(key) & mask;
+            while (tableSlots[i] != 0) i = (i + 1) & mask;
+            table[i] = key;
+            tableSlots[i] = slot + 1;
+        }
+
+        private int hash(long key) {
+            return (int) (key * 0x9E3779B97F4A7C15L >>> 32);
+        }
+
+        int poll() {
+            int top = heap[0];
+            heapIndex[top] = -1;
+            if (--heapSize > 0) {
+                heap[0] = heap[heapSize];
+                heapIndex[heap[0]] = 0;
+                sift_down(0);
+            }
+            return top;
+        }
+
+        private boolean before(int a, int b) {
+            return f[a] != f[b] ? f[a] < f[b] : g[a] > g[b];
+        }
+
+        private void sift_up(int i) {
+            int slot = heap[i];
+            while (i > 0) {
+                int up = (i - 1) >>> 1;
+                if (!before(slot, heap[up])) break;
+                heap[i] = heap[up];
+                heapIndex[heap[i]] = i;
+                i = up;
+            }
+            heap[i] = slot;
+            heapIndex[slot] = i;
+        }
+
+        private void sift_down(int i) {
+            int slot = heap[i];
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= heapSize) break;
+                if (child + 1 < heapSize && before(heap[child + 1], heap[child])) child++;
+                if (!before(heap[child], slot)) break;
+                heap[i] = heap[child];
+                heapIndex[heap[i]] = i;
+                i = child;
+            }
+            heap[i] = slot;
+            heapIndex[slot] = i;
+        }
+
+        /**
+         * 代价下界：到最近的终点引出点的曼哈顿距离 + 至少需要的折点数 * BEND_PENALTY，再加上引出段长度
+         */
+        long heuristic(int x, int y, int dir) {
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i < goals; i++) {
+                // 还需要的横向、纵向行进方向，-1为不需要
+                int needX = x < goalX[i] ? RIGHT_INDEX : x > goalX[i] ? LEFT_INDEX : -1;
+                int needY = y < goalY[i] ? DOWN_INDEX : y > goalY[i] ? UP_INDEX : -1;
+                int bends;
+                if (needX >= 0 && needY >= 0) {
+                    bends = dir == needX || dir == needY ? 1 : 2;
+                } else if (needX >= 0 || needY >= 0) {
+                    int need = Math.max(needX, needY);
+                    bends = dir == need ? 0 : dir == (need + 2) % 4 ? 2 : 1;
+                } else {
+                    bends = 0;
+                }
+                best = Math.min(best, (long) Math.abs(x - goalX[i]) + Math.abs(y - goalY[i]) + (long) bends * BEND_PENALTY);
+            }
+            return best + BARRIER_SPACE;
+        }
+
+        long state(int xi, int yi, int dir) {
+            return (long) xi << 32 | (long) yi << 2 | dir;
+        }
+
+        /**
+         * @param end 终止状态的槽位
+         * @return 起点锚点、折点、终点锚点
+         */
+        List<Point> path(int end) {
+            List<Point> points = new ArrayList<>();
+            points.add(goalAnchors[(int) (-1 - keys[end])]);
+            for (int slot = parent[end]; slot >= 0; slot = parent[slot]) {
+                long key = keys[slot];
+                add_corner(points, new Point(xs[(int) (key >>> 32)], ys[(int) key >>> 2]));
+                Point anchor = sourceAnchors.get(slot);
+                if (anchor != null) {
+                    add_corner(points, anchor);
+                }
+            }
+            Collections.reverse(points);
+            return points;
+        }
+
+        /**
+         * 加入点，与前两个点共线时去掉中间的点
+         */
+        private void add_corner(List<Point> points, Point point) {
+            int n = points.size();
+            if (n >= 2) {
+                Point a = points.get(n - 2), b = points.get(n - 1);
+                if ((a.x == b.x && b.x == point.x) || (a.y == b.y && b.y == point.y)) {
+                    points.set(n - 1, point);
+                    return;
+                }
+            }
+            points.add(point);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package aiconnector.router;
+
+import aiconnector.connector.AIRectangle;
+import aiconnector.connector.Polyline;
+
+import java.awt.*;
+import java.util.List;
+
+/**
+ * 路径搜索引擎。每个画布(AIManagerItf)持有一个，可以在运行时切换。<p>
+ * 图元增删改时画布通知引擎，需要增量维护数据结构的引擎覆盖insert、remove。
+ * @see RoutingEngineProvider
+ */
+public interface RoutingEngine {
+    /**
+     * @return 引擎名称，与RoutingEngineProvider#name相同
+     */
+    String name();
+
+    /**
+     * 图元加入或移动后调用。相同table_id的图元已经存在时替换。
+     */
+    default void insert(AIRectangle rectangle) {
+    }
+
+    /**
+     * 图元删除后调用
+     */
+    default void remove(AIRectangle rectangle) {
+    }
+
+    /**
+     * 搜索源图元到目标图元的路径，找到后通过anchors占用两端的锚点
+     * @param src 源图元
+     * @param dst 目标图元
+     * @param obstacles 障碍
+     * @param anchors 本连线的锚点分配
+     * @return 路径点集合，找不到返回null
+     */
+    List<Point> route(AIRectangle src, AIRectangle dst, ObstacleView obstacles, AnchorAllocator anchors);
+
+    /**
+     * 与route相同，返回紧凑的折线。直接构建Polyline的引擎覆盖本方法，避免创建中间的Point
+     * @return 路径，找不到返回null
+     */
+    default Polyline route_polyline(AIRectangle src, AIRectangle dst, ObstacleView obstacles, AnchorAllocator anchors) {
+        List<Point> route = route(src, dst, obstacles, anchors);
+        return route == null ? null : Polyline.of(route);
+    }
+}
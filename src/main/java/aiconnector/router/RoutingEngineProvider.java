@@ -0,0 +1,20 @@
+package aiconnector.router;
+
+import aiconnector.manager.AIManagerItf;
+
+/**
+ * 路径搜索引擎的服务接口，通过ServiceLoader发现：
+ * 实现类在META-INF/services/aiconnector.router.RoutingEngineProvider中登记，需要有public无参构造函数。
+ * @see RoutingEngines
+ */
+public interface RoutingEngineProvider {
+    /**
+     * @return 引擎名称，画布按名称选择引擎
+     */
+    String name();
+
+    /**
+     * 为画布创建引擎。每个画布一个实例，画布上已有的图元随后通过RoutingEngine#insert逐个加入。
+     */
+    RoutingEngine create(AIManagerItf manager);
+}
@@ -0,0 +1,52 @@
+package aiconnector.router;
+
+import aiconnector.manager.AIManagerItf;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 通过ServiceLoader发现的路径搜索引擎
+ */
+public final class RoutingEngines {
+    /**
+     * 静态内部类,包含一个静态属性：名称 -> 引擎，首次使用时加载
+     */
+    private static class Providers {
+        private static final Map<String, RoutingEngineProvider> INSTANCE = load();
+
+        private static Map<String, RoutingEngineProvider> load() {
+            Map<String, RoutingEngineProvider> providers = new TreeMap<>();
+            for (RoutingEngineProvider provider : ServiceLoader.load(RoutingEngineProvider.class, RoutingEngineProvider.class.getClassLoader())) {
+                // 同名时先登记的优先
+                providers.putIfAbsent(provider.name(), provider);
+            }
+            return Collections.unmodifiableMap(providers);
+        }
+    }
+
+    private RoutingEngines() {
+    }
+
+    /**
+     * @return 所有可用引擎的名称
+     */
+    public static Set<String> names() {
+        return Providers.INSTANCE.keySet();
+    }
+
+    /**
+     * 为画布创建指定名称的引擎
+     * @throws IllegalArgumentException 没有该名称的引擎
+     */
+    public static RoutingEngine create(String name, AIManagerItf manager) {
+        RoutingEngineProvider provider = Providers.INSTANCE.get(name);
+        if (provider == null) {
+            throw new IllegalArgumentException("unknown routing engine: " + name + ", available: " + names());
+        }
+        return provider.create(manager);
+    }
+}
@@ -0,0 +1,56 @@
+package aiconnector.router;
+
+import aiconnector.connector.AIRectangle;
+import aiconnector.manager.AIManagerItf;
+
+import java.awt.*;
+import java.util.List;
+
+/**
+ * 正交可见图 + A*的路径搜索引擎，关注线随图元增删改增量维护。<p>
+ * 只要存在路径就能找到，不受MAX_STEP限制。搜索状态放在基本类型数组和槽位堆中，每条关注线上的顶点按图元版本缓存，
+ * 扩展时直接跳到下一个顶点；耗时见README的"路径搜索引擎"。
+ * @see OrthogonalVisibilityGraph
+ */
+public class VisibilityGraphRoutingEngine implements RoutingEngine {
+    public static final String NAME = "visibility-graph";
+
+    private final OrthogonalVisibilityGraph _graph = new OrthogonalVisibilityGraph();
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public void insert(AIRectangle rectangle) {
+        _graph.insert(rectangle);
+    }
+
+    @Override
+    public void remove(AIRectangle rectangle) {
+        _graph.remove(rectangle);
+    }
+
+    @Override
+    public List<Point> route(AIRectangle src, AIRectangle dst, ObstacleView obstacles, AnchorAllocator anchors) {
+        List<Point> route = _graph.search_route(src, dst, obstacles, anchors);
+        if (route != null) {
+            anchors.attach(src, route.get(0));
+            anchors.attach(dst, route.get(route.size() - 1));
+        }
+        return route;
+    }
+
+    public static class Provider implements RoutingEngineProvider {
+        @Override
+        public String name() {
+            return NAME;
+        }
+
+        @Override
+        public RoutingEngine create(AIManagerItf manager) {
+            return new VisibilityGraphRoutingEngine();
+        }
+    }
+}
@@ -24,6 +24,26 @@ public interface AIConstants {
      * 如果存在线冲突，则尝试解决冲突的最大次数
       */
     int MAX_RETRY_TIMES = 6;
+    /**
+     * 可见图路径搜索中每个折点的代价(折算为路径长度)
+     */
+    int BEND_PENALTY = 2 * BARRIER_SPACE;
+    /**
+     * 每个画布缓存的连线路径数
+     */
+    int ROUTE_CACHE_SIZE = 4096;
+    /**
+     * 路径缓存失效判定的网格大小
+     */
+    int ROUTE_CACHE_CELL = 256;
+    /**
+     * 批量搜索路径时同时搜索的连线数
+     */
+    int ROUTE_ALL_WORKERS = Runtime.getRuntime().availableProcessors();
+    /**
+     * 慢搜索快照在两端图元与路径的外包矩形之外多保存的范围
+     */
+    int SNAPSHOT_MARGIN = 10 * BARRIER_SPACE;
     /**
      * 在两个图元相邻很近的情况下判定为重叠。这个距离默认为3
      * */
@@ -0,0 +1,256 @@
+package aiconnector.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+
+/**
+ * int -> 对象的并发散列表，键不装箱。<p>
+ * 开放寻址、线性探测，删除时后移填补空位，不留墓碑。读操作先乐观读，被写操作打断时再加读锁；
+ * 写操作互斥。值不能为null，空槽位以值为null表示。
+ * @param <V> 值类型
+ */
+public class IntObjectMap<V> {
+    private static final int MIN_CAPACITY = 16;
+
+    private final StampedLock _lock = new StampedLock();
+    private int[] _keys = new int[MIN_CAPACITY];
+    private Object[] _values = new Object[MIN_CAPACITY];
+    private int _size;
+
+    /**
+     * 对值的修改：old为null表示键不存在，返回null表示删除
+     */
+    public interface Remapping<V> {
+        V apply(int key, V old);
+    }
+
+    /**
+     * 遍历键值对
+     */
+    public interface Visitor<V> {
+        void visit(int key, V value);
+    }
+
+    public V get(int key) {
+        long stamp = _lock.tryOptimisticRead();
+        if (stamp != 0) {
+            int[] keys = _keys;
+            Object[] values = _values;
+            Object value = keys.length == values.length ? values[find(keys, values, key)] : null;
+            if (_lock.validate(stamp)) {
+                return cast(value);
+            }
+        }
+        stamp = _lock.readLock();
+        try {
+            return cast(_values[find(_keys, _values, key)]);
+        } finally {
+            _lock.unlockRead(stamp);
+        }
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * 在读锁内对值执行reader，reader不能修改本表
+     * @return reader的结果，键不存在时reader收到null
+     */
+    public <R> R read(int key, Function<? super V, ? extends R> reader) {
+        long stamp = _lock.readLock();
+        try {
+            return reader.apply(cast(_values[find(_keys, _values, key)]));
+        } finally {
+            _lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return 原来的值，没有返回null
+     */
+    public V put(int key, V value) {
+        return compute(key, (k, old) -> value, true);
+    }
+
+    /**
+     * @return 原来的值，没有则放入value并返回null
+     */
+    public V putIfAbsent(int key, V value) {
+        return compute(key, (k, old) -> old != null ? old : value, true);
+    }
+
+    /**
+     * @return 删除的值，没有返回null
+     */
+    public V remove(int key) {
+        return compute(key, (k, old) -> null, true);
+    }
+
+    /**
+     * 在写锁内修改键对应的值
+     * @return 新的值
+     */
+    public V compute(int key, Remapping<V> remapping) {
+        return compute(key, remapping, false);
+    }
+
+    private V compute(int key, Remapping<V> remapping, boolean returnOld) {
+        long stamp = _lock.writeLock();
+        try {
+            int index = find(_keys, _values, key);
+            V old = cast(_values[index]);
+            V value = remapping.apply(key, old);
+            if (value == null) {
+                if (old != null) {
+                    delete(index);
+                }
+            } else if (old == null) {
+                _keys[index] = key;
+                _values[index] = value;
+                if (++_size * 4 > _values.length * 3) {
+                    resize(_values.length * 2);
+                }
+            } else {
+                _values[index] = value;
+            }
+            return returnOld ? old : value;
+        } finally {
+            _lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = _lock.readLock();
+        try {
+            return _size;
+        } finally {
+            _lock.unlockRead(stamp);
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void clear() {
+        long stamp = _lock.writeLock();
+        try {
+            _keys = new int[MIN_CAPACITY];
+            _values = new Object[MIN_CAPACITY];
+            _size = 0;
+        } finally {
+            _lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return 所有键的快照
+     */
+    public int[] keys() {
+        long stamp = _lock.readLock();
+        try {
+            int[] keys = new int[_size];
+            for (int i = 0, n = 0; i < _values.length; i++) {
+                if (_values[i] != null) keys[n++] = _keys[i];
+            }
+            return keys;
+        } finally {
+            _lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return 所有值的快照
+     */
+    public List<V> values() {
+        long stamp = _lock.readLock();
+        try {
+            List<V> values = new ArrayList<>(_size);
+            for (Object value : _values) {
+                if (value != null) values.add(cast(value));
+            }
+            return values;
+        } finally {
+            _lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * 遍历快照，visitor可以修改本表
+     */
+    public void forEach(Visitor<? super V> visitor) {
+        int[] keys;
+        Object[] values;
+        long stamp = _lock.readLock();
+        try {
+            keys = _keys.clone();
+            values = _values.clone();
+        } finally {
+            _lock.unlockRead(stamp);
+        }
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) visitor.visit(keys[i], cast(values[i]));
+        }
+    }
+
+    /**
+     * @return 键所在的槽位，不存在时为应当插入的空槽位
+     */
+    private static int find(int[] keys, Object[] values, int key) {
+        int mask = keys.length - 1;
+        int index = mix(key) & mask;
+        // 乐观读时表可能处于不一致的状态，探测次数不超过容量
+        for (int i = 0; i < keys.length && values[index] != null && keys[index] != key; i++) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    /**
+     * 删除槽位上的键值，后面同一探测链上的键前移
+     */
+    private void delete(int index) {
+        int mask = _keys.length - 1;
+        int hole = index;
+        for (int next = (hole + 1) & mask; _values[next] != null; next = (next + 1) & mask) {
+            int home = mix(_keys[next]) & mask;
+            // home不在(hole, next]之间的键可以移到hole
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                _keys[hole] = _keys[next];
+                _values[hole] = _values[next];
+                hole = next;
+            }
+        }
+        _values[hole] = null;
+        _size--;
+    }
+
+    private void resize(int capacity) {
+        int[] keys = _keys;
+        Object[] values = _values;
+        int[] newKeys = new int[capacity];
+        Object[] newValues = new Object[capacity];
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                int index = find(newKeys, newValues, keys[i]);
+                newKeys[index] = keys[i];
+                newValues[index] = values[i];
+            }
+        }
+        _keys = newKeys;
+        _values = newValues;
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V cast(Object value) {
+        return (V) value;
+    }
+}
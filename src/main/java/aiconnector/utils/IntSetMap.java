@@ -0,0 +1,104 @@
+package aiconnector.utils;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * int -> int集合的并发表，例如图元 -> 连线、图元 -> 重叠图元。<p>
+ * 每个键的集合存放在可增长的int[]中：第0个元素为集合大小，之后按加入顺序排列，容量不够时翻倍。
+ * 集合通常只有几个到几百个元素，查找、删除为顺序扫描；集合变空时删除键。
+ */
+public class IntSetMap {
+    private static final int[] EMPTY = new int[0];
+
+    private final IntObjectMap<int[]> _sets = new IntObjectMap<>();
+
+    /**
+     * @return true：加入成功，false：已经存在
+     */
+    public boolean add(int key, int value) {
+        boolean[] added = {false};
+        _sets.compute(key, (k, set) -> {
+            if (set == null) {
+                set = new int[4];
+            } else if (index_of(set, value) >= 0) {
+                return set;
+            } else if (set[0] + 1 == set.length) {
+                set = Arrays.copyOf(set, set.length * 2);
+            }
+            set[++set[0]] = value;
+            added[0] = true;
+            return set;
+        });
+        return added[0];
+    }
+
+    /**
+     * 删除一个元素，保持其余元素的顺序
+     * @return true：删除成功
+     */
+    public boolean remove(int key, int value) {
+        boolean[] removed = {false};
+        _sets.compute(key, (k, set) -> {
+            int index = set == null ? -1 : index_of(set, value);
+            if (index < 0) {
+                return set;
+            }
+            System.arraycopy(set, index + 1, set, index, set[0] - index);
+            removed[0] = true;
+            return --set[0] == 0 ? null : set;
+        });
+        return removed[0];
+    }
+
+    /**
+     * 删除键
+     * @return 原来的集合，没有返回空数组
+     */
+    public int[] remove(int key) {
+        int[] set = _sets.remove(key);
+        return set == null ? EMPTY : Arrays.copyOfRange(set, 1, set[0] + 1);
+    }
+
+    /**
+     * @return 集合的快照，没有返回空数组
+     */
+    public int[] get(int key) {
+        return _sets.read(key, set -> set == null ? EMPTY : Arrays.copyOfRange(set, 1, set[0] + 1));
+    }
+
+    public boolean contains(int key, int value) {
+        return _sets.read(key, set -> set != null && index_of(set, value) >= 0);
+    }
+
+    public boolean containsKey(int key) {
+        return _sets.containsKey(key);
+    }
+
+    /**
+     * @return 集合大小
+     */
+    public int size(int key) {
+        return _sets.read(key, set -> set == null ? 0 : set[0]);
+    }
+
+    /**
+     * 按加入顺序遍历集合的快照
+     */
+    public void forEach(int key, IntConsumer consumer) {
+        for (int value : get(key)) {
+            consumer.accept(value);
+        }
+    }
+
+    public void clear() {
+        _sets.clear();
+    }
+
+    private static int index_of(int[] set, int value) {
+        for (int i = 1; i <= set[0]; i++) {
+            if (set[i] == value) return i;
+        }
+        return -1;
+    }
+}
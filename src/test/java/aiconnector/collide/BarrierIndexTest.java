@@ -0,0 +1,124 @@
+package aiconnector.collide;
+
+import aiconnector.connector.AIDirection;
+import aiconnector.connector.AIRectangle;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import static aiconnector.connector.AIDirection.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BarrierIndexTest {
+
+    @Test
+    void rtree_nearest() {
+        check(new RTreeBarrierIndex());
+    }
+
+    @Test
+    void sweep_nearest() {
+        check(new SweepBarrierIndex());
+    }
+
+    @Test
+    void packed_nearest() {
+        check(new PackedBarrierIndex());
+    }
+
+    @Test
+    void bulk_insert() {
+        check(new SweepBarrierIndex(), true);
+        check(new RTreeBarrierIndex(), true);
+    }
+
+    /**
+     * 奇数table_id的图元不作为障碍
+     */
+    private static final Predicate<AIRectangle> EVEN = C -> C.get_table_id() % 2 == 0;
+
+    private static void check(BarrierIndex index) {
+        check(index, false);
+    }
+
+    /**
+     * @param bulk true：前400个图元用insert_all整体加入，之后的逐个insert
+     */
+    private static void check(BarrierIndex index, boolean bulk) {
+        Random random = new Random(7);
+        List<AIRectangle> rects = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            AIRectangle rect = new AIRectangle(random.nextInt(2000), random.nextInt(2000), 20 + random.nextInt(150), 20 + random.nextInt(100), i);
+            rects.add(rect);
+            if (!bulk || i >= 400) {
+                index.insert(rect);
+            }
+            if (bulk && i == 399) {
+                index.insert_all(rects);
+            }
+        }
+        // 删除一部分，覆盖节点下溢后的重新插入
+        for (int i = 0; i < 200; i++) {
+            assertTrue(index.remove(rects.remove(random.nextInt(rects.size()))));
+        }
+        assertEquals(rects.size(), index.size());
+
+        for (int i = 0; i < 2000; i++) {
+            Point origin = new Point(random.nextInt(2200), random.nextInt(2200));
+            for (AIDirection direction : List.of(LEFT, RIGHT, UP, DOWN)) {
+                int bound = direction == LEFT || direction == UP ? random.nextInt(800) : 1400 + random.nextInt(800);
+                AIRectangle expected = brute_force(rects, direction, origin, bound, C -> true);
+                AIRectangle actual = index.nearest(direction, origin, bound, C -> true);
+                assertEquals(key(direction, expected), key(direction, actual), direction + " " + origin + " " + bound);
+                // 最近的图元被过滤掉时继续向远处找
+                expected = brute_force(rects, direction, origin, bound, EVEN);
+                actual = index.nearest(direction, origin, bound, EVEN);
+                assertEquals(key(direction, expected), key(direction, actual), "filtered " + direction + " " + origin + " " + bound);
+                assertTrue(actual == null || EVEN.test(actual));
+            }
+            Rectangle area = new Rectangle(origin.x - 200, origin.y - 200, random.nextInt(400), random.nextInt(400));
+            List<AIRectangle> found = new ArrayList<>();
+            index.query(area, found::add);
+            assertEquals(rects.stream().filter(area::intersects).count(), found.size(), area.toString());
+            assertTrue(found.stream().allMatch(area::intersects));
+        }
+    }
+
+    /**
+     * 与AIConnector原有线性扫描一致的判定
+     */
+    private static AIRectangle brute_force(List<AIRectangle> rects, AIDirection direction, Point p, int bound, Predicate<AIRectangle> filter) {
+        AIRectangle best = null;
+        for (AIRectangle C : rects) {
+            if (!filter.test(C)) continue;
+            boolean hit = switch (direction) {
+                case LEFT -> C.y <= p.y && p.y <= C.bottom() && bound <= C.right() && C.right() < p.x;
+                case RIGHT -> C.y <= p.y && p.y <= C.bottom() && p.x < C.x && C.x < bound;
+                case UP -> C.x <= p.x && p.x <= C.right() && bound <= C.bottom() && C.bottom() < p.y;
+                case DOWN -> C.x <= p.x && p.x <= C.right() && p.y < C.y && C.y <= bound;
+                default -> false;
+            };
+            if (hit && (best == null || key(direction, C) > key(direction, best))) {
+                best = C;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 障碍的远近(越大越近)，同样远近的障碍视为等价
+     */
+    private static long key(AIDirection direction, AIRectangle rect) {
+        if (rect == null) return Long.MIN_VALUE;
+        return switch (direction) {
+            case LEFT -> rect.right();
+            case RIGHT -> -rect.x;
+            case UP -> rect.bottom();
+            default -> -rect.y;
+        };
+    }
+}
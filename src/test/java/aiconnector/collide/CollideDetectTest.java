@@ -0,0 +1,40 @@
+package aiconnector.collide;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CollideDetectTest {
+
+    @Test
+    void kernels_match_scalar() {
+        // vector profile编译了向量化内核并加载jdk.incubator.vector，长数组走向量化内核；默认构建只有标量循环
+        assertEquals(Boolean.getBoolean("aiconnector.vector"), CollideDetect.VECTORIZED);
+        Random random = new Random(3);
+        for (int round = 0; round < 2000; round++) {
+            int count = random.nextInt(70);
+            int[] keys = new int[count], lo = new int[count], hi = new int[count];
+            for (int i = 0; i < count; i++) {
+                // 坐标范围小，制造相同的key
+                keys[i] = random.nextInt(100);
+                lo[i] = random.nextInt(100);
+                hi[i] = lo[i] + random.nextInt(40);
+            }
+            int from = random.nextInt(100), bound = random.nextInt(100), stab = random.nextInt(120);
+            boolean inclusive = random.nextBoolean();
+
+            int above = -1, below = -1, overlap = -1;
+            for (int i = 0; i < count; i++) {
+                boolean crossed = lo[i] <= stab && stab <= hi[i];
+                if (crossed && keys[i] > from && (inclusive ? keys[i] <= bound : keys[i] < bound) && (above < 0 || keys[i] < keys[above])) above = i;
+                if (crossed && keys[i] < from && keys[i] >= bound && (below < 0 || keys[i] > keys[below])) below = i;
+                if (overlap < 0 && lo[i] < bound && from < hi[i] && keys[i] != stab) overlap = i;
+            }
+            assertEquals(above, CollideDetect.nearest_above(keys, lo, hi, count, from, bound, inclusive, stab));
+            assertEquals(below, CollideDetect.nearest_below(keys, lo, hi, count, from, bound, stab));
+            assertEquals(overlap, CollideDetect.first_overlap(lo, hi, keys, count, from, bound, stab));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package aiconnector.collide;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static aiconnector.setting.AIConstants.POINT_SPACE;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentIndexTest {
+
+    @Test
+    void update_remove_query() {
+        SegmentIndex index = new SegmentIndex();
+        index.update(1, List.of(new Point(0, 0), new Point(100, 0), new Point(100, 100)));
+        index.update(2, List.of(new Point(0, 200), new Point(300, 200)));
+        // 非正交的线段(截断的路径)
+        index.update(3, List.of(new Point(400, 0), new Point(500, 100)));
+        assertEquals(3, index.size());
+        assertEquals(Set.of(1), query(index, new Rectangle(90, 40, 20, 20)));
+        assertEquals(Set.of(1, 2), query(index, new Rectangle(50, -10, 10, 220)));
+        assertEquals(Set.of(3), query(index, new Rectangle(440, 40, 20, 20)));
+
+        // 替换路径后旧线段不再被查到
+        index.update(1, List.of(new Point(0, 0), new Point(0, 100)));
+        assertEquals(Set.of(), query(index, new Rectangle(90, 40, 20, 20)));
+        assertEquals(Set.of(1), query(index, new Rectangle(-5, 40, 10, 10)));
+
+        index.remove(2);
+        index.remove(3);
+        assertEquals(1, index.size());
+        assertEquals(Set.of(1), query(index, new Rectangle(-1000, -1000, 2000, 2000)));
+    }
+
+    @Test
+    void coincidence() {
+        SegmentIndex index = new SegmentIndex();
+        index.update(1, List.of(new Point(100, 100), new Point(300, 100), new Point(300, 300)));
+
+        // 平行线段坐标相差不到POINT_SPACE才算重合
+        assertTrue(index.check_conincdence(2, new Point(150, 100), new Point(250, 100)));
+        assertTrue(index.check_conincdence(2, new Point(150, 100 + POINT_SPACE - 1), new Point(250, 100 + POINT_SPACE - 1)));
+        assertFalse(index.check_conincdence(2, new Point(150, 100 + POINT_SPACE), new Point(250, 100 + POINT_SPACE)));
+        assertTrue(index.check_conincdence(2, new Point(300 - POINT_SPACE + 1, 150), new Point(300 - POINT_SPACE + 1, 250)));
+        assertFalse(index.check_conincdence(2, new Point(300 - POINT_SPACE, 150), new Point(300 - POINT_SPACE, 250)));
+
+        // 范围只在端点相接不算
+        assertFalse(index.check_conincdence(2, new Point(300, 100), new Point(400, 100)));
+        assertFalse(index.check_conincdence(2, new Point(0, 100), new Point(100, 100)));
+        assertTrue(index.check_conincdence(2, new Point(0, 100), new Point(101, 100)));
+        // 垂直的线段不算
+        assertFalse(index.check_conincdence(2, new Point(200, 50), new Point(200, 150)));
+
+        // 不与自身的线段比较
+        assertFalse(index.check_conincdence(1, new Point(150, 100), new Point(250, 100)));
+        index.update(3, List.of(new Point(150, 110), new Point(250, 110)));
+        assertTrue(index.check_conincdence(1, new Point(150, 100), new Point(250, 100)));
+
+        // 非正交、长度为0的线段不检查
+        assertFalse(index.check_conincdence(2, new Point(100, 100), new Point(300, 110)));
+        assertFalse(index.check_conincdence(2, new Point(200, 100), new Point(200, 100)));
+    }
+
+    private static Set<Integer> query(SegmentIndex index, Rectangle area) {
+        Set<Integer> lines = new TreeSet<>();
+        index.query(area, lines::add);
+        return lines;
+    }
+}
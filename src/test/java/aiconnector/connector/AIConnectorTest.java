@@ -1,8 +1,11 @@
 package aiconnector.connector;
 
+import aiconnector.manager.AILayerManager;
+import aiconnector.manager.AIManagerItf;
 import org.junit.jupiter.api.Assertions;
 
 import java.awt.*;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -12,4 +15,32 @@ class AIConnectorTest {
     void search_route() {
 
     }
+
+    /**
+     * 这个画布上两路搜索在中途汇合：搜索曾经用备忘表复用另一路的后续路径(命中一次)，得到下面的路径，
+     * 与关闭备忘表重新搜索的结果相同。备忘表删除后路径应保持不变。
+     */
+    @org.junit.jupiter.api.Test
+    void route_where_branches_meet() {
+        AIManagerItf manager = AILayerManager.getInstance().getManager("branches-meet");
+        try {
+            List<AIRectangle> rects = List.of(
+                    new AIRectangle(408, 102, 138, 112, 1),
+                    new AIRectangle(313, 476, 92, 50, 2),
+                    new AIRectangle(298, 543, 84, 57, 3),
+                    new AIRectangle(537, 506, 107, 78, 4),
+                    new AIRectangle(242, 356, 84, 42, 5),
+                    new AIRectangle(263, 289, 125, 90, 6),
+                    new AIRectangle(212, 116, 69, 79, 7),
+                    new AIRectangle(432, 239, 47, 129, 8));
+            rects.forEach(manager::add_rect);
+            manager.add_line(rects.get(0), rects.get(1), 1);
+
+            Polyline route = manager.get_connection(1).search_polyline();
+            assertEquals(Polyline.of(List.of(new Point(408, 152), new Point(359, 152), new Point(359, 269),
+                    new Point(408, 269), new Point(408, 501), new Point(405, 501))), route);
+        } finally {
+            AILayerManager.getInstance().remove("branches-meet");
+        }
+    }
 }
\ No newline at end of file
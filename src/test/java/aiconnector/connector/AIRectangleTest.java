@@ -0,0 +1,52 @@
+package aiconnector.connector;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.util.List;
+
+import static aiconnector.connector.AIDirection.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class AIRectangleTest {
+
+    @Test
+    void free_anchor_by_slot() {
+        // 左边y=10、30、50三个槽位，上边x=10..90五个槽位
+        AIRectangle rect = new AIRectangle(0, 0, 100, 60, 1);
+        assertEquals(new Point(0, 30), rect.get_free_anchor(11, new Point(0, 33), LEFT, false).a);
+        rect.insert_or_update_anchor_point(new Point(0, 30), 11);
+        rect.insert_or_update_anchor_point(new Point(0, 10), 12);
+
+        // 顺时针沿左边向上，左边占满后转到上边
+        assertEquals(new Point(10, 0), rect.get_free_anchor(13, new Point(0, 30), LEFT, false).a);
+        assertEquals(UP, rect.get_free_anchor(13, new Point(0, 30), LEFT, false).b);
+        // 逆时针沿左边向下
+        assertEquals(new Point(0, 50), rect.get_free_anchor(13, new Point(0, 30), LEFT, true).a);
+        // 自己的锚点可以继续使用
+        assertEquals(new Point(0, 30), rect.get_free_anchor(11, new Point(0, 30), LEFT, false).a);
+        assertFalse(rect.check_anchor_available(13, new Point(0, 30)));
+
+        rect.detach_anchor_point(11);
+        assertTrue(rect.check_anchor_available(13, new Point(0, 30)));
+        rect.clear_anchor_points();
+        assertTrue(rect.check_anchor_available(13, new Point(0, 10)));
+    }
+
+    @Test
+    void plan_anchors_in_order() {
+        // 右边的三个图元，连线在hub右边上的锚点与目标的上下顺序一致
+        AIRectangle hub = new AIRectangle(0, 0, 100, 200, 1);
+        AIRectangle low = new AIRectangle(500, 300, 100, 60, 2), high = new AIRectangle(500, -200, 100, 60, 3), mid = new AIRectangle(500, 80, 100, 60, 4);
+        List<AIConnector> connectors = List.of(new AIConnector(hub, low, 11, null), new AIConnector(hub, high, 12, null), new AIConnector(hub, mid, 13, null));
+        AnchorPlanner.plan(connectors);
+
+        Point a = hub.get_anchorLine2Point().get(12), b = hub.get_anchorLine2Point().get(13), c = hub.get_anchorLine2Point().get(11);
+        assertEquals(hub.right(), a.x);
+        assertTrue(a.y < b.y && b.y < c.y);
+        assertEquals(new Point(500, 110), mid.get_anchorLine2Point().get(13));
+        // 预分配的锚点在搜索的边上时直接使用
+        assertEquals(b, hub.get_free_anchor(13, new Point(hub.right(), 0), RIGHT, false).a);
+        assertEquals(LEFT, AnchorPlanner.facing(low, hub));
+    }
+}
@@ -0,0 +1,32 @@
+package aiconnector.connector;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PolylineTest {
+
+    @Test
+    void fork_and_append() {
+        PolylineBuilder route = new PolylineBuilder().add(0, 0).add(0, 50);
+        PolylineBuilder horizontal = route.fork().add(30, 50).add(30, 80);
+        PolylineBuilder vertical = route.fork().add(0, 90);
+        // 子构建器的长度、点数包括fork之前的部分
+        assertEquals(110, horizontal.route_length());
+        assertEquals(4, horizontal.size());
+        assertThrows(IndexOutOfBoundsException.class, () -> horizontal.x(1));
+
+        Polyline polyline = route.append(horizontal).build();
+        assertEquals(List.of(new Point(0, 0), new Point(0, 50), new Point(30, 50), new Point(30, 80)), polyline.to_points());
+        assertEquals(Polyline.of(polyline.to_points()), polyline);
+        assertEquals(110, polyline.route_length());
+        assertEquals(2, polyline.bends());
+        assertThrows(IllegalArgumentException.class, () -> route.append(vertical));
+
+        // 斜线使长度为0
+        assertEquals(0, new PolylineBuilder().add(0, 0).add(10, 10).route_length());
+    }
+}
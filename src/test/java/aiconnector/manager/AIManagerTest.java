@@ -0,0 +1,266 @@
+package aiconnector.manager;
+
+import aiconnector.collide.BarrierIndexType;
+import aiconnector.connector.AIConnector;
+import aiconnector.connector.AIRectangle;
+import aiconnector.utils.Tuple;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.awt.*;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AIManagerTest {
+
+    @Test
+    void move_rect_reroutes_affected_lines() {
+        AIManager manager = new AIManager();
+        AIRectangle a = new AIRectangle(0, 500, 100, 60, 1), b = new AIRectangle(600, 500, 100, 60, 2);
+        AIRectangle c = new AIRectangle(0, 0, 100, 60, 3), d = new AIRectangle(600, 0, 100, 60, 4);
+        AIRectangle e = new AIRectangle(0, 1000, 100, 60, 5), f = new AIRectangle(600, 1000, 100, 60, 6);
+        for (AIRectangle rect : List.of(a, b, c, d, e, f)) {
+            manager.add_rect(rect);
+        }
+        manager.add_line(a, b, 11);
+        manager.add_line(c, d, 12);
+        manager.add_line(e, f, 13);
+        for (int table_id : List.of(1, 3, 5)) {
+            assertEquals(1, manager.searchRoute(table_id).size());
+        }
+
+        // 移到c、d的连线上：a自身的连线和c、d的连线重新搜索，e、f的连线不动
+        List<Tuple<Integer, List<Point>>> rerouted = manager.move_rect(1, new Rectangle(300, 0, 40, 60));
+        Set<Integer> lines = rerouted.stream().map(route -> route.a).collect(Collectors.toSet());
+        assertEquals(Set.of(11, 12), lines);
+        assertNotNull(manager.get_connection(11));
+        assertArrayEquals(new int[]{11}, manager.get_line_ids(1));
+
+        // 重复添加同一条连线不会重复搜索
+        manager.add_line(a, b, 11);
+        assertEquals(1, manager.searchRoute(1).size());
+    }
+
+    @Test
+    void move_rect_updates_overlaps() {
+        AIManager manager = new AIManager();
+        // 两组相互重叠的图元，e先压在a、b上
+        AIRectangle a = new AIRectangle(0, 0, 100, 60, 1), b = new AIRectangle(90, 0, 100, 60, 2);
+        AIRectangle c = new AIRectangle(1000, 0, 100, 60, 3), d = new AIRectangle(1090, 0, 100, 60, 4);
+        AIRectangle e = new AIRectangle(50, 30, 100, 60, 5);
+        for (AIRectangle rect : List.of(a, b, c, d, e)) {
+            manager.add_rect(rect);
+        }
+        assertEquals(Set.of(2, 5), overlaps(manager, 1));
+        assertEquals(Set.of(1, 2), overlaps(manager, 5));
+
+        // 移到c、d上：离开的邻居解除关系，新的邻居建立关系
+        manager.move_rect(5, new Rectangle(1050, 30, 100, 60));
+        assertEquals(Set.of(2), overlaps(manager, 1));
+        assertEquals(Set.of(1), overlaps(manager, 2));
+        assertEquals(Set.of(4, 5), overlaps(manager, 3));
+        assertEquals(Set.of(3, 5), overlaps(manager, 4));
+        assertEquals(Set.of(3, 4), overlaps(manager, 5));
+
+        // 移到空白处
+        manager.move_rect(5, new Rectangle(5000, 5000, 100, 60));
+        assertEquals(Set.of(), overlaps(manager, 5));
+        assertEquals(Set.of(4), overlaps(manager, 3));
+        assertEquals(Set.of(3), overlaps(manager, 4));
+        assertEquals(Set.of(2), overlaps(manager, 1));
+    }
+
+    private static Set<Integer> overlaps(AIManager manager, int table_id) {
+        return manager.get_overlaps(table_id).stream().map(AIRectangle::get_table_id).collect(Collectors.toSet());
+    }
+
+    @Test
+    void route_cache_invalidated_by_region() {
+        AIManager manager = new AIManager();
+        AIRectangle a = new AIRectangle(0, 0, 100, 60, 1), b = new AIRectangle(600, 0, 100, 60, 2);
+        manager.add_rect(a);
+        manager.add_rect(b);
+        manager.add_line(a, b, 11);
+
+        List<Point> route = manager.searchRoute(1).get(0).b;
+        assertEquals(route, manager.searchRoute(1).get(0).b);
+        assertEquals(1, manager.routeCache.getHits().get());
+
+        // 远处的图元不影响
+        manager.add_rect(new AIRectangle(3000, 3000, 100, 60, 3));
+        manager.searchRoute(1);
+        assertEquals(2, manager.routeCache.getHits().get());
+
+        // 挡在路径上的图元
+        manager.add_rect(new AIRectangle(300, 0, 40, 60, 4));
+        manager.searchRoute(1);
+        assertEquals(2, manager.routeCache.getHits().get());
+        manager.searchRoute(1);
+        assertEquals(3, manager.routeCache.getHits().get());
+    }
+
+    @Test
+    void route_all_deduplicates() {
+        AIManager manager = new AIManager();
+        AIRectangle a = new AIRectangle(0, 0, 100, 60, 1), b = new AIRectangle(600, 0, 100, 60, 2);
+        AIRectangle c = new AIRectangle(0, 400, 100, 60, 3);
+        for (AIRectangle rect : List.of(a, b, c)) {
+            manager.add_rect(rect);
+        }
+        manager.add_line(a, b, 11);
+        manager.add_line(a, c, 12);
+        manager.add_line(b, c, 13);
+
+        assertEquals(Set.of(11, 12), manager.routeAll(List.of(11, 12, 11, 99)).keySet());
+        Set<Integer> streamed = ConcurrentHashMap.newKeySet();
+        manager.routeAll(List.of(11, 12, 13), (line, route) -> assertTrue(streamed.add(line)));
+        assertEquals(Set.of(11, 12, 13), streamed);
+        assertEquals(manager.routeAll().keySet(), streamed);
+    }
+
+    @Test
+    void route_all_anchors_independent_of_thread_order() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            // 第二次在两路搜索分叉前随机等待、交换分支，各连线搜索完成的先后不同
+            ForkJoinRouteExecutor executor = new ForkJoinRouteExecutor(pool);
+            RouteExecutor shuffled = new RouteExecutor() {
+                @Override
+                public <A, B> Tuple<A, B> fork_join(Supplier<A> left, Supplier<B> right) {
+                    LockSupport.parkNanos(ThreadLocalRandom.current().nextInt(300_000));
+                    Tuple<B, A> result = executor.fork_join(right, left);
+                    return Tuple.of(result.b, result.a);
+                }
+
+                @Override
+                public <T, R> List<R> invoke_all(List<T> items, Function<T, R> task) {
+                    return executor.invoke_all(items, task);
+                }
+            };
+            Map<Integer, List<Point>> first = route_random_canvas(executor), second = route_random_canvas(shuffled);
+            assertEquals(first.keySet(), second.keySet());
+            first.forEach((line, route) -> {
+                List<Point> other = second.get(line);
+                assertEquals(route.get(0), other.get(0), "source anchor of line " + line);
+                assertEquals(route.get(route.size() - 1), other.get(other.size() - 1), "target anchor of line " + line);
+            });
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static Map<Integer, List<Point>> route_random_canvas(RouteExecutor executor) {
+        AIManager manager = new AIManager(BarrierIndexType.RTREE, executor);
+        Random random = new Random(7);
+        List<AIRectangle> rects = new ArrayList<>();
+        for (int i = 1; i <= 150; i++) {
+            AIRectangle rect = new AIRectangle(random.nextInt(3000), random.nextInt(3000), 60 + random.nextInt(120), 40 + random.nextInt(100), i);
+            if (manager.add_rect(rect)) rects.add(rect);
+        }
+        for (int i = 0; i < 300; i++) {
+            manager.add_line(rects.get(random.nextInt(rects.size())), rects.get(random.nextInt(rects.size())), 1000 + i);
+        }
+        return manager.routeAll();
+    }
+
+    @Test
+    void search_finished_after_delete_line_leaves_no_segments() {
+        AIManager manager = new AIManager();
+        AIRectangle a = new AIRectangle(0, 0, 100, 60, 1), b = new AIRectangle(600, 0, 100, 60, 2);
+        manager.add_rect(a);
+        manager.add_rect(b);
+        manager.add_line(a, b, 11);
+        AIConnector connector = manager.get_connection(11);
+        connector.search_polyline();
+        assertEquals(1, manager.get_segment_index().size());
+
+        // 删除之后才结束的搜索
+        manager.delete_line(11);
+        assertEquals(0, manager.get_segment_index().size());
+        assertFalse(connector.search_polyline().isEmpty());
+        assertEquals(0, manager.get_segment_index().size());
+    }
+
+    @Test
+    void metrics_registered_per_canvas() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = AILayerManager.object_name("metrics \"canvas\"");
+        AIManagerItf manager = AILayerManager.getInstance().getManager("metrics \"canvas\"");
+        try {
+            AIRectangle a = new AIRectangle(0, 0, 100, 60, 1), b = new AIRectangle(600, 0, 100, 60, 2);
+            for (AIRectangle rect : List.of(a, b, new AIRectangle(300, -20, 40, 60, 3), new AIRectangle(320, 30, 40, 60, 4))) {
+                manager.add_rect(rect);
+            }
+            manager.add_line(a, b, 11);
+            manager.search_polyline(1);
+            manager.search_polyline(1);
+
+            assertEquals(4, server.getAttribute(name, "RectangleCount"));
+            assertEquals(1, server.getAttribute(name, "ConnectorCount"));
+            assertEquals(1L, server.getAttribute(name, "OverlapEdgeCount"));
+            assertEquals(2, server.getAttribute(name, "LargestOverlapCluster"));
+            assertEquals(1L, server.getAttribute(name, "SearchCount"));
+            assertEquals(0.5, server.getAttribute(name, "CacheHitRate"));
+            assertTrue((Double) server.getAttribute(name, "SearchLatencyP99Micros") > 0);
+            assertEquals(0, server.getAttribute(name, "ActiveSearches"));
+
+            server.invoke(name, "resetStatistics", null, null);
+            assertEquals(0L, server.getAttribute(name, "SearchCount"));
+        } finally {
+            AILayerManager.getInstance().remove("metrics \"canvas\"");
+        }
+        assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    void metrics_follow_every_removal_path() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        AILayerManager layer = AILayerManager.getInstance();
+        ObjectName name = AILayerManager.object_name("metrics-lifecycle");
+        try {
+            AIManagerItf first = layer.getManager("metrics-lifecycle");
+            assertTrue(server.isRegistered(name));
+            layer.clear();
+            assertFalse(server.isRegistered(name));
+
+            // 重新创建的画布注册成功，MBean对应新画布
+            AIManagerItf second = layer.getManager("metrics-lifecycle");
+            assertNotSame(first, second);
+            second.add_rect(new AIRectangle(0, 0, 100, 60, 1));
+            assertEquals(1, server.getAttribute(name, "RectangleCount"));
+
+            assertFalse(layer.remove("metrics-lifecycle", first));
+            assertTrue(server.isRegistered(name));
+            assertTrue(layer.remove("metrics-lifecycle", second));
+            assertFalse(server.isRegistered(name));
+
+            layer.put("metrics-lifecycle", new AIManager());
+            assertEquals(0, server.getAttribute(name, "RectangleCount"));
+            AIManager replacement = new AIManager();
+            replacement.add_rect(new AIRectangle(0, 0, 100, 60, 1));
+            replacement.add_rect(new AIRectangle(0, 200, 100, 60, 2));
+            layer.replace("metrics-lifecycle", replacement);
+            assertEquals(2, server.getAttribute(name, "RectangleCount"));
+
+            layer.computeIfPresent("metrics-lifecycle", (key, manager) -> null);
+            assertFalse(server.isRegistered(name));
+        } finally {
+            layer.remove("metrics-lifecycle");
+        }
+        assertFalse(server.isRegistered(name));
+    }
+}
@@ -0,0 +1,58 @@
+package aiconnector.manager;
+
+import aiconnector.connector.AIRectangle;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OverlapClustersTest {
+
+    @Test
+    void clusters_merge_split_and_track_bounds() {
+        AIManager manager = new AIManager();
+        // a-b-c相互压住成链，d单独
+        AIRectangle a = new AIRectangle(0, 0, 100, 60, 1), b = new AIRectangle(90, 0, 100, 60, 2);
+        AIRectangle c = new AIRectangle(180, 0, 100, 60, 3), d = new AIRectangle(1000, 0, 100, 60, 4);
+        for (AIRectangle rect : List.of(a, b, c, d)) {
+            manager.add_rect(rect);
+        }
+        assert_cluster(manager, 1, 3, new Rectangle(0, 0, 280, 60));
+        assert_cluster(manager, 4, 1, new Rectangle(1000, 0, 100, 60));
+
+        // 横跨c、d的图元把两个簇合并
+        manager.add_rect(new AIRectangle(270, 10, 740, 60, 5));
+        assert_cluster(manager, 4, 5, new Rectangle(0, 0, 1100, 70));
+        assertEquals(5, manager.overlapClusters.largest().getSize());
+
+        // 删除后拆开
+        manager.delete_rect(5);
+        assert_cluster(manager, 3, 3, new Rectangle(0, 0, 280, 60));
+        assert_cluster(manager, 4, 1, new Rectangle(1000, 0, 100, 60));
+        manager.delete_rect(2);
+        assert_cluster(manager, 1, 1, new Rectangle(0, 0, 100, 60));
+        assert_cluster(manager, 3, 1, new Rectangle(180, 0, 100, 60));
+        assertNull(manager.get_overlap_cluster(2));
+
+        // 移到a上合并，移走拆开
+        manager.move_rect(3, new Rectangle(50, 30, 100, 60));
+        assert_cluster(manager, 1, 2, new Rectangle(0, 0, 150, 90));
+        manager.move_rect(3, new Rectangle(950, 20, 100, 60));
+        assert_cluster(manager, 1, 1, new Rectangle(0, 0, 100, 60));
+        assert_cluster(manager, 4, 2, new Rectangle(950, 0, 150, 80));
+        assertEquals(2, manager.overlapClusters.largest().getSize());
+
+        // 没有重叠时每个图元自成一簇
+        manager.move_rect(3, new Rectangle(500, 500, 100, 60));
+        assertEquals(1, manager.overlapClusters.largest().getSize());
+        assertNull(new AIManager().overlapClusters.largest());
+    }
+
+    private static void assert_cluster(AIManager manager, int table_id, int size, Rectangle bounds) {
+        OverlapCluster cluster = manager.get_overlap_cluster(table_id);
+        assertEquals(size, cluster.getSize());
+        assertEquals(bounds, cluster.getBounds());
+    }
+}
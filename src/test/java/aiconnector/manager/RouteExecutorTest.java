@@ -0,0 +1,48 @@
+package aiconnector.manager;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteExecutorTest {
+
+    @Test
+    void invoke_all_finishes_every_item_before_rethrowing() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        ExecutorService threads = Executors.newFixedThreadPool(2);
+        try {
+            for (RouteExecutor executor : List.of(new ForkJoinRouteExecutor(pool), new VirtualThreadRouteExecutor(threads))) {
+                AtomicInteger completed = new AtomicInteger();
+                List<Integer> items = IntStream.range(0, 16).boxed().toList();
+                IllegalStateException e = assertThrows(IllegalStateException.class, () -> executor.invoke_all(items, item -> {
+                    if (item == 3) throw new IllegalStateException("item " + item);
+                    sleep();
+                    return completed.incrementAndGet();
+                }));
+                assertTrue(e.getMessage().contains("item 3"));
+                // 抛出之前其余的项都已经完成
+                assertEquals(15, completed.get(), executor.getClass().getSimpleName());
+
+                assertEquals(items, executor.invoke_all(items, item -> item));
+            }
+        } finally {
+            pool.shutdown();
+            threads.shutdown();
+        }
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package aiconnector.manager;
+
+import aiconnector.connector.AIRectangle;
+import aiconnector.connector.Polyline;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchSnapshotTest {
+
+    @Test
+    void captured_search_replays_on_fresh_canvas(@TempDir Path directory) throws Exception {
+        AIManager manager = new AIManager();
+        AIRectangle a = new AIRectangle(0, 0, 100, 60, 1), b = new AIRectangle(600, 0, 100, 60, 2);
+        AIRectangle c = new AIRectangle(0, 300, 100, 60, 3), d = new AIRectangle(600, 300, 100, 60, 4);
+        // 挡在a、b之间的两个重叠图元，以及远处的图元
+        AIRectangle wall = new AIRectangle(300, -100, 60, 200, 5), wall2 = new AIRectangle(340, 80, 60, 120, 6);
+        AIRectangle far = new AIRectangle(5000, 5000, 100, 60, 7);
+        for (AIRectangle rect : List.of(a, b, c, d, wall, wall2, far)) {
+            manager.add_rect(rect);
+        }
+        manager.add_line(c, d, 12);
+        manager.add_line(a, b, 11);
+        manager.add_line(a, d, 13);
+
+        // 阈值为0，每次搜索都捕获，只保留最后两个
+        SlowSearchCapture capture = new SlowSearchCapture(directory, 2, Duration.ZERO);
+        manager.set_slow_search_capture(capture);
+        manager.search_polyline(3);
+        manager.search_polyline(1);
+        assertEquals(3, capture.captured());
+        List<Path> files = capture.files();
+        assertEquals(2, files.size());
+
+        // 最后两次搜索是a的两条连线，顺序由执行器决定
+        List<SearchSnapshot> snapshots = new ArrayList<>();
+        for (Path file : files) {
+            snapshots.add(SearchSnapshot.load(file));
+        }
+        assertEquals(Set.of(11, 13), snapshots.stream().map(SearchSnapshot::get_connector_id).collect(Collectors.toSet()));
+        SearchSnapshot snapshot = snapshots.stream().filter(s -> s.get_connector_id() == 13).findFirst().orElseThrow();
+        Polyline route = manager.get_connection(13).get_polyline();
+        assertEquals(route, snapshot.get_route());
+        List<Integer> ids = snapshot.get_rects().stream().map(AIRectangle::get_table_id).toList();
+        assertTrue(ids.containsAll(List.of(1, 2, 5, 6)));
+        assertFalse(ids.contains(7));
+        assertEquals(1, snapshot.overlap_count());
+        assertTrue(snapshot.get_line_ids().contains(12));
+
+        // 新画布上重新搜索得到相同的路径
+        assertEquals(route, snapshot.replay());
+
+        // 文本往返
+        StringWriter text = new StringWriter();
+        snapshot.write(text);
+        SearchSnapshot copy = SearchSnapshot.read(new StringReader(text.toString()));
+        StringWriter again = new StringWriter();
+        copy.write(again);
+        assertEquals(text.toString(), again.toString());
+        // 两路搜索另一路的预留锚点也要恢复
+        assertTrue(text.toString().contains("\nreserved "));
+        assertEquals(route, copy.replay());
+        assertThrows(IllegalArgumentException.class, () -> SearchSnapshot.read(new StringReader("rect 1 2 3\n")));
+    }
+}
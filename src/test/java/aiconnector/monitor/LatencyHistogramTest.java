@@ -0,0 +1,33 @@
+package aiconnector.monitor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void percentiles_within_bucket_error() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(5);
+        long[] values = new long[10_000];
+        for (int i = 0; i < values.length; i++) {
+            // 对数分布：几十纳秒到几秒
+            values[i] = (long) Math.pow(10, 1 + random.nextDouble() * 8);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        for (double percentile : new double[]{1, 50, 90, 99, 99.9, 100}) {
+            long expected = values[(int) Math.ceil(values.length * percentile / 100) - 1];
+            assertEquals(expected, histogram.percentile(percentile), expected / 32.0 + 1, "p" + percentile);
+        }
+        assertEquals(values[values.length - 1], histogram.max());
+        assertEquals(values.length, histogram.count());
+
+        histogram.reset();
+        assertEquals(0, histogram.percentile(50));
+    }
+}
@@ -0,0 +1,58 @@
+package aiconnector.monitor;
+
+import aiconnector.connector.AIRectangle;
+import aiconnector.manager.AILayerManager;
+import aiconnector.manager.AIManagerItf;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteEventsTest {
+
+    @Test
+    void search_emits_events() throws Exception {
+        AIManagerItf manager = AILayerManager.getInstance().getManager("route-events");
+        // b、c相互重叠，挡在a、d之间
+        AIRectangle a = new AIRectangle(0, 0, 100, 60, 1), d = new AIRectangle(800, 300, 100, 60, 4);
+        for (AIRectangle rect : List.of(a, new AIRectangle(350, -100, 100, 300, 2), new AIRectangle(420, 150, 100, 300, 3), d)) {
+            manager.add_rect(rect);
+        }
+        manager.add_line(a, d, 21);
+
+        Path file = Files.createTempFile("aiconnector", ".jfr");
+        try (Recording recording = new Recording()) {
+            for (String name : List.of("aiconnector.RouteSearch", "aiconnector.BarrierProbe", "aiconnector.TrapTraversal", "aiconnector.AnchorAllocation")) {
+                recording.enable(name);
+            }
+            recording.start();
+            manager.search_polyline(1);
+            recording.stop();
+            recording.dump(file);
+
+            Map<String, List<RecordedEvent>> events = RecordingFile.readAllEvents(file).stream()
+                    .collect(Collectors.groupingBy(event -> event.getEventType().getName()));
+            RecordedEvent search = events.get("aiconnector.RouteSearch").get(0);
+            assertEquals(21, search.getInt("connectorId"));
+            assertEquals(1, search.getInt("srcTableId"));
+            assertEquals(4, search.getInt("dstTableId"));
+            assertEquals(manager.get_connection(21).get_polyline().size(), search.getInt("points"));
+            assertFalse(search.getBoolean("truncated"));
+            assertTrue(events.get("aiconnector.BarrierProbe").stream().anyMatch(event -> event.getBoolean("hit")));
+            assertTrue(events.get("aiconnector.TrapTraversal").stream().allMatch(event -> event.getInt("clusterSize") == 2));
+            // 源、目标图元上的锚点都由AnchorPlanner预先分配
+            assertTrue(events.get("aiconnector.AnchorAllocation").stream().anyMatch(event -> event.getBoolean("planned")));
+        } finally {
+            Files.deleteIfExists(file);
+            AILayerManager.getInstance().remove("route-events");
+        }
+    }
+}
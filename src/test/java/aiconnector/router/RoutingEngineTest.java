@@ -0,0 +1,158 @@
+package aiconnector.router;
+
+import aiconnector.connector.AIConnector;
+import aiconnector.connector.AIRectangle;
+import aiconnector.connector.HeuristicRoutingEngine;
+import aiconnector.manager.AILayerManager;
+import aiconnector.manager.AIManagerItf;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import static aiconnector.setting.AIConstants.BARRIER_SPACE;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoutingEngineTest {
+
+    @Test
+    void discovery() {
+        assertTrue(RoutingEngines.names().contains(HeuristicRoutingEngine.NAME));
+        assertTrue(RoutingEngines.names().contains(VisibilityGraphRoutingEngine.NAME));
+        AIManagerItf manager = AILayerManager.getInstance().getManager("routing-engine-discovery");
+        try {
+            assertInstanceOf(HeuristicRoutingEngine.class, manager.get_routing_engine());
+            assertThrows(IllegalArgumentException.class, () -> manager.set_routing_engine("no-such-engine"));
+        } finally {
+            AILayerManager.getInstance().remove("routing-engine-discovery");
+        }
+    }
+
+    @Test
+    void visibility_graph_detour() {
+        AIManagerItf manager = AILayerManager.getInstance().getManager("routing-engine-detour");
+        try {
+            AIRectangle src = new AIRectangle(0, 200, 100, 60, 1);
+            AIRectangle dst = new AIRectangle(600, 200, 100, 60, 2);
+            // 源、目标之间的墙
+            AIRectangle wall = new AIRectangle(300, 0, 40, 500, 3);
+            manager.add_rect(src);
+            manager.add_rect(dst);
+            manager.add_rect(wall);
+            // 已有图元在切换时补入
+            manager.set_routing_engine(VisibilityGraphRoutingEngine.NAME);
+
+            List<Point> route = new AIConnector(src, dst, 100, manager).search_route();
+            assertTrue(route.size() >= 4);
+            assertTrue(on_border(src, route.get(0)));
+            assertTrue(on_border(dst, route.get(route.size() - 1)));
+            Rectangle zone = new Rectangle(wall.x - BARRIER_SPACE, wall.y - BARRIER_SPACE, wall.width + 2 * BARRIER_SPACE, wall.height + 2 * BARRIER_SPACE);
+            for (int i = 1; i < route.size(); i++) {
+                Point a = route.get(i - 1), b = route.get(i);
+                assertTrue(a.x == b.x || a.y == b.y);
+                // 线段包围盒与障碍区内部不相交
+                Rectangle segment = new Rectangle(Math.min(a.x, b.x), Math.min(a.y, b.y), Math.abs(a.x - b.x), Math.abs(a.y - b.y));
+                Rectangle inner = new Rectangle(zone.x + 1, zone.y + 1, zone.width - 2, zone.height - 2);
+                assertFalse(inner.intersects(new Rectangle(segment.x, segment.y, segment.width + 1, segment.height + 1)), a + "->" + b);
+            }
+
+            // 墙移走后直连
+            manager.delete_rect(wall.get_table_id());
+            route = new AIConnector(src, dst, 101, manager).search_route();
+            assertEquals(2, route.size());
+        } finally {
+            AILayerManager.getInstance().remove("routing-engine-detour");
+        }
+    }
+
+    @Test
+    void visibility_graph_incremental_update() {
+        AIManagerItf manager = AILayerManager.getInstance().getManager("routing-engine-incremental");
+        try {
+            AIRectangle src = new AIRectangle(0, 200, 100, 60, 1);
+            AIRectangle dst = new AIRectangle(600, 200, 100, 60, 2);
+            manager.add_rect(src);
+            manager.add_rect(dst);
+            manager.set_routing_engine(VisibilityGraphRoutingEngine.NAME);
+            assertEquals(2, route(manager, 1, 2).size());
+
+            // 切换引擎之后加入、移动、删除的图元，路径与在新画布上重建的引擎相同
+            manager.add_rect(new AIRectangle(300, 0, 40, 500, 3));
+            assertTrue(route(manager, 1, 2).size() >= 4);
+            assertEquals(rebuilt(manager, 1, 2), route(manager, 1, 2));
+
+            manager.move_rect(3, new Rectangle(300, 1000, 40, 500));
+            assertEquals(2, route(manager, 1, 2).size());
+            assertEquals(rebuilt(manager, 1, 2), route(manager, 1, 2));
+
+            manager.move_rect(3, new Rectangle(400, 100, 40, 300));
+            assertTrue(route(manager, 1, 2).size() >= 4);
+            assertEquals(rebuilt(manager, 1, 2), route(manager, 1, 2));
+
+            manager.delete_rect(3);
+            assertEquals(2, route(manager, 1, 2).size());
+            assertEquals(rebuilt(manager, 1, 2), route(manager, 1, 2));
+        } finally {
+            AILayerManager.getInstance().remove("routing-engine-incremental");
+        }
+    }
+
+    @Test
+    void visibility_graph_falls_back_to_heuristic() {
+        AIManagerItf manager = AILayerManager.getInstance().getManager("routing-engine-fallback");
+        AIManagerItf heuristic = AILayerManager.getInstance().getManager("routing-engine-fallback-heuristic");
+        try {
+            for (AIManagerItf canvas : List.of(manager, heuristic)) {
+                canvas.add_rect(new AIRectangle(0, 200, 100, 60, 1));
+                canvas.add_rect(new AIRectangle(600, 200, 100, 60, 2));
+                // 盖住目标图元的大图元，目标四边的引出点都在障碍区内，可见图无路可走
+                canvas.add_rect(new AIRectangle(550, 150, 200, 160, 3));
+            }
+            List<List<Point>> results = new ArrayList<>();
+            manager.set_routing_engine(new VisibilityGraphRoutingEngine() {
+                @Override
+                public List<Point> route(AIRectangle src, AIRectangle dst, ObstacleView obstacles, AnchorAllocator anchors) {
+                    List<Point> route = super.route(src, dst, obstacles, anchors);
+                    results.add(route);
+                    return route;
+                }
+            });
+
+            List<Point> route = route(manager, 1, 2);
+            assertEquals(1, results.size());
+            assertNull(results.get(0));
+            assertFalse(route.isEmpty());
+            assertEquals(route(heuristic, 1, 2), route);
+        } finally {
+            AILayerManager.getInstance().remove("routing-engine-fallback");
+            AILayerManager.getInstance().remove("routing-engine-fallback-heuristic");
+        }
+    }
+
+    private static List<Point> route(AIManagerItf manager, int srcId, int dstId) {
+        return List.copyOf(new AIConnector(manager.get_rect(srcId), manager.get_rect(dstId), 100, manager).search_route());
+    }
+
+    /**
+     * 用当前的图元新建画布和可见图引擎，搜索同样的连线
+     */
+    private static List<Point> rebuilt(AIManagerItf manager, int srcId, int dstId) {
+        AIManagerItf fresh = AILayerManager.getInstance().getManager("routing-engine-rebuilt");
+        try {
+            for (int id : manager.get_table_ids()) {
+                AIRectangle rect = manager.get_rect(id);
+                fresh.add_rect(new AIRectangle(rect.x, rect.y, rect.width, rect.height, id));
+            }
+            fresh.set_routing_engine(VisibilityGraphRoutingEngine.NAME);
+            return route(fresh, srcId, dstId);
+        } finally {
+            AILayerManager.getInstance().remove("routing-engine-rebuilt");
+        }
+    }
+
+    private static boolean on_border(Rectangle r, Point p) {
+        boolean inX = p.x >= r.x && p.x <= r.x + r.width, inY = p.y >= r.y && p.y <= r.y + r.height;
+        return (inX && (p.y == r.y || p.y == r.y + r.height)) || (inY && (p.x == r.x || p.x == r.x + r.width));
+    }
+}
@@ -0,0 +1,50 @@
+package aiconnector.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntObjectMapTest {
+
+    @Test
+    void same_as_hash_map() {
+        // 键集中在小范围内，探测链上的删除、扩容都会反复发生
+        IntObjectMap<String> map = new IntObjectMap<>();
+        HashMap<Integer, String> expected = new HashMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            int key = random.nextInt(512) - 256;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, "v" + i), map.put(key, "v" + i));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (int key = -256; key < 256; key++) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+        map.forEach((key, value) -> assertEquals(expected.get(key), value));
+    }
+
+    @Test
+    void int_set_keeps_order() {
+        IntSetMap sets = new IntSetMap();
+        for (int value : new int[]{5, 3, 9, 3, 7, 1}) {
+            sets.add(1, value);
+        }
+        assertArrayEquals(new int[]{5, 3, 9, 7, 1}, sets.get(1));
+        assertTrue(sets.remove(1, 9));
+        assertFalse(sets.remove(1, 9));
+        assertArrayEquals(new int[]{5, 3, 7, 1}, sets.get(1));
+
+        for (int value : new int[]{5, 3, 7, 1}) {
+            sets.remove(1, value);
+        }
+        assertFalse(sets.containsKey(1));
+        assertEquals(0, sets.get(1).length);
+    }
+}
@@ -0,0 +1,130 @@
+package aiconnector.collide;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+import static jdk.incubator.vector.VectorOperators.*;
+
+/**
+ * CollideDetect的向量化实现，使用孵化中的Vector API。<p>
+ * 只在vector profile下编译(mvn -Pvector)，jdk.incubator.vector模块已加载时由CollideDetect通过反射创建，
+ * 模块不存在时本类不会被加载。
+ * 先按掩码归约出最近的key，再找第一个等于该key的命中下标，与标量循环的结果相同。<p>
+ * 比较运算符必须是常量，JIT才能编译为SIMD指令，因此各方向分别实现，不把运算符作为参数传递。
+ */
+final class VectorKernels implements CollideDetect.Kernels {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    @Override
+    public int lanes() {
+        return SPECIES.length();
+    }
+
+    @Override
+    public int nearest_above(int[] keys, int[] lo, int[] hi, int count, int from, int bound, boolean inclusive, int stab) {
+        int limit = SPECIES.loopBound(count);
+        IntVector none = IntVector.broadcast(SPECIES, Integer.MAX_VALUE);
+        IntVector nearest = none;
+        int i = 0;
+        for (; i < limit; i += SPECIES.length()) {
+            IntVector key = IntVector.fromArray(SPECIES, keys, i);
+            nearest = nearest.min(none.blend(key, above(key, lo, hi, i, from, bound, inclusive, stab)));
+        }
+        int best = nearest.reduceLanes(MIN);
+        for (; i < count; i++) {
+            int key = keys[i];
+            if (key > from && (key < bound || inclusive && key == bound) && lo[i] <= stab && stab <= hi[i]) {
+                best = Math.min(best, key);
+            }
+        }
+        // best为初值MAX_VALUE时可能没有命中
+        for (i = 0; i < limit; i += SPECIES.length()) {
+            IntVector key = IntVector.fromArray(SPECIES, keys, i);
+            VectorMask<Integer> found = key.compare(EQ, best).and(above(key, lo, hi, i, from, bound, inclusive, stab));
+            if (found.anyTrue()) {
+                return i + found.firstTrue();
+            }
+        }
+        for (; i < count; i++) {
+            int key = keys[i];
+            if (key == best && key > from && (key < bound || inclusive && key == bound) && lo[i] <= stab && stab <= hi[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int nearest_below(int[] keys, int[] lo, int[] hi, int count, int from, int bound, int stab) {
+        int limit = SPECIES.loopBound(count);
+        IntVector none = IntVector.broadcast(SPECIES, Integer.MIN_VALUE);
+        IntVector nearest = none;
+        int i = 0;
+        for (; i < limit; i += SPECIES.length()) {
+            IntVector key = IntVector.fromArray(SPECIES, keys, i);
+            nearest = nearest.max(none.blend(key, below(key, lo, hi, i, from, bound, stab)));
+        }
+        int best = nearest.reduceLanes(MAX);
+        for (; i < count; i++) {
+            int key = keys[i];
+            if (key < from && key >= bound && lo[i] <= stab && stab <= hi[i]) {
+                best = Math.max(best, key);
+            }
+        }
+        for (i = 0; i < limit; i += SPECIES.length()) {
+            IntVector key = IntVector.fromArray(SPECIES, keys, i);
+            VectorMask<Integer> found = key.compare(EQ, best).and(below(key, lo, hi, i, from, bound, stab));
+            if (found.anyTrue()) {
+                return i + found.firstTrue();
+            }
+        }
+        for (; i < count; i++) {
+            int key = keys[i];
+            if (key == best && key < from && key >= bound && lo[i] <= stab && stab <= hi[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int first_overlap(int[] lo, int[] hi, int[] owner, int count, int from, int to, int self) {
+        int limit = SPECIES.loopBound(count);
+        int i = 0;
+        for (; i < limit; i += SPECIES.length()) {
+            VectorMask<Integer> overlap = IntVector.fromArray(SPECIES, lo, i).compare(LT, to)
+                    .and(IntVector.fromArray(SPECIES, hi, i).compare(GT, from))
+                    .and(IntVector.fromArray(SPECIES, owner, i).compare(NE, self));
+            if (overlap.anyTrue()) {
+                return i + overlap.firstTrue();
+            }
+        }
+        for (; i < count; i++) {
+            if (lo[i] < to && from < hi[i] && owner[i] != self) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return 命中的车道：from &lt; key (&lt; 或 &lt;=) bound，且射线穿过[lo, hi]
+     */
+    private static VectorMask<Integer> above(IntVector key, int[] lo, int[] hi, int i, int from, int bound, boolean inclusive, int stab) {
+        VectorMask<Integer> upper = inclusive ? key.compare(LE, bound) : key.compare(LT, bound);
+        return key.compare(GT, from).and(upper).and(crossed(lo, hi, i, stab));
+    }
+
+    /**
+     * @return 命中的车道：bound &lt;= key &lt; from，且射线穿过[lo, hi]
+     */
+    private static VectorMask<Integer> below(IntVector key, int[] lo, int[] hi, int i, int from, int bound, int stab) {
+        return key.compare(LT, from).and(key.compare(GE, bound)).and(crossed(lo, hi, i, stab));
+    }
+
+    private static VectorMask<Integer> crossed(int[] lo, int[] hi, int i, int stab) {
+        return IntVector.fromArray(SPECIES, lo, i).compare(LE, stab)
+                .and(IntVector.fromArray(SPECIES, hi, i).compare(GE, stab));
+    }
+}
@@ -0,0 +1,139 @@
+package aiconnector.testing;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 合成ER图风格的画布：表的宽度按表名、高度按字段数变化，连线为外键。<p>
+ * 结果是add_rect、add_line组成的EditTrace，table_id从1开始，连线id从1开始；相同的参数、种子得到相同的画布。
+ */
+public final class CanvasGenerator {
+    /**
+     * 图元的布局
+     */
+    public enum Layout {
+        /**
+         * 整齐排列的网格
+         */
+        GRID,
+        /**
+         * 按业务模块聚成若干簇，簇内松散排列，偶有重叠
+         */
+        CLUSTERED,
+        /**
+         * 密集的块，块内的表相互重叠
+         */
+        DENSE_BLOCKS
+    }
+
+    /**
+     * 连线的分布
+     */
+    public enum Links {
+        /**
+         * 任意两个表之间
+         */
+        RANDOM,
+        /**
+         * 外键集中指向少数核心表(用户、组织、字典等)
+         */
+        HUB
+    }
+
+    /**
+     * 网格、簇内表之间的间距
+     */
+    private static final int GAP = 80;
+    /**
+     * 字段行高
+     */
+    private static final int ROW = 20;
+
+    private final Random _random;
+
+    private CanvasGenerator(long seed) {
+        _random = new Random(seed);
+    }
+
+    public static EditTrace generate(Layout layout, int tables, Links links, int connectors, long seed) {
+        CanvasGenerator generator = new CanvasGenerator(seed);
+        List<Rectangle> rects = generator.layout(layout, tables);
+        EditTrace trace = new EditTrace();
+        for (int i = 0; i < rects.size(); i++) {
+            trace.add(Edit.add_rect(i + 1, rects.get(i)));
+        }
+        if (tables > 1) {
+            generator.link(trace, links, tables, connectors);
+        }
+        return trace;
+    }
+
+    private List<Rectangle> layout(Layout layout, int tables) {
+        List<Rectangle> rects = new ArrayList<>(tables);
+        switch (layout) {
+            case GRID: {
+                int columns = (int) Math.ceil(Math.sqrt(tables));
+                int cell = 220 + GAP;
+                for (int i = 0; i < tables; i++) {
+                    Dimension size = table_size();
+                    // 行高取最高的表，按格子对齐
+                    rects.add(new Rectangle(i % columns * cell, i / columns * (ROW * 16 + GAP), size.width, size.height));
+                }
+                break;
+            }
+            case CLUSTERED: {
+                // 每簇约25个表，簇半径约为5x5网格的一半
+                int clusters = Math.max(1, tables / 25);
+                int spread = 5 * (220 + GAP);
+                int columns = (int) Math.ceil(Math.sqrt(clusters));
+                for (int i = 0; i < tables; i++) {
+                    int cluster = _random.nextInt(clusters);
+                    int cx = cluster % columns * spread * 2, cy = cluster / columns * spread * 2;
+                    Dimension size = table_size();
+                    rects.add(new Rectangle(cx + (int) (_random.nextGaussian() * spread / 2), cy + (int) (_random.nextGaussian() * spread / 2),
+                            size.width, size.height));
+                }
+                break;
+            }
+            default: {
+                // 每块4x4个表，步长小于表的尺寸，块内相互重叠；块之间留出通道
+                int columns = (int) Math.ceil(Math.sqrt(Math.ceil(tables / 16.0)));
+                int block = 4 * 100 + 2 * GAP;
+                for (int i = 0; i < tables; i++) {
+                    int b = i / 16, k = i % 16;
+                    Dimension size = table_size();
+                    rects.add(new Rectangle(b % columns * block + k % 4 * 100 + _random.nextInt(20),
+                            b / columns * block + k / 4 * 100 + _random.nextInt(20), size.width, size.height));
+                }
+                break;
+            }
+        }
+        return rects;
+    }
+
+    /**
+     * @return 表的尺寸：宽120~220，3~15个字段
+     */
+    private Dimension table_size() {
+        return new Dimension(120 + _random.nextInt(101), ROW * (1 + 3 + _random.nextInt(13)));
+    }
+
+    private void link(EditTrace trace, Links links, int tables, int connectors) {
+        // 核心表约占2%，越靠前被引用越多
+        int hubs = Math.max(1, tables / 50);
+        for (int line = 1; line <= connectors; line++) {
+            int src = 1 + _random.nextInt(tables), dst;
+            if (links == Links.HUB && _random.nextInt(10) < 7) {
+                dst = 1 + (int) (hubs * Math.pow(_random.nextDouble(), 2));
+            } else {
+                dst = 1 + _random.nextInt(tables);
+            }
+            if (src == dst) {
+                dst = dst % tables + 1;
+            }
+            trace.add(Edit.add_line(line, src, dst));
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package aiconnector.testing;
+
+import aiconnector.connector.AIRectangle;
+import aiconnector.manager.AIManagerItf;
+
+import java.awt.*;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * 对画布的一次编辑，文本形式为一行：<p>
+ * add_rect id x y width height<p>
+ * move_rect id x y width height<p>
+ * delete_rect id<p>
+ * add_line id src dst<p>
+ * delete_line id
+ */
+public final class Edit {
+    public enum Kind {
+        ADD_RECT, MOVE_RECT, DELETE_RECT, ADD_LINE, DELETE_LINE;
+
+        String token() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    public final Kind kind;
+    /**
+     * 图元的table_id或连线id
+     */
+    public final int id;
+    /**
+     * 图元：x y width height；连线：src dst
+     */
+    private final int[] _args;
+
+    private Edit(Kind kind, int id, int... args) {
+        this.kind = kind;
+        this.id = id;
+        _args = args;
+    }
+
+    public static Edit add_rect(int table_id, Rectangle bounds) {
+        return new Edit(Kind.ADD_RECT, table_id, bounds.x, bounds.y, bounds.width, bounds.height);
+    }
+
+    public static Edit move_rect(int table_id, Rectangle bounds) {
+        return new Edit(Kind.MOVE_RECT, table_id, bounds.x, bounds.y, bounds.width, bounds.height);
+    }
+
+    public static Edit delete_rect(int table_id) {
+        return new Edit(Kind.DELETE_RECT, table_id);
+    }
+
+    public static Edit add_line(int line_id, int src_table_id, int dst_table_id) {
+        return new Edit(Kind.ADD_LINE, line_id, src_table_id, dst_table_id);
+    }
+
+    public static Edit delete_line(int line_id) {
+        return new Edit(Kind.DELETE_LINE, line_id);
+    }
+
+    /**
+     * @return 图元编辑的位置
+     */
+    public Rectangle bounds() {
+        return new Rectangle(_args[0], _args[1], _args[2], _args[3]);
+    }
+
+    public int src() {
+        return _args[0];
+    }
+
+    public int dst() {
+        return _args[1];
+    }
+
+    /**
+     * 在画布上执行
+     * @return 画布方法的返回值
+     */
+    public Object apply(AIManagerItf manager) {
+        switch (kind) {
+            case ADD_RECT:
+                return manager.add_rect(new AIRectangle(bounds(), id));
+            case MOVE_RECT:
+                return manager.move_rect(id, bounds());
+            case DELETE_RECT:
+                return manager.delete_rect(id);
+            case ADD_LINE: {
+                AIRectangle src = manager.get_rect(src()), dst = manager.get_rect(dst());
+                return src != null && dst != null && manager.add_line(src, dst, id);
+            }
+            default:
+                return manager.delete_line(id);
+        }
+    }
+
+    /**
+     * @param line 一行文本，格式与toString相同
+     */
+    public static Edit parse(String line) {
+        String[] tokens = line.trim().split("\\s+");
+        Kind kind = Kind.valueOf(tokens[0].toUpperCase(Locale.ROOT));
+        int[] values = new int[tokens.length - 1];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Integer.parseInt(tokens[i + 1]);
+        }
+        int expected = kind == Kind.ADD_RECT || kind == Kind.MOVE_RECT ? 5 : kind == Kind.ADD_LINE ? 3 : 1;
+        if (values.length != expected) {
+            throw new IllegalArgumentException("malformed edit: " + line);
+        }
+        int[] args = new int[expected - 1];
+        System.arraycopy(values, 1, args, 0, args.length);
+        return new Edit(kind, values[0], args);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(kind.token()).append(' ').append(id);
+        for (int arg : _args) {
+            builder.append(' ').append(arg);
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Edit)) return false;
+        Edit other = (Edit) o;
+        return kind == other.kind && id == other.id && Arrays.equals(_args, other._args);
+    }
+
+    @Override
+    public int hashCode() {
+        return (kind.hashCode() * 31 + id) * 31 + Arrays.hashCode(_args);
+    }
+}
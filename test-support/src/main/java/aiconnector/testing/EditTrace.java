@@ -0,0 +1,85 @@
+package aiconnector.testing;
+
+import java.awt.*;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 按顺序排列的编辑，可以保存为文本(每行一个编辑，#开头的行为注释)。<p>
+ * 生成的画布、记录的编辑过程都是EditTrace，用TraceReplayer在新画布上回放。
+ */
+public final class EditTrace {
+    private final List<Edit> _edits = Collections.synchronizedList(new ArrayList<>());
+
+    public EditTrace add(Edit edit) {
+        _edits.add(edit);
+        return this;
+    }
+
+    public EditTrace add_all(EditTrace trace) {
+        _edits.addAll(trace.edits());
+        return this;
+    }
+
+    /**
+     * @return 编辑的快照
+     */
+    public List<Edit> edits() {
+        synchronized (_edits) {
+            return new ArrayList<>(_edits);
+        }
+    }
+
+    public int size() {
+        return _edits.size();
+    }
+
+    /**
+     * 追加一次拖动：图元从from出发，每步移动(dx, dy)，共steps步
+     */
+    public EditTrace drag(int table_id, Rectangle from, int dx, int dy, int steps) {
+        for (int i = 1; i <= steps; i++) {
+            add(Edit.move_rect(table_id, new Rectangle(from.x + i * dx, from.y + i * dy, from.width, from.height)));
+        }
+        return this;
+    }
+
+    public void write(Writer writer) throws IOException {
+        for (Edit edit : edits()) {
+            writer.write(edit.toString());
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    public static EditTrace read(Reader reader) throws IOException {
+        EditTrace trace = new EditTrace();
+        BufferedReader lines = new BufferedReader(reader);
+        for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+            if (!line.isBlank() && !line.startsWith("#")) {
+                trace.add(Edit.parse(line));
+            }
+        }
+        return trace;
+    }
+
+    public void save(Path path) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            write(writer);
+        }
+    }
+
+    public static EditTrace load(Path path) throws IOException {
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return read(reader);
+        }
+    }
+}
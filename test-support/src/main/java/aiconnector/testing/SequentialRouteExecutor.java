@@ -0,0 +1,49 @@
+package aiconnector.testing;
+
+import aiconnector.manager.RouteExecutor;
+import aiconnector.utils.Tuple;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 在调用线程上依次执行所有分支的执行器。<p>
+ * 搜索的先后顺序固定，回放的结果、耗时不受线程调度影响，用于对比两次回放。
+ */
+public final class SequentialRouteExecutor implements RouteExecutor {
+    @Override
+    public <A, B> Tuple<A, B> fork_join(Supplier<A> left, Supplier<B> right) {
+        A a;
+        try {
+            a = left.get();
+        } catch (RuntimeException | Error e) {
+            // 与其他执行器一致：第二个分支仍然执行，结束后再抛出
+            try {
+                right.get();
+            } catch (RuntimeException | Error suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        return Tuple.of(a, right.get());
+    }
+
+    @Override
+    public <T, R> List<R> invoke_all(List<T> items, Function<T, R> task) {
+        List<R> results = new ArrayList<>(items.size());
+        RuntimeException failure = null;
+        for (T item : items) {
+            try {
+                results.add(task.apply(item));
+            } catch (RuntimeException e) {
+                if (failure == null) failure = e;
+                else failure.addSuppressed(e);
+                results.add(null);
+            }
+        }
+        if (failure != null) throw failure;
+        return results;
+    }
+}
@@ -0,0 +1,92 @@
+package aiconnector.testing;
+
+import aiconnector.connector.AIConnector;
+import aiconnector.connector.AIRectangle;
+import aiconnector.manager.AIManagerItf;
+
+import java.awt.*;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * 记录对画布的编辑：返回包装了画布的AIManagerItf，所有调用转发给画布，
+ * add_rect、move_rect、delete_rect、add_line、delete_line(含@Deprecated的重载)依次追加到EditTrace。<p>
+ * 编辑在调用画布之前记录，参数为调用时的值；调用失败的编辑同样记录，回放时同样失败。
+ */
+public final class TraceRecorder implements InvocationHandler {
+    private final AIManagerItf _manager;
+    private final EditTrace _trace;
+
+    private TraceRecorder(AIManagerItf manager, EditTrace trace) {
+        _manager = manager;
+        _trace = trace;
+    }
+
+    /**
+     * @param manager 被记录的画布
+     * @param trace 记录的编辑追加到这里
+     * @return 记录编辑的画布，替代manager使用
+     */
+    public static AIManagerItf record(AIManagerItf manager, EditTrace trace) {
+        return (AIManagerItf) Proxy.newProxyInstance(AIManagerItf.class.getClassLoader(), new Class<?>[]{AIManagerItf.class},
+                new TraceRecorder(manager, trace));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return "recording " + _manager;
+            }
+        }
+        Edit edit = to_edit(method.getName(), args);
+        if (edit != null) {
+            _trace.add(edit);
+        }
+        try {
+            return method.invoke(_manager, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * @return 调用对应的编辑，不是编辑返回null
+     */
+    private static Edit to_edit(String name, Object[] args) {
+        if (args == null || args[0] == null) {
+            // 参数为null的调用由画布拒绝，不记录
+            return null;
+        }
+        switch (name) {
+            case "add_rect": {
+                AIRectangle rect = (AIRectangle) args[0];
+                return Edit.add_rect(rect.get_table_id(), new Rectangle(rect));
+            }
+            case "move_rect":
+                return args[1] == null ? null : Edit.move_rect((Integer) args[0], new Rectangle((Rectangle) args[1]));
+            case "delete_rect":
+                return Edit.delete_rect((Integer) args[0]);
+            case "add_line": {
+                if (args.length == 1) {
+                    AIConnector connector = (AIConnector) args[0];
+                    return Edit.add_line(connector.get_connector_id(),
+                            connector.get_srcRect().get_table_id(), connector.get_dstRect().get_table_id());
+                }
+                AIRectangle src = (AIRectangle) args[0], dst = (AIRectangle) args[1];
+                return dst == null || args[2] == null ? null : Edit.add_line((Integer) args[2], src.get_table_id(), dst.get_table_id());
+            }
+            case "delete_line":
+                return Edit.delete_line((Integer) args[0]);
+            default:
+                return null;
+        }
+    }
+}
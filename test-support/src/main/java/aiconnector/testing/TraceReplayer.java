@@ -0,0 +1,163 @@
+package aiconnector.testing;
+
+import aiconnector.collide.BarrierIndexType;
+import aiconnector.connector.AIConnector;
+import aiconnector.connector.Polyline;
+import aiconnector.manager.AILayerManager;
+import aiconnector.manager.AIManagerItf;
+import aiconnector.utils.Tuple;
+
+import java.awt.*;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 在画布上依次回放EditTrace，记录每个编辑的耗时和结果。<p>
+ * 在{@link #replay(EditTrace, BarrierIndexType)}创建的画布上，路径搜索使用SequentialRouteExecutor，
+ * 同一个EditTrace在同一种障碍索引上的两次回放得到相同的checksum，可用于对比优化前后路径是否改变。<p>
+ * 回放结束后，尚未搜索过路径的连线按id顺序搜索一次，最终路径计入checksum。
+ */
+public final class TraceReplayer {
+    private static final AtomicInteger _sequence = new AtomicInteger();
+
+    private TraceReplayer() {
+    }
+
+    /**
+     * 在新建的画布上回放，回放结束后移除画布
+     */
+    public static Report replay(EditTrace trace, BarrierIndexType indexType) {
+        String key = "replay-" + _sequence.incrementAndGet();
+        AIManagerItf manager = AILayerManager.getInstance().getManager(key, indexType, new SequentialRouteExecutor());
+        try {
+            return replay(trace, manager);
+        } finally {
+            AILayerManager.getInstance().remove(key);
+        }
+    }
+
+    /**
+     * 在给定的画布上回放
+     */
+    public static Report replay(EditTrace trace, AIManagerItf manager) {
+        List<Edit> edits = trace.edits();
+        long[] nanos = new long[edits.size()];
+        long checksum = 1;
+        TreeSet<Integer> lines = new TreeSet<>();
+        for (int i = 0; i < nanos.length; i++) {
+            Edit edit = edits.get(i);
+            long start = System.nanoTime();
+            Object result = edit.apply(manager);
+            nanos[i] = System.nanoTime() - start;
+            checksum = checksum * 31 + checksum(result);
+            if (edit.kind == Edit.Kind.ADD_LINE) lines.add(edit.id);
+        }
+        // 最终所有连线的路径：add_line不搜索路径，按id顺序补齐，不计入耗时
+        for (int line : lines) {
+            AIConnector connector = manager.get_connection(line);
+            if (connector == null) continue;
+            Polyline polyline = connector.get_polyline().isEmpty() ? connector.search_polyline() : connector.get_polyline();
+            checksum = checksum * 31 + line * 17L + polyline.hashCode();
+        }
+        return new Report(edits, nanos, checksum);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static long checksum(Object result) {
+        if (!(result instanceof List)) {
+            return result == null ? 0 : result.hashCode();
+        }
+        // move_rect重新搜索的连线，按连线id排序，与搜索完成的先后无关
+        List<Tuple<Integer, List<Point>>> routes = (List<Tuple<Integer, List<Point>>>) result;
+        long[] hashes = new long[routes.size()];
+        for (int i = 0; i < hashes.length; i++) {
+            Tuple<Integer, List<Point>> route = routes.get(i);
+            hashes[i] = ((long) route.a << 32) ^ (route.b == null ? 0 : route.b.hashCode() & 0xffffffffL);
+        }
+        Arrays.sort(hashes);
+        return Arrays.hashCode(hashes);
+    }
+
+    /**
+     * 回放的结果
+     */
+    public static final class Report {
+        private final List<Edit> _edits;
+        private final long[] _nanos;
+        /**
+         * 所有编辑的结果、最终路径的散列，路径改变则不同
+         */
+        public final long checksum;
+
+        private Report(List<Edit> edits, long[] nanos, long checksum) {
+            _edits = edits;
+            _nanos = nanos;
+            this.checksum = checksum;
+        }
+
+        /**
+         * @return 第index个编辑的耗时
+         */
+        public long nanos(int index) {
+            return _nanos[index];
+        }
+
+        public long total_nanos() {
+            return Arrays.stream(_nanos).sum();
+        }
+
+        /**
+         * @return 每种编辑的耗时统计，没有出现的编辑不返回
+         */
+        public Map<Edit.Kind, Stats> stats() {
+            Map<Edit.Kind, Stats> stats = new EnumMap<>(Edit.Kind.class);
+            for (Edit.Kind kind : Edit.Kind.values()) {
+                long[] nanos = new long[_nanos.length];
+                int count = 0;
+                for (int i = 0; i < _nanos.length; i++) {
+                    if (_edits.get(i).kind == kind) nanos[count++] = _nanos[i];
+                }
+                if (count > 0) stats.put(kind, new Stats(Arrays.copyOf(nanos, count)));
+            }
+            return stats;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(String.format("%d edits, %.1f ms, checksum %016x%n",
+                    _nanos.length, total_nanos() / 1e6, checksum));
+            stats().forEach((kind, stats) -> builder.append(String.format("  %-11s %s%n", kind.token(), stats)));
+            return builder.toString();
+        }
+    }
+
+    /**
+     * 一种编辑的耗时统计
+     */
+    public static final class Stats {
+        public final int count;
+        public final long total_nanos;
+        public final long max_nanos;
+        public final long p50_nanos;
+        public final long p95_nanos;
+
+        private Stats(long[] nanos) {
+            Arrays.sort(nanos);
+            count = nanos.length;
+            total_nanos = Arrays.stream(nanos).sum();
+            max_nanos = nanos[count - 1];
+            p50_nanos = nanos[(count - 1) / 2];
+            p95_nanos = nanos[(int) Math.ceil(count * 0.95) - 1];
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count %d, total %.1f ms, p50 %.1f us, p95 %.1f us, max %.1f us",
+                    count, total_nanos / 1e6, p50_nanos / 1e3, p95_nanos / 1e3, max_nanos / 1e3);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package aiconnector.testing;
+
+import aiconnector.collide.BarrierIndexType;
+import aiconnector.manager.AILayerManager;
+import aiconnector.manager.AIManagerItf;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TraceReplayerTest {
+
+    @Test
+    void replay_is_deterministic() throws Exception {
+        EditTrace canvas = CanvasGenerator.generate(CanvasGenerator.Layout.CLUSTERED, 60, CanvasGenerator.Links.HUB, 80, 7);
+        assertEquals(140, canvas.size());
+
+        // 在画布上拖动一个图元，记录下所有编辑
+        EditTrace session = new EditTrace();
+        AIManagerItf manager = TraceRecorder.record(AILayerManager.getInstance().getManager("record", BarrierIndexType.RTREE,
+                new SequentialRouteExecutor()), session);
+        try {
+            for (Edit edit : canvas.edits()) {
+                edit.apply(manager);
+            }
+            manager.move_rect(3, new java.awt.Rectangle(manager.get_rect(3).x + 40, manager.get_rect(3).y, 150, 100));
+            manager.delete_line(5);
+            manager.delete_rect(9);
+        } finally {
+            AILayerManager.getInstance().remove("record");
+        }
+        assertEquals(canvas.edits(), session.edits().subList(0, canvas.size()));
+        assertEquals(canvas.size() + 3, session.size());
+
+        StringWriter text = new StringWriter();
+        session.write(text);
+        EditTrace loaded = EditTrace.read(new StringReader("# drag session\n" + text));
+        assertEquals(session.edits(), loaded.edits());
+
+        TraceReplayer.Report first = TraceReplayer.replay(loaded, BarrierIndexType.RTREE);
+        TraceReplayer.Report second = TraceReplayer.replay(session, BarrierIndexType.RTREE);
+        assertEquals(first.checksum, second.checksum);
+        assertEquals(1, first.stats().get(Edit.Kind.MOVE_RECT).count);
+    }
+}